@@ -0,0 +1,51 @@
+package com.brantapps.epicentre.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.brantapps.epicentre.handler.SyntheticFeedGenerator;
+
+/**
+ * The USGS reports the benchmarks run against.
+ * <p>
+ * The feed name "asset" is the bundled 30 day report; any number is a
+ * {@link SyntheticFeedGenerator} report of that many features. Synthetic
+ * reports are written once to the temporary directory and reused by later runs.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class FeedFixtures {
+  public static final String ASSET = "asset";
+  private static final long SEED = 20130508L;
+  private static final String ASSET_PATH =
+      System.getProperty("epicentre.asset", "../assets/test/usgs/v0.1/test_past_30_days.json");
+
+  private FeedFixtures() { }
+
+
+  /**
+   * @param feed  "asset" or a number of features.
+   * @return the report file for the feed.
+   * @throws IOException  When the synthetic report cannot be written.
+   */
+  public static File report(final String feed) throws IOException {
+    if (ASSET.equals(feed)) {
+      final File asset = new File(ASSET_PATH);
+      if (!asset.isFile()) {
+        throw new IOException(String.format("Bundled report not found at [%s]; set -Depicentre.asset", asset.getAbsolutePath()));
+      }
+      return asset;
+    }
+    final int features = Integer.parseInt(feed);
+    final File report = new File(System.getProperty("java.io.tmpdir"), String.format("epicentre-synthetic-%d-%d.json", SEED, features));
+    if (!report.isFile()) {
+      final File partial = new File(report.getPath() + ".part");
+      new SyntheticFeedGenerator(SEED).write(features, partial, false);
+      if (!partial.renameTo(report)) {
+        throw new IOException(String.format("Could not create [%s]", report.getAbsolutePath()));
+      }
+    }
+    return report;
+  }
+}
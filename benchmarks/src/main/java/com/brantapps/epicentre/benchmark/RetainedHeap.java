@@ -0,0 +1,72 @@
+package com.brantapps.epicentre.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.brantapps.epicentre.handler.BenchmarkParsers;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.PackedGeoFeatureCollection;
+
+/**
+ * Reports the heap retained by a loaded {@link GeoFeatureCollection}.
+ * <p>
+ * JMH measures allocation but not what stays reachable afterwards, so this
+ * loads a report, forces collection before and after and prints the difference.
+ * Run it with a fixed heap, e.g. <code>-Xms1g -Xmx1g</code>, for steady numbers.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class RetainedHeap {
+
+  private RetainedHeap() { }
+
+
+  /**
+   * @param args  The feeds to measure; defaults to "asset" and 100000.
+   * @throws IOException  When a report cannot be read.
+   */
+  public static void main(final String[] args) throws IOException {
+    final String[] feeds = args.length == 0 ? new String[] {FeedFixtures.ASSET, "100000"} : args;
+    for (final String feed : feeds) {
+      final File report = FeedFixtures.report(feed);
+      // Warm up so class loading and pools are not counted against the collection.
+      BenchmarkParsers.load(report);
+      BenchmarkParsers.loadWithLazyDetail(report);
+      long before = usedHeap();
+      GeoFeatureCollection featureCollection = BenchmarkParsers.load(report);
+      print(feed, featureCollection, usedHeap() - before);
+      featureCollection = null;
+      before = usedHeap();
+      featureCollection = BenchmarkParsers.loadWithLazyDetail(report);
+      print(feed + " (lazy detail)", featureCollection, usedHeap() - before);
+      final GeoFeatureCollection source = BenchmarkParsers.load(report);
+      before = usedHeap();
+      final PackedGeoFeatureCollection packed = PackedGeoFeatureCollection.pack(source);
+      final long packedHeap = usedHeap() - before;
+      System.out.println(String.format("%s (packed): %d features, %d KB retained, %d KB off heap",
+                                       feed, packed.size(), packedHeap / 1024, packed.getPackedSize() / 1024));
+    }
+  }
+
+
+  private static void print(final String feed, final GeoFeatureCollection featureCollection, final long retained) {
+    System.out.println(String.format("%s: %d features, %d KB retained, %d bytes per feature",
+                                     feed, featureCollection.size(), retained / 1024, retained / featureCollection.size()));
+  }
+
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(100);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,55 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.brantapps.epicentre.model.ColumnarGeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Gives benchmarks outside of the handler package access to the parsers.
+ *
+ * @author David C Branton
+ */
+public final class BenchmarkParsers {
+
+  private BenchmarkParsers() { }
+
+
+  /**
+   * @param report  The report to load.
+   * @return the collection parsed from the report.
+   * @throws IOException  When the report cannot be read.
+   */
+  public static GeoFeatureCollection load(final File report) throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureBufferParser().parseFile(report, featureCollection);
+    return featureCollection;
+  }
+
+
+  /**
+   * @param report  The report to load.
+   * @return the collection parsed from the report with its detail fields left encoded.
+   * @throws IOException  When the report cannot be read.
+   */
+  public static GeoFeatureCollection loadWithLazyDetail(final File report) throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    final GeoFeatureBufferParser parser = new GeoFeatureBufferParser();
+    parser.setLazyDetail(true);
+    parser.parseFile(report, featureCollection);
+    return featureCollection;
+  }
+
+
+  /**
+   * @param report  The report to load.
+   * @return the columnar collection parsed from the report.
+   * @throws IOException  When the report cannot be read.
+   */
+  public static ColumnarGeoFeatureCollection loadColumnar(final File report) throws IOException {
+    final ColumnarGeoFeatureCollection featureCollection = new ColumnarGeoFeatureCollection();
+    new GeoFeatureBufferParser().parseFile(report, featureCollection);
+    return featureCollection;
+  }
+}
@@ -0,0 +1,143 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.brantapps.epicentre.benchmark.FeedFixtures;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Throughput of the USGS report parsers.
+ * <p>
+ * Run with <code>-prof gc</code> and divide <code>gc.alloc.rate.norm</code>
+ * by the feed size for the allocation per feature.
+ * </p>
+ * <p>
+ * Run <code>parseBufferInParallel</code> with <code>-p threads=1,2,4</code>
+ * for its speedup against the number of parsing threads.
+ * </p>
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeoFeatureParserBenchmark {
+  @Param({FeedFixtures.ASSET, "10000", "100000", "1000000"})
+  public String feed;
+
+  /** The parsing threads, or 0 for one per processor. */
+  @Param({"0"})
+  public int threads;
+
+  private final GeoFeatureParser parser = new GeoFeatureParser();
+  private final GeoFeatureBufferParser bufferParser = new GeoFeatureBufferParser();
+  private final GeoFeatureBufferParser lazyDetailParser = new GeoFeatureBufferParser();
+  private File report;
+  private MappedByteBuffer mappedReport;
+  private ExecutorService executor;
+
+
+  @Setup(Level.Trial)
+  public void prepareReport() throws IOException {
+    report = FeedFixtures.report(feed);
+    final RandomAccessFile file = new RandomAccessFile(report, "r");
+    try {
+      mappedReport = file.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+      mappedReport.load();
+    } finally {
+      file.close();
+    }
+    executor = Executors.newFixedThreadPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+    lazyDetailParser.setLazyDetail(true);
+  }
+
+
+  @TearDown(Level.Trial)
+  public void releaseExecutor() {
+    executor.shutdown();
+  }
+
+
+  @Benchmark
+  public GeoFeatureCollection parseResponse() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    final InputStream stream = new BufferedInputStream(new FileInputStream(report));
+    try {
+      parser.parseResponse(stream, featureCollection);
+    } finally {
+      stream.close();
+    }
+    return featureCollection;
+  }
+
+
+  @Benchmark
+  public GeoFeatureCollection streamResponse(final Blackhole blackhole) throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    final InputStream stream = new BufferedInputStream(new FileInputStream(report));
+    try {
+      parser.streamResponse(stream, featureCollection, new GeoFeatureSink() {
+        @Override
+        public void onFeature(final GeoFeature geoFeature) {
+          blackhole.consume(geoFeature);
+        }
+      });
+    } finally {
+      stream.close();
+    }
+    return featureCollection;
+  }
+
+
+  @Benchmark
+  public GeoFeatureCollection parseBuffer() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    bufferParser.parseBuffer(mappedReport, featureCollection);
+    return featureCollection;
+  }
+
+
+  @Benchmark
+  public GeoFeatureCollection parseBufferInParallel() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    bufferParser.parseBuffer(mappedReport, featureCollection, executor);
+    return featureCollection;
+  }
+
+
+  @Benchmark
+  public GeoFeatureCollection parseBufferWithLazyDetail() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    lazyDetailParser.parseBuffer(mappedReport, featureCollection);
+    return featureCollection;
+  }
+}
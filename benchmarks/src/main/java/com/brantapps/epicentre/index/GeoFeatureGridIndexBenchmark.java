@@ -0,0 +1,85 @@
+package com.brantapps.epicentre.index;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.brantapps.epicentre.benchmark.FeedFixtures;
+import com.brantapps.epicentre.handler.BenchmarkParsers;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Bounding box queries through the {@link GeoFeatureGridIndex}
+ * against a linear scan of the collection.
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeoFeatureGridIndexBenchmark {
+  @Param({"10000", "1000000"})
+  public String feed;
+
+  @Param({"california", "fiji"})
+  public String region;
+
+  private GeoFeatureCollection featureCollection;
+  private GeoFeatureGridIndex index;
+  private BoundingBox box;
+
+
+  @Setup(Level.Trial)
+  public void buildIndex() throws IOException {
+    featureCollection = BenchmarkParsers.load(FeedFixtures.report(feed));
+    index = new GeoFeatureGridIndex(featureCollection);
+    // The Fiji box crosses the antimeridian.
+    box = "fiji".equals(region) ? new BoundingBox(-25d, 170d, -10d, -170d) : new BoundingBox(30d, -125d, 45d, -110d);
+  }
+
+
+  @Benchmark
+  public int linearScan() {
+    int count = 0;
+    for (GeoFeature geoFeature : featureCollection) {
+      if (box.contains(geoFeature.getLatitude(), geoFeature.getLongitude())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  @Benchmark
+  public int indexCount() {
+    return index.count(box);
+  }
+
+
+  @Benchmark
+  public int[] indexQuery() {
+    return index.query(box);
+  }
+
+
+  @Benchmark
+  public GeoFeatureGridIndex build() {
+    return new GeoFeatureGridIndex(featureCollection);
+  }
+}
@@ -0,0 +1,86 @@
+package com.brantapps.epicentre.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.brantapps.epicentre.benchmark.FeedFixtures;
+import com.brantapps.epicentre.handler.BenchmarkParsers;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * The ten nearest quakes within 1000km of Tokyo through the
+ * {@link GeoFeatureKdTree} against a haversine scan of every row.
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeoFeatureKdTreeBenchmark {
+  private static final double LATITUDE = 35.68d;
+  private static final double LONGITUDE = 139.69d;
+  private static final double RADIUS = 1000d;
+
+  @Param({"10000", "1000000"})
+  public String feed;
+
+  private GeoFeatureCollection featureCollection;
+  private GeoFeatureKdTree tree;
+
+
+  @Setup(Level.Trial)
+  public void buildTree() throws IOException {
+    featureCollection = BenchmarkParsers.load(FeedFixtures.report(feed));
+    tree = new GeoFeatureKdTree(featureCollection);
+  }
+
+
+  @Benchmark
+  public List<Neighbour> nearest() {
+    return tree.nearest(LATITUDE, LONGITUDE, 10, RADIUS);
+  }
+
+
+  @Benchmark
+  public double haversineScan() {
+    // Only the closest is kept; a full top ten would cost more again.
+    double closest = Double.MAX_VALUE;
+    final double latitude = Math.toRadians(LATITUDE);
+    for (GeoFeature geoFeature : featureCollection) {
+      final double dLatitude = Math.toRadians(geoFeature.getLatitude()) - latitude;
+      final double dLongitude = Math.toRadians(geoFeature.getLongitude() - LONGITUDE);
+      final double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+          + Math.cos(latitude) * Math.cos(Math.toRadians(geoFeature.getLatitude()))
+          * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+      final double distance = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * GeoFeatureKdTree.EARTH_RADIUS;
+      if (distance <= RADIUS && distance < closest) {
+        closest = distance;
+      }
+    }
+    return closest;
+  }
+
+
+  @Benchmark
+  public GeoFeatureKdTree build() {
+    return new GeoFeatureKdTree(featureCollection);
+  }
+}
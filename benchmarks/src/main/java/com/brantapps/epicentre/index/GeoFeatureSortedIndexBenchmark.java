@@ -0,0 +1,84 @@
+package com.brantapps.epicentre.index;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.brantapps.epicentre.benchmark.FeedFixtures;
+import com.brantapps.epicentre.handler.BenchmarkParsers;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * "M5.5 to 7 in the last 72 hours" through the {@link GeoFeatureSortedIndex}
+ * against a linear scan of the collection.
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeoFeatureSortedIndexBenchmark {
+  private static final long SEVENTY_TWO_HOURS = TimeUnit.HOURS.toMillis(72);
+
+  @Param({"10000", "1000000"})
+  public String feed;
+
+  private GeoFeatureCollection featureCollection;
+  private GeoFeatureSortedIndex index;
+  private long from;
+  private long to;
+
+
+  @Setup(Level.Trial)
+  public void buildIndex() throws IOException {
+    featureCollection = BenchmarkParsers.load(FeedFixtures.report(feed));
+    index = new GeoFeatureSortedIndex(featureCollection);
+    to = Long.MIN_VALUE;
+    for (GeoFeature geoFeature : featureCollection) {
+      to = Math.max(to, geoFeature.getTimeInMillis());
+    }
+    from = to - SEVENTY_TWO_HOURS;
+  }
+
+
+  @Benchmark
+  public int linearScan() {
+    int count = 0;
+    for (GeoFeature geoFeature : featureCollection) {
+      final double magnitude = geoFeature.getMagnitude();
+      final long time = geoFeature.getTimeInMillis();
+      if (magnitude >= 5.5d && magnitude <= 7d && time >= from && time <= to) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  @Benchmark
+  public int[] indexQuery() {
+    return index.byMagnitudeAndTime(5.5d, 7d, from, to);
+  }
+
+
+  @Benchmark
+  public GeoFeatureSortedIndex build() {
+    return new GeoFeatureSortedIndex(featureCollection);
+  }
+}
@@ -0,0 +1,103 @@
+package com.brantapps.epicentre.model;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.brantapps.epicentre.benchmark.FeedFixtures;
+import com.brantapps.epicentre.handler.BenchmarkParsers;
+
+/**
+ * Scans over a loaded {@link GeoFeatureCollection}.
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeoFeatureCollectionBenchmark {
+  @Param({FeedFixtures.ASSET, "10000", "100000", "1000000"})
+  public String feed;
+
+  private GeoFeatureCollection featureCollection;
+  private ColumnarGeoFeatureCollection columnarCollection;
+
+
+  @Setup(Level.Trial)
+  public void loadCollection() throws IOException {
+    featureCollection = BenchmarkParsers.load(FeedFixtures.report(feed));
+    columnarCollection = BenchmarkParsers.loadColumnar(FeedFixtures.report(feed));
+  }
+
+
+  @Benchmark
+  public double iterateMagnitudes() {
+    double total = 0d;
+    for (GeoFeature geoFeature : featureCollection) {
+      total += geoFeature.getMagnitude();
+    }
+    return total;
+  }
+
+
+  @Benchmark
+  public double indexMagnitudes() {
+    double total = 0d;
+    for (int i = 0; i < featureCollection.size(); i++) {
+      total += featureCollection.get(i).getMagnitude();
+    }
+    return total;
+  }
+
+
+  @Benchmark
+  public int countInBoundingBox() {
+    int count = 0;
+    for (GeoFeature geoFeature : featureCollection) {
+      if (geoFeature.getLatitude() >= 30d && geoFeature.getLatitude() <= 45d
+          && geoFeature.getLongitude() >= -125d && geoFeature.getLongitude() <= -110d) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  @Benchmark
+  public double columnarMagnitudes() {
+    double total = 0d;
+    for (int i = 0; i < columnarCollection.size(); i++) {
+      total += columnarCollection.getMagnitude(i);
+    }
+    return total;
+  }
+
+
+  @Benchmark
+  public int columnarCountInBoundingBox() {
+    int count = 0;
+    for (int i = 0; i < columnarCollection.size(); i++) {
+      final double latitude = columnarCollection.getLatitude(i);
+      final double longitude = columnarCollection.getLongitude(i);
+      if (latitude >= 30d && latitude <= 45d && longitude >= -125d && longitude <= -110d) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,80 @@
+package com.brantapps.epicentre.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of the feed codes with the model <code>safeValueOf</code> methods.
+ *
+ * @author David C Branton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SafeValueOfBenchmark {
+
+  /**
+   * A matching code in the feed's case, a matching code in another case,
+   * an unknown code and a missing code.
+   */
+  @Param({"match", "otherCase", "unknown", "null"})
+  public String input;
+
+  private String alertLevel;
+  private String reviewStatus;
+  private String geoJsonType;
+
+
+  @Setup
+  public void chooseCodes() {
+    if ("match".equals(input)) {
+      alertLevel = "orange";
+      reviewStatus = "REVIEWED";
+      geoJsonType = "Point";
+    } else if ("otherCase".equals(input)) {
+      alertLevel = "ORANGE";
+      reviewStatus = "reviewed";
+      geoJsonType = "POINT";
+    } else if ("unknown".equals(input)) {
+      alertLevel = "purple";
+      reviewStatus = "DELETED";
+      geoJsonType = "Polygon";
+    } else {
+      alertLevel = null;
+      reviewStatus = null;
+      geoJsonType = null;
+    }
+  }
+
+
+  @Benchmark
+  public PagerAlertLevel pagerAlertLevel() {
+    return PagerAlertLevel.safeValueOf(alertLevel);
+  }
+
+
+  @Benchmark
+  public ReviewStatus reviewStatus() {
+    return ReviewStatus.safeValueOf(reviewStatus);
+  }
+
+
+  @Benchmark
+  public GeoJsonType geoJsonType() {
+    return GeoJsonType.safeValueOf(geoJsonType);
+  }
+}
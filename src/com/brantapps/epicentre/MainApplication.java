@@ -10,6 +10,7 @@ import android.database.sqlite.SQLiteException;
 import android.support.v4.content.LocalBroadcastManager;
 
 import com.brantapps.epicentre.events.CreatedDatabaseReceiver;
+import com.brantapps.epicentre.service.DatabaseWriter;
 
 import dagger.ObjectGraph;
 
@@ -33,7 +34,7 @@ public class MainApplication extends Application {
     super.onCreate();
     objectGraph = ObjectGraph.create(new EpicentreModule(this));
     try {
-      database = SQLiteDatabase.openDatabase("/data/data/com.brantapps.epicentre/databases/epicentre.db", null, SQLiteDatabase.OPEN_READWRITE);
+      database = openDatabase();
     } catch (SQLiteException e) {
       // DB creation will occur.
       openDatabaseReceiver = new OpenDatabaseReceiver();
@@ -72,6 +73,18 @@ public class MainApplication extends Application {
   }
 
 
+  /**
+   * Open the database with write-ahead logging so the map can read
+   * while a synchronisation writes.
+   */
+  private static SQLiteDatabase openDatabase() {
+    final SQLiteDatabase openDatabase =
+        SQLiteDatabase.openDatabase("/data/data/com.brantapps.epicentre/databases/epicentre.db", null, SQLiteDatabase.OPEN_READWRITE);
+    DatabaseWriter.enableWriteAheadLogging(openDatabase);
+    return openDatabase;
+  }
+
+
   /**
    * Inject a components dependencies.
    *
@@ -99,7 +112,7 @@ public class MainApplication extends Application {
      */
     @Override
     public void onReceive(final Context context, final Intent intent) {
-      database = SQLiteDatabase.openDatabase("/data/data/com.brantapps.epicentre/databases/epicentre.db", null, SQLiteDatabase.OPEN_READWRITE);
+      database = openDatabase();
       LocalBroadcastManager.getInstance(context).unregisterReceiver(openDatabaseReceiver);
       // Broadcast event indicating that the creation process has completed.
       final Intent databaseReady = new Intent();
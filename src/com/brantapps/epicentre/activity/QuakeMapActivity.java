@@ -6,6 +6,9 @@ import java.util.List;
 
 import javax.inject.Inject;
 
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
 import android.app.ActivityManager;
 import android.app.ActivityManager.RunningServiceInfo;
 import android.content.BroadcastReceiver;
@@ -32,7 +35,7 @@ import com.brantapps.epicentre.events.SychroniseReportReceiver;
 import com.brantapps.epicentre.model.GeoFeature;
 import com.brantapps.epicentre.model.GeoFeatureCollection;
 import com.brantapps.epicentre.service.GeoFeatureCollectionService;
-import com.brantapps.epicentre.service.GeoFeatureService;
+import com.brantapps.epicentre.service.GeoFeatureProjection;
 import com.brantapps.epicentre.task.SynchroniseReportService;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
@@ -50,13 +53,13 @@ import de.keyboardsurfer.android.widget.crouton.Style;
  * @author David C Branton
  */
 public class QuakeMapActivity extends SherlockFragmentActivity {
+  private static final DateTimeFormatter SNIPPET_TIME_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm");
   private RefreshMapWithNewReportReceiver refreshMapWithNewReportReceiver;
   private SychroniseReportReceiver synchroniseReportReciever;
   private boolean hasStartedSync;
   private GoogleMap mapFragment;
   @Inject SQLiteDatabase database;
   @Inject GeoFeatureCollectionService geoFeatureCollectionService;
-  @Inject GeoFeatureService geoFeatureService;
 
   /**
    * @see android.app.Activity#onCreate(android.os.Bundle)
@@ -168,13 +171,14 @@ public class QuakeMapActivity extends SherlockFragmentActivity {
       final BitmapDescriptor amberBitmapDescriptor = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_ORANGE);
       final BitmapDescriptor blueBitmapDescriptor = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE);
       final BitmapDescriptor violetBitmapDescriptor = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_VIOLET);
-      final GeoFeatureCollection collection = geoFeatureCollectionService.load(collectionId);
+      final GeoFeatureCollection collection = geoFeatureCollectionService.load(collectionId, GeoFeatureProjection.MARKER);
 
       getSupportActionBar()
       .setSubtitle(String.format(getString(string.displayed_report_title,
                    collection.getTitle(),
                    collection.getGenerated().toString())));
-      for (GeoFeature feature : geoFeatureService.list(collectionId)) {
+      // Only the marker columns are read, and cached across rotations and resumes.
+      for (GeoFeature feature : collection) {
         final BitmapDescriptor markerColour;
         if (feature.getMagnitude() < 4) {
           markerColour = blueBitmapDescriptor;
@@ -188,7 +192,7 @@ public class QuakeMapActivity extends SherlockFragmentActivity {
         mapFragment.addMarker(new MarkerOptions()
         .position(new LatLng(feature.getLatitude(), feature.getLongitude()))
         .title(String.format(getString(string.map_balloon_title), feature.getMagnitude(), feature.getLocation()))
-        .snippet(String.format(getString(string.map_snippet_title), feature.getTime().toString("yyyy-MM-dd HH:mm")))
+        .snippet(String.format(getString(string.map_snippet_title), SNIPPET_TIME_FORMAT.print(feature.getTimeInMillis())))
         .icon(markerColour));
       }
     } else {
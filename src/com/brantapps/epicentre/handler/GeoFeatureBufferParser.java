@@ -0,0 +1,568 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDateTime;
+import org.joda.time.Period;
+
+import android.util.Log;
+
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoFeatureDetail;
+import com.brantapps.epicentre.model.GeoJsonType;
+import com.brantapps.epicentre.model.ReviewStatus;
+
+/**
+ * USGS earthquake event (a 'GeoFeature') parser working
+ * directly on the UTF-8 bytes of the report.
+ * <p>
+ * This fills the same {@link GeoFeatureCollection} as the {@link GeoFeatureParser}
+ * but scans a {@link ByteBuffer}, such as a memory mapped export or a pooled
+ * direct buffer, without first decoding the whole report into characters.
+ * Numbers are read straight from the bytes.
+ * </p>
+ * <p>
+ * With {@link #setLazyDetail(boolean)} the features only have their position,
+ * magnitude, location, times and code assigned as fields. The rest are held
+ * as an encoded {@link GeoFeatureDetail} and decoded on first use, which
+ * suits consumers such as the map that never look at them.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class GeoFeatureBufferParser {
+  private static final byte[] METADATA = name("metadata");
+  private static final byte[] FEATURES = name("features");
+  private static final byte[] GENERATED = name("generated");
+  private static final byte[] URL_NAME = name("url");
+  private static final byte[] TITLE = name("title");
+  private static final byte[] SUB_TITLE = name("subTitle");
+  private static final byte[] CACHE_MAX_AGE = name("cacheMaxAge");
+  private static final byte[] COUNT = name("count");
+  private static final byte[] PROPERTIES = name("properties");
+  private static final byte[] GEOMETRY = name("geometry");
+  private static final byte[] TYPE = name("type");
+  private static final byte[] COORDINATES = name("coordinates");
+  private static final byte[] MAG = name("mag");
+  private static final byte[] PLACE = name("place");
+  private static final byte[] TIME = name("time");
+  private static final byte[] UPDATED = name("updated");
+  private static final byte[] TZ = name("tz");
+  private static final byte[] FELT = name("felt");
+  private static final byte[] CDI = name("cdi");
+  private static final byte[] MMI = name("mmi");
+  private static final byte[] STATUS = name("status");
+  private static final byte[] TSUNAMI = name("tsunami");
+  private static final byte[] SIG = name("sig");
+  private static final byte[] NET = name("net");
+  private static final byte[] CODE = name("code");
+  private static final byte[] SOURCES = name("sources");
+  private static final byte[] NST = name("nst");
+  private static final byte[] DMIN = name("dmin");
+  private static final byte[] MAGNITUDE_TYPE = name("magnitudeType");
+  private static final int MIN_FEATURES_PER_TASK = 256;
+
+  private boolean lazyDetail;
+
+  @Inject GeoFeatureBufferParser() { }
+
+
+  /**
+   * @param lazyDetail  Whether to hold the detail fields of each feature
+   *                    encoded until they are first used.
+   */
+  public void setLazyDetail(final boolean lazyDetail) {
+    this.lazyDetail = lazyDetail;
+  }
+
+
+  /**
+   * Parse a GeoJSON report held in a file by memory mapping it.
+   *
+   * @param file  The report file.
+   * @param featureCollection The {@link GeoFeature} list to populate.
+   * @throws IOException  When the file cannot be mapped or is malformed.
+   */
+  public void parseFile(final File file, final GeoFeatureCollection featureCollection) throws IOException {
+    final FileInputStream stream = new FileInputStream(file);
+    try {
+      final FileChannel channel = stream.getChannel();
+      parseBuffer(channel.map(MapMode.READ_ONLY, 0, channel.size()), featureCollection);
+    } finally {
+      stream.close();
+    }
+  }
+
+
+  /**
+   * Parse the GeoJSON response from USGS held in a buffer.
+   * <p>
+   * The remaining bytes of the buffer are parsed. Its position and limit
+   * are left untouched.
+   * </p>
+   *
+   * @param buffer  The UTF-8 encoded report.
+   * @param featureCollection The {@link GeoFeature} list to populate.
+   * @throws IOException  When the report is malformed.
+   */
+  public void parseBuffer(final ByteBuffer buffer, final GeoFeatureCollection featureCollection) throws IOException {
+    final GeoJsonScanner scanner = new GeoJsonScanner(buffer);
+    final FeatureFields fields = new FeatureFields();
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(METADATA)) {
+        readMetaData(scanner, featureCollection);
+      } else if (scanner.nameEquals(FEATURES)) {
+        if (!scanner.nextNull()) {
+          scanner.beginArray();
+          while (scanner.hasNext()) {
+            featureCollection.add(readFeature(scanner, fields));
+          }
+          scanner.endArray();
+        }
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+  }
+
+
+  /**
+   * Parse the GeoJSON response from USGS held in a buffer, reading
+   * the features on the threads of an executor.
+   * <p>
+   * The metadata and the boundaries of each feature object are found on
+   * the calling thread. Runs of features are then parsed as separate tasks
+   * and merged back into the collection in their original order. A fixed
+   * thread pool sized to the number of cores suits large archive imports.
+   * </p>
+   *
+   * @param buffer  The UTF-8 encoded report.
+   * @param featureCollection The {@link GeoFeature} list to populate.
+   * @param executor  The executor to run the parsing tasks on.
+   * @throws IOException  When the report is malformed or the parse is interrupted.
+   */
+  public void parseBuffer(final ByteBuffer buffer,
+                          final GeoFeatureCollection featureCollection,
+                          final ExecutorService executor) throws IOException {
+    parseBuffer(buffer, featureCollection, executor, 0);
+  }
+
+
+  /**
+   * @see #parseBuffer(ByteBuffer, GeoFeatureCollection, ExecutorService)
+   *
+   * @param featuresPerTask The number of features each task parses, or zero to size
+   *                        the tasks from the number of features and cores.
+   */
+  void parseBuffer(final ByteBuffer buffer,
+                   final GeoFeatureCollection featureCollection,
+                   final ExecutorService executor,
+                   final int featuresPerTask) throws IOException {
+    final FeatureBoundaries boundaries = new FeatureBoundaries();
+    final GeoJsonScanner scanner = new GeoJsonScanner(buffer);
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(METADATA)) {
+        readMetaData(scanner, featureCollection);
+      } else if (scanner.nameEquals(FEATURES)) {
+        if (!scanner.nextNull()) {
+          scanner.beginArray();
+          while (scanner.hasNext()) {
+            scanner.peek();
+            final int start = scanner.position();
+            scanner.skipValue();
+            boundaries.add(start, scanner.position());
+          }
+          scanner.endArray();
+        }
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+
+    final int taskSize = featuresPerTask > 0 ? featuresPerTask : taskSize(boundaries.count);
+    final List<Future<List<GeoFeature>>> results = new ArrayList<Future<List<GeoFeature>>>();
+    for (int first = 0; first < boundaries.count; first += taskSize) {
+      final int last = Math.min(first + taskSize, boundaries.count) - 1;
+      results.add(executor.submit(new FeatureRunParser(buffer.duplicate(),
+                                                       boundaries.starts[first],
+                                                       boundaries.ends[last],
+                                                       last - first + 1)));
+    }
+    try {
+      for (Future<List<GeoFeature>> result : results) {
+        featureCollection.addAll(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted whilst parsing features.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      for (Future<List<GeoFeature>> result : results) {
+        result.cancel(true);
+      }
+    }
+  }
+
+
+  private static int taskSize(final int featureCount) {
+    // A few tasks per core evens out the uneven feature sizes.
+    final int tasks = Runtime.getRuntime().availableProcessors() * 4;
+    return Math.max(MIN_FEATURES_PER_TASK, (featureCount + tasks - 1) / tasks);
+  }
+
+
+  private void readMetaData(final GeoJsonScanner scanner, final GeoFeatureCollection featureCollection) throws IOException {
+    if (scanner.nextNull()) {
+      return;
+    }
+    long generated = 0L;
+    int cacheMaxAge = 0;
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(GENERATED)) {
+        generated = scanner.nextLong();
+      } else if (scanner.nameEquals(URL_NAME)) {
+        featureCollection.setUrl(toUrl(scanner.nextString()));
+      } else if (scanner.nameEquals(TITLE)) {
+        featureCollection.setTitle(scanner.nextString());
+      } else if (scanner.nameEquals(SUB_TITLE)) {
+        featureCollection.setSubTitle(scanner.nextString());
+      } else if (scanner.nameEquals(CACHE_MAX_AGE)) {
+        cacheMaxAge = scanner.nextInt();
+      } else if (scanner.nameEquals(COUNT)) {
+        featureCollection.ensureCapacity(scanner.nextInt());
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+    featureCollection.setGenerated(new LocalDateTime(generated));
+    featureCollection.setCacheMaxAge(Period.hours(cacheMaxAge/100));
+  }
+
+
+  /**
+   * Read the feature object the scanner is positioned at.
+   *
+   * @param scanner The scanner positioned at the start of a feature.
+   * @param fields  Reusable holder for the feature values.
+   * @return the parsed {@link GeoFeature}.
+   * @throws IOException  When the feature is malformed.
+   */
+  GeoFeature readFeature(final GeoJsonScanner scanner, final FeatureFields fields) throws IOException {
+    fields.reset();
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(PROPERTIES)) {
+        readProperties(scanner, fields);
+      } else if (scanner.nameEquals(GEOMETRY)) {
+        readGeometry(scanner, fields);
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+    return lazyDetail ? fields.toGeoFeatureWithEncodedDetail() : fields.toGeoFeature();
+  }
+
+
+  private void readProperties(final GeoJsonScanner scanner, final FeatureFields fields) throws IOException {
+    if (scanner.nextNull()) {
+      return;
+    }
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(MAG)) {
+        fields.mag = scanner.nextDouble();
+      } else if (scanner.nameEquals(PLACE)) {
+        fields.place = scanner.nextString();
+      } else if (scanner.nameEquals(TIME)) {
+        fields.time = scanner.nextLong();
+      } else if (scanner.nameEquals(UPDATED)) {
+        fields.updated = scanner.nextLong();
+      } else if (scanner.nameEquals(TZ)) {
+        fields.tz = scanner.nextInt();
+      } else if (scanner.nameEquals(URL_NAME)) {
+        fields.url = scanner.nextString();
+      } else if (scanner.nameEquals(FELT)) {
+        fields.felt = scanner.nextInt();
+      } else if (scanner.nameEquals(CDI)) {
+        fields.cdi = scanner.nextNullableDouble();
+      } else if (scanner.nameEquals(MMI)) {
+        fields.mmi = scanner.nextNullableDouble();
+      } else if (scanner.nameEquals(STATUS)) {
+        final String status = scanner.nextString(StringPool.SHARED);
+        fields.status = status == null ? null : ReviewStatus.safeValueOf(status);
+      } else if (scanner.nameEquals(TSUNAMI)) {
+        fields.tsunami = scanner.nextNullableBoolean();
+      } else if (scanner.nameEquals(SIG)) {
+        fields.sig = scanner.nextInt();
+      } else if (scanner.nameEquals(NET)) {
+        fields.net = scanner.nextString(StringPool.SHARED);
+      } else if (scanner.nameEquals(CODE)) {
+        fields.code = scanner.nextString();
+      } else if (scanner.nameEquals(SOURCES)) {
+        fields.sources = StringPool.SHARED.splitContributors(scanner.nextString(StringPool.SHARED));
+      } else if (scanner.nameEquals(NST)) {
+        fields.nst = scanner.nextInt();
+      } else if (scanner.nameEquals(DMIN)) {
+        fields.dmin = scanner.nextDouble();
+      } else if (scanner.nameEquals(MAGNITUDE_TYPE)) {
+        fields.magnitudeType = scanner.nextString(StringPool.SHARED);
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+  }
+
+
+  private void readGeometry(final GeoJsonScanner scanner, final FeatureFields fields) throws IOException {
+    if (scanner.nextNull()) {
+      return;
+    }
+    scanner.beginObject();
+    while (scanner.hasNext()) {
+      scanner.nextName();
+      if (scanner.nameEquals(TYPE)) {
+        final String type = scanner.nextString(StringPool.SHARED);
+        fields.type = type == null ? null : GeoJsonType.safeValueOf(type);
+      } else if (scanner.nameEquals(COORDINATES)) {
+        readCoordinates(scanner, fields.coordinates);
+      } else {
+        scanner.skipValue();
+      }
+    }
+    scanner.endObject();
+  }
+
+
+  private void readCoordinates(final GeoJsonScanner scanner, final double[] coordinates) throws IOException {
+    if (scanner.nextNull()) {
+      return;
+    }
+    // Longitude, latitude and depth.
+    int index = 0;
+    scanner.beginArray();
+    while (scanner.hasNext()) {
+      final double coordinate = scanner.nextDouble();
+      if (index < coordinates.length) {
+        coordinates[index] = coordinate;
+      }
+      index++;
+    }
+    scanner.endArray();
+  }
+
+
+  private static URL toUrl(final String spec) {
+    if (spec == null) {
+      return null;
+    }
+    try {
+      return new URL(spec);
+    } catch (MalformedURLException e) {
+      Log.e(GeoFeatureBufferParser.class.getSimpleName(), String.format("Malformed URL with spec, [%s]", spec));
+    }
+    return null;
+  }
+
+
+  private static byte[] name(final String name) {
+    try {
+      return name.getBytes("US-ASCII");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  /**
+   * Parses a run of consecutive features.
+   *
+   * @author David C Branton
+   */
+  private class FeatureRunParser implements Callable<List<GeoFeature>> {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final int count;
+
+    FeatureRunParser(final ByteBuffer buffer, final int start, final int end, final int count) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+      this.count = count;
+    }
+
+    /**
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public List<GeoFeature> call() throws IOException {
+      final List<GeoFeature> geoFeatures = new ArrayList<GeoFeature>(count);
+      final GeoJsonScanner scanner = new GeoJsonScanner(buffer, start, end);
+      final FeatureFields fields = new FeatureFields();
+      for (int i = 0; i < count; i++) {
+        // The separating comma is consumed before every feature but the first.
+        scanner.hasNext();
+        geoFeatures.add(readFeature(scanner, fields));
+      }
+      return geoFeatures;
+    }
+  }
+
+
+  /**
+   * The absolute start and end index of every feature object in a buffer.
+   *
+   * @author David C Branton
+   */
+  private static final class FeatureBoundaries {
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int count;
+
+    void add(final int start, final int end) {
+      if (count == starts.length) {
+        final int[] grownStarts = new int[count * 2];
+        final int[] grownEnds = new int[count * 2];
+        System.arraycopy(starts, 0, grownStarts, 0, count);
+        System.arraycopy(ends, 0, grownEnds, 0, count);
+        starts = grownStarts;
+        ends = grownEnds;
+      }
+      starts[count] = start;
+      ends[count] = end;
+      count++;
+    }
+  }
+
+
+  /**
+   * Holds the values of one feature while it is being read since
+   * the geometry and properties may arrive in either order.
+   *
+   * @author David C Branton
+   */
+  static final class FeatureFields {
+    final double[] coordinates = new double[3];
+    GeoJsonType type;
+    double mag;
+    String place;
+    long time;
+    long updated;
+    int tz;
+    String url;
+    int felt;
+    Double cdi;
+    Double mmi;
+    ReviewStatus status;
+    Boolean tsunami;
+    int sig;
+    String net;
+    String code;
+    String[] sources;
+    int nst;
+    double dmin;
+    String magnitudeType;
+    private GeoFeatureDetail.Encoder encoder;
+
+    void reset() {
+      coordinates[0] = 0d;
+      coordinates[1] = 0d;
+      coordinates[2] = 0d;
+      type = null;
+      mag = 0d;
+      place = null;
+      time = 0L;
+      updated = 0L;
+      tz = 0;
+      url = null;
+      felt = 0;
+      cdi = null;
+      mmi = null;
+      status = null;
+      tsunami = null;
+      sig = 0;
+      net = null;
+      code = null;
+      sources = null;
+      nst = 0;
+      dmin = 0d;
+      magnitudeType = null;
+    }
+
+    GeoFeature toGeoFeature() {
+      final GeoFeature geoFeature = new GeoFeature(type, coordinates[1], coordinates[0]);
+      geoFeature.setDepth(coordinates[2]);
+      geoFeature.setMagnitude(mag);
+      geoFeature.setLocation(place);
+      geoFeature.setTimezoneOffset(tz);
+      geoFeature.setTime(time);
+      geoFeature.setUpdatedTime(updated);
+      geoFeature.setEventPageUrl(toUrl(url));
+      geoFeature.setNoOfEyeWitnessReports(felt);
+      geoFeature.setMaximumReportedIntensity(cdi);
+      geoFeature.setMaximumInstrumentedIntensity(mmi);
+      geoFeature.setReviewStatus(status);
+      geoFeature.setGeneratingTsunami(tsunami);
+      geoFeature.setSignificance(sig);
+      geoFeature.setContributorId(net);
+      geoFeature.setContributors(sources);
+      geoFeature.setNoOfStationsReportingEvent(nst);
+      geoFeature.setMinDistFromEpicentreToStation(dmin);
+      geoFeature.setMagnitudeType(magnitudeType);
+      geoFeature.setCode(code);
+      return geoFeature;
+    }
+
+    GeoFeature toGeoFeatureWithEncodedDetail() {
+      final GeoFeature geoFeature = new GeoFeature(type, coordinates[1], coordinates[0]);
+      geoFeature.setDepth(coordinates[2]);
+      geoFeature.setMagnitude(mag);
+      geoFeature.setLocation(place);
+      geoFeature.setTimezoneOffset(tz);
+      geoFeature.setTime(time);
+      geoFeature.setUpdatedTime(updated);
+      geoFeature.setCode(code);
+      if (encoder == null) {
+        encoder = new GeoFeatureDetail.Encoder();
+      }
+      geoFeature.setEncodedDetail(encoder.encode(url, felt, cdi, mmi, null, status, tsunami, sig,
+                                                 net, sources, nst, dmin, magnitudeType));
+      return geoFeature;
+    }
+  }
+}
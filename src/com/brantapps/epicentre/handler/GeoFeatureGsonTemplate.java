@@ -38,6 +38,7 @@ public class GeoFeatureGsonTemplate {
     @SerializedName("title") String title;
     @SerializedName("subTitle") String subTitle;
     @SerializedName("cacheMaxAge") int cacheMaxAge;
+    @SerializedName("count") int count;
   }
 
 
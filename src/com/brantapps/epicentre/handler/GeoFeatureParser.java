@@ -3,32 +3,18 @@ package com.brantapps.epicentre.handler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.charset.Charset;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringUtils;
-import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
 import org.joda.time.Period;
 
-import android.util.Log;
-
 import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.Feature;
+import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.MetaData;
 import com.brantapps.epicentre.model.GeoFeature;
 import com.brantapps.epicentre.model.GeoFeatureCollection;
-import com.brantapps.epicentre.model.GeoJsonType;
-import com.brantapps.epicentre.model.PagerAlertLevel;
-import com.brantapps.epicentre.model.ReviewStatus;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 
 /**
@@ -38,6 +24,7 @@ import com.google.gson.stream.JsonReader;
  * @author David C Branton
  */
 public class GeoFeatureParser {
+  private static final Gson GSON = GeoFeatureTypeAdapters.createGson();
   @Inject GeoFeatureParser() { }
 
   /**
@@ -49,118 +36,97 @@ public class GeoFeatureParser {
    */
   public void parseResponse(final InputStream stream, final GeoFeatureCollection featureCollection) throws IOException {
     final JsonReader reader = new JsonReader(new InputStreamReader(stream, Charset.forName("UTF-8")));
-    final Gson gsonBuilder = new GsonBuilder()
-      .registerTypeAdapter(URL.class, new UrlDeserializer())
-      .registerTypeAdapter(String[].class, new ContributorsDeserializer())
-      .registerTypeAdapter(PagerAlertLevel.class, new PagerAlertLevelDeserializer())
-      .registerTypeAdapter(ReviewStatus.class, new ReviewStatusDeserializer())
-      .registerTypeAdapter(GeoJsonType.class, new GeoJsonTypeDeserializer())
-      .create();
-    final GeoFeatureGsonTemplate message = gsonBuilder.fromJson(reader, GeoFeatureGsonTemplate.class);
+    final GeoFeatureGsonTemplate message = GSON.fromJson(reader, GeoFeatureGsonTemplate.class);
     reader.close();
 
-    featureCollection.setGenerated(new LocalDateTime(message.metadata.generated));
-    featureCollection.setTitle(message.metadata.title);
-    featureCollection.setSubTitle(message.metadata.subTitle);
-    featureCollection.setUrl(message.metadata.url);
-    featureCollection.setCacheMaxAge(Period.hours(message.metadata.cacheMaxAge/100));
-
+    populateMetaData(message.metadata, featureCollection);
+    featureCollection.ensureCapacity(message.features.size());
     for (Feature feature : message.features) {
-      final GeoFeature geoFeature =
-          new GeoFeature(feature.geometry.type,
-                         feature.geometry.coordinates[1],
-                         feature.geometry.coordinates[0]);
-      geoFeature.setDepth(feature.geometry.coordinates[2]);
-      geoFeature.setMagnitude(feature.properties.mag);
-      geoFeature.setLocation(feature.properties.place);
-      final DateTimeZone timezone = DateTimeZone.forOffsetHours(feature.properties.tz/60);
-      geoFeature.setTime(new LocalDateTime(feature.properties.time, timezone));
-      geoFeature.setUpdatedTime(new LocalDateTime(feature.properties.updated, timezone));
-      geoFeature.setEventPageUrl(feature.properties.url);
-      geoFeature.setNoOfEyeWitnessReports(feature.properties.felt);
-      geoFeature.setMaximumReportedIntensity(feature.properties.cdi);
-      geoFeature.setMaximumInstrumentedIntensity(feature.properties.mmi);
-      geoFeature.setReviewStatus(feature.properties.status);
-      geoFeature.setGeneratingTsunami(feature.properties.tsunami);
-      geoFeature.setSignificance(feature.properties.sig);
-      geoFeature.setContributorId(feature.properties.net);
-      geoFeature.setContributors(feature.properties.sources);
-      geoFeature.setNoOfStationsReportingEvent(feature.properties.nst);
-      geoFeature.setMinDistFromEpicentreToStation(feature.properties.dmin);
-      geoFeature.setMagnitudeType(feature.properties.magnitudeType);
-      geoFeature.setCode(feature.properties.code);
-      featureCollection.add(geoFeature);
+      featureCollection.add(buildGeoFeature(feature));
     }
   }
 
-  private class UrlDeserializer implements JsonDeserializer<URL> {
 
-    /**
-     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
-     */
-    @Override
-    public URL deserialize(final JsonElement json,
-                           final Type typeOfT,
-                           final JsonDeserializationContext context) throws JsonParseException {
-      try {
-        return new URL(json.getAsString());
-      } catch (MalformedURLException e) {
-        Log.e(this.getClass().getSimpleName(), String.format("Malformed URL with spec, [%s]", json.getAsString()));
+  /**
+   * Parse the GeoJSON response from USGS one feature at a time.
+   * <p>
+   * Unlike {@link #parseResponse(InputStream, GeoFeatureCollection)} the
+   * whole report is never held in memory. Each {@link GeoFeature} is handed
+   * to the sink as soon as its element in the "features" array has been read
+   * and the report metadata is assigned to the collection wherever it appears
+   * in the stream.
+   * </p>
+   *
+   * @param stream  The input stream.
+   * @param featureCollection The collection to receive the report metadata. No features are added to it.
+   * @param sink  The receiver of each {@link GeoFeature}.
+   * @throws IOException  When the stream cannot be read or the sink fails.
+   */
+  public void streamResponse(final InputStream stream,
+                             final GeoFeatureCollection featureCollection,
+                             final GeoFeatureSink sink) throws IOException {
+    final JsonReader reader = new JsonReader(new InputStreamReader(stream, Charset.forName("UTF-8")));
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        final String name = reader.nextName();
+        if ("metadata".equals(name)) {
+          final MetaData metaData = GSON.fromJson(reader, MetaData.class);
+          populateMetaData(metaData, featureCollection);
+        } else if ("features".equals(name)) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            final Feature feature = GSON.fromJson(reader, Feature.class);
+            sink.onFeature(buildGeoFeature(feature));
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
       }
-      return null;
+      reader.endObject();
+    } finally {
+      reader.close();
     }
   }
 
-  private class ContributorsDeserializer implements JsonDeserializer<String[]> {
 
-    /**
-     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
-     */
-    @Override
-    public String[] deserialize(final JsonElement json,
-                                final Type typeOfT,
-                                final JsonDeserializationContext context) throws JsonParseException {
-      return StringUtils.split(json.getAsString(), ",");
+  private void populateMetaData(final MetaData metaData, final GeoFeatureCollection featureCollection) {
+    if (metaData == null) {
+      return;
     }
+    featureCollection.setGenerated(new LocalDateTime(metaData.generated));
+    featureCollection.setTitle(metaData.title);
+    featureCollection.setSubTitle(metaData.subTitle);
+    featureCollection.setUrl(metaData.url);
+    featureCollection.setCacheMaxAge(Period.hours(metaData.cacheMaxAge/100));
   }
 
 
-  private class PagerAlertLevelDeserializer implements JsonDeserializer<PagerAlertLevel> {
-
-    /**
-     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
-     */
-    @Override
-    public PagerAlertLevel deserialize(final JsonElement json,
-                                       final Type typeOfT,
-                                       final JsonDeserializationContext context) throws JsonParseException {
-      return PagerAlertLevel.safeValueOf(json.getAsString());
-    }
-  }
-
-  private class ReviewStatusDeserializer implements JsonDeserializer<ReviewStatus> {
-
-    /**
-     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
-     */
-    @Override
-    public ReviewStatus deserialize(final JsonElement json,
-                                    final Type typeOfT,
-                                    final JsonDeserializationContext context) throws JsonParseException {
-      return ReviewStatus.safeValueOf(json.getAsString());
-    }
-  }
-
-  private class GeoJsonTypeDeserializer implements JsonDeserializer<GeoJsonType> {
-
-    /**
-     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
-     */
-    @Override
-    public GeoJsonType deserialize(final JsonElement json,
-                                   final Type typeOfT,
-                                   final JsonDeserializationContext context) throws JsonParseException {
-      return GeoJsonType.safeValueOf(json.getAsString());
-    }
+  private GeoFeature buildGeoFeature(final Feature feature) {
+    final GeoFeature geoFeature =
+        new GeoFeature(feature.geometry.type,
+                       feature.geometry.coordinates[1],
+                       feature.geometry.coordinates[0]);
+    geoFeature.setDepth(feature.geometry.coordinates[2]);
+    geoFeature.setMagnitude(feature.properties.mag);
+    geoFeature.setLocation(feature.properties.place);
+    geoFeature.setTimezoneOffset(feature.properties.tz);
+    geoFeature.setTime(feature.properties.time);
+    geoFeature.setUpdatedTime(feature.properties.updated);
+    geoFeature.setEventPageUrl(feature.properties.url);
+    geoFeature.setNoOfEyeWitnessReports(feature.properties.felt);
+    geoFeature.setMaximumReportedIntensity(feature.properties.cdi);
+    geoFeature.setMaximumInstrumentedIntensity(feature.properties.mmi);
+    geoFeature.setReviewStatus(feature.properties.status);
+    geoFeature.setGeneratingTsunami(feature.properties.tsunami);
+    geoFeature.setSignificance(feature.properties.sig);
+    geoFeature.setContributorId(feature.properties.net);
+    geoFeature.setContributors(feature.properties.sources);
+    geoFeature.setNoOfStationsReportingEvent(feature.properties.nst);
+    geoFeature.setMinDistFromEpicentreToStation(feature.properties.dmin);
+    geoFeature.setMagnitudeType(feature.properties.magnitudeType);
+    geoFeature.setCode(feature.properties.code);
+    return geoFeature;
   }
 }
@@ -0,0 +1,22 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.IOException;
+
+import com.brantapps.epicentre.model.GeoFeature;
+
+/**
+ * Receives {@link GeoFeature}s from the {@link GeoFeatureParser}
+ * as soon as each one has been read from the feed.
+ *
+ * @author David C Branton
+ */
+public interface GeoFeatureSink {
+
+  /**
+   * Accept a newly parsed feature.
+   *
+   * @param geoFeature The feature read from the feed.
+   * @throws IOException When the feature cannot be handed on.
+   */
+  void onFeature(final GeoFeature geoFeature) throws IOException;
+}
@@ -0,0 +1,475 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.util.Log;
+
+import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.Feature;
+import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.Feature.Geometry;
+import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.Feature.Properties;
+import com.brantapps.epicentre.handler.GeoFeatureGsonTemplate.MetaData;
+import com.brantapps.epicentre.model.GeoJsonType;
+import com.brantapps.epicentre.model.PagerAlertLevel;
+import com.brantapps.epicentre.model.ReviewStatus;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming Gson readers for the {@link GeoFeatureGsonTemplate}.
+ * <p>
+ * Each reader reads tokens straight into the template fields so Gson
+ * never builds an intermediate JSON tree or reflects over the template.
+ * The readers are not {@link TypeAdapter}s. Gson only sees them through
+ * {@link ReadAdapterFactory}, which leaves writing a template to the
+ * reflective adapter Gson would otherwise have used, so a shared
+ * {@link Gson} can still write the templates out.
+ * </p>
+ *
+ * @author David C Branton
+ */
+final class GeoFeatureTypeAdapters {
+  private static final String TAG = GeoFeatureTypeAdapters.class.getSimpleName();
+
+  /**
+   * The enclosing instance for templates read outside of a whole report,
+   * i.e. when streaming features one at a time.
+   */
+  private static final GeoFeatureGsonTemplate DETACHED_TEMPLATE = new GeoFeatureGsonTemplate();
+  private static final Feature DETACHED_FEATURE = DETACHED_TEMPLATE.new Feature();
+
+  private GeoFeatureTypeAdapters() { }
+
+
+  /**
+   * @return a {@link Gson} instance with every template adapter registered.
+   */
+  static Gson createGson() {
+    return new GsonBuilder()
+      .registerTypeAdapterFactory(new ReadAdapterFactory(GeoFeatureGsonTemplate.class, new TemplateAdapter()))
+      .registerTypeAdapterFactory(new ReadAdapterFactory(MetaData.class, new MetaDataAdapter()))
+      .registerTypeAdapterFactory(new ReadAdapterFactory(Feature.class, new FeatureAdapter()))
+      .registerTypeAdapterFactory(new ReadAdapterFactory(Properties.class, new PropertiesAdapter()))
+      .registerTypeAdapterFactory(new ReadAdapterFactory(Geometry.class, new GeometryAdapter()))
+      .create();
+  }
+
+
+  /**
+   * Reads the whole USGS report.
+   */
+  static class TemplateAdapter implements TemplateReader<GeoFeatureGsonTemplate> {
+    private final MetaDataAdapter metaDataAdapter = new MetaDataAdapter();
+    private final FeatureAdapter featureAdapter = new FeatureAdapter();
+
+    /**
+     * @see com.brantapps.epicentre.handler.GeoFeatureTypeAdapters.TemplateReader#read(com.google.gson.stream.JsonReader)
+     */
+    @Override
+    public GeoFeatureGsonTemplate read(final JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final GeoFeatureGsonTemplate template = new GeoFeatureGsonTemplate();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if ("type".equals(name)) {
+          template.type = readGeoJsonType(in);
+        } else if ("metadata".equals(name)) {
+          template.metadata = metaDataAdapter.read(in, template);
+        } else if ("features".equals(name)) {
+          template.features = readFeatures(in, template);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return template;
+    }
+
+    private List<Feature> readFeatures(final JsonReader in, final GeoFeatureGsonTemplate template) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final List<Feature> features = new ArrayList<Feature>();
+      in.beginArray();
+      while (in.hasNext()) {
+        features.add(featureAdapter.read(in, template));
+      }
+      in.endArray();
+      return features;
+    }
+  }
+
+
+  /**
+   * Reads the report metadata.
+   */
+  static class MetaDataAdapter implements TemplateReader<MetaData> {
+
+    /**
+     * @see com.brantapps.epicentre.handler.GeoFeatureTypeAdapters.TemplateReader#read(com.google.gson.stream.JsonReader)
+     */
+    @Override
+    public MetaData read(final JsonReader in) throws IOException {
+      return read(in, DETACHED_TEMPLATE);
+    }
+
+    MetaData read(final JsonReader in, final GeoFeatureGsonTemplate template) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final MetaData metaData = template.new MetaData();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if ("generated".equals(name)) {
+          metaData.generated = readLong(in);
+        } else if ("url".equals(name)) {
+          metaData.url = readUrl(in);
+        } else if ("title".equals(name)) {
+          metaData.title = readString(in);
+        } else if ("subTitle".equals(name)) {
+          metaData.subTitle = readString(in);
+        } else if ("cacheMaxAge".equals(name)) {
+          metaData.cacheMaxAge = readInt(in);
+        } else if ("count".equals(name)) {
+          metaData.count = readInt(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return metaData;
+    }
+  }
+
+
+  /**
+   * Reads a single feature.
+   */
+  static class FeatureAdapter implements TemplateReader<Feature> {
+    private final PropertiesAdapter propertiesAdapter = new PropertiesAdapter();
+    private final GeometryAdapter geometryAdapter = new GeometryAdapter();
+
+    /**
+     * @see com.brantapps.epicentre.handler.GeoFeatureTypeAdapters.TemplateReader#read(com.google.gson.stream.JsonReader)
+     */
+    @Override
+    public Feature read(final JsonReader in) throws IOException {
+      return read(in, DETACHED_TEMPLATE);
+    }
+
+    Feature read(final JsonReader in, final GeoFeatureGsonTemplate template) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final Feature feature = template.new Feature();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if ("type".equals(name)) {
+          feature.type = readGeoJsonType(in);
+        } else if ("properties".equals(name)) {
+          feature.properties = propertiesAdapter.read(in, feature);
+        } else if ("geometry".equals(name)) {
+          feature.geometry = geometryAdapter.read(in, feature);
+        } else if ("ids".equals(name)) {
+          feature.ids = readString(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return feature;
+    }
+  }
+
+
+  /**
+   * Reads the properties of a feature.
+   */
+  static class PropertiesAdapter implements TemplateReader<Properties> {
+
+    /**
+     * @see com.brantapps.epicentre.handler.GeoFeatureTypeAdapters.TemplateReader#read(com.google.gson.stream.JsonReader)
+     */
+    @Override
+    public Properties read(final JsonReader in) throws IOException {
+      return read(in, DETACHED_FEATURE);
+    }
+
+    Properties read(final JsonReader in, final Feature feature) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final Properties properties = feature.new Properties();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if ("mag".equals(name)) {
+          properties.mag = readDouble(in);
+        } else if ("place".equals(name)) {
+          properties.place = readString(in);
+        } else if ("time".equals(name)) {
+          properties.time = readLong(in);
+        } else if ("updated".equals(name)) {
+          properties.updated = readLong(in);
+        } else if ("tz".equals(name)) {
+          properties.tz = readInt(in);
+        } else if ("url".equals(name)) {
+          properties.url = readUrl(in);
+        } else if ("felt".equals(name)) {
+          properties.felt = readInt(in);
+        } else if ("cdi".equals(name)) {
+          properties.cdi = readNullableDouble(in);
+        } else if ("mmi".equals(name)) {
+          properties.mmi = readNullableDouble(in);
+        } else if ("alert".equals(name)) {
+          final String alert = readString(in);
+          properties.alert = alert == null ? null : PagerAlertLevel.safeValueOf(alert);
+        } else if ("status".equals(name)) {
+          final String status = readString(in);
+          properties.status = status == null ? null : ReviewStatus.safeValueOf(status);
+        } else if ("tsunami".equals(name)) {
+          properties.tsunami = readNullableBoolean(in);
+        } else if ("sig".equals(name)) {
+          properties.sig = readInt(in);
+        } else if ("net".equals(name)) {
+          properties.net = StringPool.SHARED.intern(readString(in));
+        } else if ("code".equals(name)) {
+          properties.code = readString(in);
+        } else if ("sources".equals(name)) {
+          properties.sources = StringPool.SHARED.splitContributors(readString(in));
+        } else if ("nst".equals(name)) {
+          properties.nst = readInt(in);
+        } else if ("dmin".equals(name)) {
+          properties.dmin = readDouble(in);
+        } else if ("magnitudeType".equals(name)) {
+          properties.magnitudeType = StringPool.SHARED.intern(readString(in));
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return properties;
+    }
+  }
+
+
+  /**
+   * Reads the geometry of a feature.
+   */
+  static class GeometryAdapter implements TemplateReader<Geometry> {
+
+    /**
+     * @see com.brantapps.epicentre.handler.GeoFeatureTypeAdapters.TemplateReader#read(com.google.gson.stream.JsonReader)
+     */
+    @Override
+    public Geometry read(final JsonReader in) throws IOException {
+      return read(in, DETACHED_FEATURE);
+    }
+
+    Geometry read(final JsonReader in, final Feature feature) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final Geometry geometry = feature.new Geometry();
+      in.beginObject();
+      while (in.hasNext()) {
+        final String name = in.nextName();
+        if ("type".equals(name)) {
+          geometry.type = readGeoJsonType(in);
+        } else if ("coordinates".equals(name)) {
+          geometry.coordinates = readCoordinates(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return geometry;
+    }
+
+    private Double[] readCoordinates(final JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      // Longitude, latitude and depth.
+      Double[] coordinates = new Double[3];
+      int count = 0;
+      in.beginArray();
+      while (in.hasNext()) {
+        if (count == coordinates.length) {
+          final Double[] grown = new Double[coordinates.length * 2];
+          System.arraycopy(coordinates, 0, grown, 0, count);
+          coordinates = grown;
+        }
+        coordinates[count++] = readNullableDouble(in);
+      }
+      in.endArray();
+      if (count != coordinates.length) {
+        final Double[] trimmed = new Double[count];
+        System.arraycopy(coordinates, 0, trimmed, 0, count);
+        coordinates = trimmed;
+      }
+      return coordinates;
+    }
+  }
+
+
+  /**
+   * Pairs the reader of a template type with the adapter
+   * Gson would otherwise have used, which does the writing.
+   */
+  static final class ReadAdapterFactory implements TypeAdapterFactory {
+    private final Class<?> type;
+    private final TemplateReader<?> reader;
+
+    /**
+     * @param type  The template type read.
+     * @param reader  The reader of the template type.
+     */
+    ReadAdapterFactory(final Class<?> type, final TemplateReader<?> reader) {
+      this.type = type;
+      this.reader = reader;
+    }
+
+
+    /**
+     * @see com.google.gson.TypeAdapterFactory#create(com.google.gson.Gson, com.google.gson.reflect.TypeToken)
+     */
+    @Override
+    public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> typeToken) {
+      if (typeToken.getRawType() != type) {
+        return null;
+      }
+      @SuppressWarnings("unchecked")
+      final TemplateReader<T> read = (TemplateReader<T>) reader;
+      final TypeAdapter<T> write = gson.getDelegateAdapter(this, typeToken);
+      return new TypeAdapter<T>() {
+        @Override
+        public T read(final JsonReader in) throws IOException {
+          return read.read(in);
+        }
+
+        @Override
+        public void write(final JsonWriter out, final T value) throws IOException {
+          write.write(out, value);
+        }
+      };
+    }
+  }
+
+
+  /**
+   * Reads one template type from the feed.
+   *
+   * @param <T> The template type read.
+   */
+  interface TemplateReader<T> {
+
+    /**
+     * @param in  The feed positioned at the template's value.
+     * @return the template read, or null for a JSON null.
+     * @throws IOException  When the feed cannot be read.
+     */
+    T read(JsonReader in) throws IOException;
+  }
+
+
+  private static String readString(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+
+  private static long readLong(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return 0L;
+    }
+    return in.nextLong();
+  }
+
+
+  private static int readInt(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return 0;
+    }
+    return in.nextInt();
+  }
+
+
+  private static double readDouble(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return 0d;
+    }
+    return in.nextDouble();
+  }
+
+
+  private static Double readNullableDouble(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return Double.valueOf(in.nextDouble());
+  }
+
+
+  private static Boolean readNullableBoolean(final JsonReader in) throws IOException {
+    final JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    } else if (token == JsonToken.STRING) {
+      return Boolean.valueOf(in.nextString());
+    } else if (token == JsonToken.NUMBER) {
+      // The v1.0 feed reports the tsunami flag as 0 or 1.
+      return Boolean.valueOf(in.nextInt() != 0);
+    }
+    return Boolean.valueOf(in.nextBoolean());
+  }
+
+
+  private static GeoJsonType readGeoJsonType(final JsonReader in) throws IOException {
+    final String type = readString(in);
+    return type == null ? null : GeoJsonType.safeValueOf(type);
+  }
+
+
+  private static URL readUrl(final JsonReader in) throws IOException {
+    final String spec = readString(in);
+    if (spec == null) {
+      return null;
+    }
+    try {
+      return new URL(spec);
+    } catch (MalformedURLException e) {
+      Log.e(TAG, String.format("Malformed URL with spec, [%s]", spec));
+    }
+    return null;
+  }
+}
@@ -0,0 +1,610 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A forward-only JSON tokeniser over UTF-8 bytes held in a {@link ByteBuffer}.
+ * <p>
+ * The buffer is read with absolute gets so its position and limit are
+ * never disturbed, which lets several scanners share one (possibly memory
+ * mapped) buffer. Numbers are parsed straight from the bytes and only the
+ * string values that are asked for are decoded into {@link String}s.
+ * </p>
+ * <p>
+ * Quoted numbers, as found in the v0.1 USGS feed (<code>"sig": "385"</code>),
+ * are read as numbers. Names are compared byte for byte against ASCII
+ * constants so a name containing an escape sequence never matches.
+ * </p>
+ *
+ * @author David C Branton
+ */
+final class GeoJsonScanner {
+  private static final String UTF8 = "UTF-8";
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private final ByteBuffer buffer;
+  private final int limit;
+  private int position;
+  private int nameStart;
+  private int nameEnd;
+  private byte[] scratch = new byte[128];
+
+
+  /**
+   * Scan the remaining bytes of a buffer.
+   *
+   * @param buffer  The UTF-8 encoded JSON.
+   */
+  GeoJsonScanner(final ByteBuffer buffer) {
+    this(buffer, buffer.position(), buffer.limit());
+  }
+
+
+  /**
+   * Scan a region of a buffer.
+   *
+   * @param buffer  The UTF-8 encoded JSON.
+   * @param start The absolute index of the first byte to scan.
+   * @param end The absolute index one past the last byte to scan.
+   */
+  GeoJsonScanner(final ByteBuffer buffer, final int start, final int end) {
+    this.buffer = buffer;
+    this.position = start;
+    this.limit = end;
+    skipByteOrderMark();
+  }
+
+
+  /**
+   * @return the absolute index of the next byte to scan.
+   */
+  int position() {
+    return position;
+  }
+
+
+  /**
+   * @return the next significant byte without consuming it.
+   * @throws IOException  When the end of the input has been reached.
+   */
+  byte peek() throws IOException {
+    skipWhitespace();
+    if (position >= limit) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return buffer.get(position);
+  }
+
+
+  void beginObject() throws IOException {
+    expect('{');
+  }
+
+
+  void endObject() throws IOException {
+    expect('}');
+  }
+
+
+  void beginArray() throws IOException {
+    expect('[');
+  }
+
+
+  void endArray() throws IOException {
+    expect(']');
+  }
+
+
+  /**
+   * Consume the separator before the next element of the enclosing
+   * object or array.
+   *
+   * @return <code>true</code> when another element follows.
+   * @throws IOException  When the end of the input has been reached.
+   */
+  boolean hasNext() throws IOException {
+    final byte next = peek();
+    if (next == ',') {
+      position++;
+      return true;
+    }
+    return next != '}' && next != ']';
+  }
+
+
+  /**
+   * Read the next object member name and its trailing colon.
+   *
+   * @throws IOException  When the next token is not a name.
+   */
+  void nextName() throws IOException {
+    expect('"');
+    nameStart = position;
+    nameEnd = skipToClosingQuote();
+    expect(':');
+  }
+
+
+  /**
+   * @param name  The ASCII bytes of the name to compare.
+   * @return <code>true</code> when the last name read equals the given name.
+   */
+  boolean nameEquals(final byte[] name) {
+    if (nameEnd - nameStart != name.length) {
+      return false;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (buffer.get(nameStart + i) != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Consume a <code>null</code> literal if it is next.
+   *
+   * @return <code>true</code> when a <code>null</code> was consumed.
+   * @throws IOException  When the end of the input has been reached.
+   */
+  boolean nextNull() throws IOException {
+    if (peek() != 'n') {
+      return false;
+    }
+    expectLiteral("null");
+    return true;
+  }
+
+
+  /**
+   * @return the next string value or <code>null</code>.
+   * @throws IOException  When the next token is not a string.
+   */
+  String nextString() throws IOException {
+    if (nextNull()) {
+      return null;
+    }
+    expect('"');
+    final int start = position;
+    boolean escaped = false;
+    while (true) {
+      final byte next = byteAt(position);
+      if (next == '"') {
+        break;
+      } else if (next == '\\') {
+        escaped = true;
+        position += 2;
+      } else {
+        position++;
+      }
+    }
+    final int end = position++;
+    return escaped ? unescape(start, end) : decode(start, end);
+  }
+
+
+  /**
+   * Read a low cardinality string through a pool. Values already pooled
+   * are returned without being decoded.
+   *
+   * @param pool  The pool to intern the value in.
+   * @return the next string value or <code>null</code>.
+   * @throws IOException  When the next token is not a string.
+   */
+  String nextString(final StringPool pool) throws IOException {
+    if (nextNull()) {
+      return null;
+    }
+    expect('"');
+    final int start = position;
+    final int end = skipToClosingQuote();
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) == '\\') {
+        return pool.intern(unescape(start, end));
+      }
+    }
+    final String pooled = pool.find(buffer, start, end);
+    return pooled == null ? pool.intern(decode(start, end)) : pooled;
+  }
+
+
+  /**
+   * @return the next number, or zero when the value is <code>null</code> or empty.
+   * @throws IOException  When the next token is not a number.
+   */
+  long nextLong() throws IOException {
+    if (nextNull()) {
+      return 0L;
+    }
+    final boolean quoted = openQuote();
+    if (quoted && byteAt(position) == '"') {
+      position++;
+      return 0L;
+    }
+    final int start = position;
+    boolean negative = false;
+    byte next = byteAt(position);
+    if (next == '-') {
+      negative = true;
+      next = byteAt(++position);
+    }
+    long value = 0L;
+    int digits = 0;
+    while (next >= '0' && next <= '9' && digits < 18) {
+      value = value * 10 + (next - '0');
+      digits++;
+      next = byteAt(++position);
+    }
+    if (digits == 0 || (next >= '0' && next <= '9') || next == '.' || next == 'e' || next == 'E') {
+      // Fractional, exponent or very long forms take the general route.
+      position = start;
+      value = (long) parseNumber();
+    } else if (negative) {
+      value = -value;
+    }
+    closeQuote(quoted);
+    return value;
+  }
+
+
+  /**
+   * @return the next number, or zero when the value is <code>null</code> or empty.
+   * @throws IOException  When the next token is not a number.
+   */
+  int nextInt() throws IOException {
+    return (int) nextLong();
+  }
+
+
+  /**
+   * @return the next number, or zero when the value is <code>null</code> or empty.
+   * @throws IOException  When the next token is not a number.
+   */
+  double nextDouble() throws IOException {
+    if (nextNull()) {
+      return 0d;
+    }
+    final boolean quoted = openQuote();
+    if (quoted && byteAt(position) == '"') {
+      position++;
+      return 0d;
+    }
+    final double value = parseNumber();
+    closeQuote(quoted);
+    return value;
+  }
+
+
+  /**
+   * @return the next number or <code>null</code>.
+   * @throws IOException  When the next token is not a number.
+   */
+  Double nextNullableDouble() throws IOException {
+    if (nextNull()) {
+      return null;
+    }
+    return Double.valueOf(nextDouble());
+  }
+
+
+  /**
+   * Reads booleans, their quoted forms and the 0/1 form used by the v1.0 feed.
+   *
+   * @return the next flag or <code>null</code>.
+   * @throws IOException  When the next token is not a flag.
+   */
+  Boolean nextNullableBoolean() throws IOException {
+    final byte next = peek();
+    if (next == 'n') {
+      expectLiteral("null");
+      return null;
+    } else if (next == 't') {
+      expectLiteral("true");
+      return Boolean.TRUE;
+    } else if (next == 'f') {
+      expectLiteral("false");
+      return Boolean.FALSE;
+    } else if (next == '"') {
+      return Boolean.valueOf(nextString());
+    }
+    return Boolean.valueOf(nextDouble() != 0d);
+  }
+
+
+  /**
+   * Skip the next value, including any nested objects and arrays.
+   *
+   * @throws IOException  When the value is malformed.
+   */
+  void skipValue() throws IOException {
+    final byte next = peek();
+    if (next == '"') {
+      position++;
+      skipToClosingQuote();
+    } else if (next == '{' || next == '[') {
+      int depth = 0;
+      do {
+        final byte current = byteAt(position++);
+        if (current == '"') {
+          skipToClosingQuote();
+        } else if (current == '{' || current == '[') {
+          depth++;
+        } else if (current == '}' || current == ']') {
+          depth--;
+        }
+      } while (depth > 0);
+    } else {
+      while (position < limit) {
+        final byte current = buffer.get(position);
+        if (current == ',' || current == '}' || current == ']' || isWhitespace(current)) {
+          break;
+        }
+        position++;
+      }
+    }
+  }
+
+
+  private double parseNumber() throws IOException {
+    final int start = position;
+    boolean negative = false;
+    byte next = byteAt(position);
+    if (next == '-' || next == '+') {
+      negative = next == '-';
+      next = byteAt(++position);
+    }
+    long mantissa = 0L;
+    int significantDigits = 0;
+    int exponent = 0;
+    boolean sawDigit = false;
+    boolean truncated = false;
+    while (next >= '0' && next <= '9') {
+      sawDigit = true;
+      if (significantDigits < 18) {
+        mantissa = mantissa * 10 + (next - '0');
+        if (mantissa != 0) {
+          significantDigits++;
+        }
+      } else {
+        truncated = true;
+        exponent++;
+      }
+      next = byteAt(++position);
+    }
+    if (next == '.') {
+      next = byteAt(++position);
+      while (next >= '0' && next <= '9') {
+        sawDigit = true;
+        if (significantDigits < 18) {
+          mantissa = mantissa * 10 + (next - '0');
+          if (mantissa != 0) {
+            significantDigits++;
+          }
+          exponent--;
+        } else {
+          truncated = true;
+        }
+        next = byteAt(++position);
+      }
+    }
+    if (!sawDigit) {
+      throw syntaxError("Expected a number");
+    }
+    if (next == 'e' || next == 'E') {
+      next = byteAt(++position);
+      boolean negativeExponent = false;
+      if (next == '-' || next == '+') {
+        negativeExponent = next == '-';
+        next = byteAt(++position);
+      }
+      int explicitExponent = 0;
+      while (next >= '0' && next <= '9') {
+        explicitExponent = Math.min(explicitExponent * 10 + (next - '0'), 10000);
+        next = byteAt(++position);
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+
+    if (!truncated && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+      // Both operands are exact so the single rounding matches Double.parseDouble.
+      double value = mantissa;
+      value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(decode(start, position));
+  }
+
+
+  private boolean openQuote() throws IOException {
+    if (peek() == '"') {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+
+  private void closeQuote(final boolean quoted) throws IOException {
+    if (quoted) {
+      if (byteAt(position) != '"') {
+        throw syntaxError("Expected a closing quote");
+      }
+      position++;
+    }
+  }
+
+
+  /**
+   * @return the absolute index of the closing quote; the scanner is left just past it.
+   */
+  private int skipToClosingQuote() throws IOException {
+    while (true) {
+      final byte next = byteAt(position);
+      if (next == '"') {
+        return position++;
+      }
+      position += next == '\\' ? 2 : 1;
+    }
+  }
+
+
+  private String decode(final int start, final int end) throws IOException {
+    final int length = end - start;
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, length, UTF8);
+    }
+    final byte[] bytes = scratch(length);
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, 0, length, UTF8);
+  }
+
+
+  private String unescape(final int start, final int end) throws IOException {
+    // Escapes never expand so the escaped length bounds the decoded length.
+    final byte[] bytes = scratch(end - start);
+    int length = 0;
+    int index = start;
+    while (index < end) {
+      final byte next = buffer.get(index++);
+      if (next != '\\') {
+        bytes[length++] = next;
+        continue;
+      }
+      final byte escape = buffer.get(index++);
+      switch (escape) {
+        case 'b': bytes[length++] = '\b'; break;
+        case 'f': bytes[length++] = '\f'; break;
+        case 'n': bytes[length++] = '\n'; break;
+        case 'r': bytes[length++] = '\r'; break;
+        case 't': bytes[length++] = '\t'; break;
+        case 'u':
+          int codePoint = hexAt(index);
+          index += 4;
+          if (codePoint >= 0xD800 && codePoint <= 0xDBFF && index + 6 <= end
+              && buffer.get(index) == '\\' && buffer.get(index + 1) == 'u') {
+            final int low = hexAt(index + 2);
+            if (low >= 0xDC00 && low <= 0xDFFF) {
+              codePoint = 0x10000 + ((codePoint - 0xD800) << 10) + (low - 0xDC00);
+              index += 6;
+            }
+          }
+          length = encodeUtf8(codePoint, bytes, length);
+          break;
+        default:
+          // Quotes, solidus and reverse solidus stand for themselves.
+          bytes[length++] = escape;
+      }
+    }
+    return new String(bytes, 0, length, UTF8);
+  }
+
+
+  private int hexAt(final int index) throws IOException {
+    int value = 0;
+    for (int i = index; i < index + 4; i++) {
+      final byte digit = byteAt(i);
+      value <<= 4;
+      if (digit >= '0' && digit <= '9') {
+        value += digit - '0';
+      } else if (digit >= 'a' && digit <= 'f') {
+        value += digit - 'a' + 10;
+      } else if (digit >= 'A' && digit <= 'F') {
+        value += digit - 'A' + 10;
+      } else {
+        throw syntaxError("Malformed unicode escape");
+      }
+    }
+    return value;
+  }
+
+
+  private static int encodeUtf8(final int codePoint, final byte[] bytes, final int offset) {
+    int length = offset;
+    if (codePoint < 0x80) {
+      bytes[length++] = (byte) codePoint;
+    } else if (codePoint < 0x800) {
+      bytes[length++] = (byte) (0xC0 | (codePoint >> 6));
+      bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+    } else if (codePoint < 0x10000) {
+      bytes[length++] = (byte) (0xE0 | (codePoint >> 12));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+    } else {
+      bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+    return length;
+  }
+
+
+  private byte[] scratch(final int length) {
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    return scratch;
+  }
+
+
+  private void expect(final char expected) throws IOException {
+    if (peek() != expected) {
+      throw syntaxError(String.format("Expected '%s'", expected));
+    }
+    position++;
+  }
+
+
+  private void expectLiteral(final String literal) throws IOException {
+    for (int i = 0; i < literal.length(); i++) {
+      if (byteAt(position + i) != literal.charAt(i)) {
+        throw syntaxError(String.format("Expected %s", literal));
+      }
+    }
+    position += literal.length();
+  }
+
+
+  private byte byteAt(final int index) throws IOException {
+    if (index >= limit) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return buffer.get(index);
+  }
+
+
+  private void skipWhitespace() {
+    while (position < limit && isWhitespace(buffer.get(position))) {
+      position++;
+    }
+  }
+
+
+  private void skipByteOrderMark() {
+    if (limit - position >= 3
+        && buffer.get(position) == (byte) 0xEF
+        && buffer.get(position + 1) == (byte) 0xBB
+        && buffer.get(position + 2) == (byte) 0xBF) {
+      position += 3;
+    }
+  }
+
+
+  private static boolean isWhitespace(final byte value) {
+    return value == ' ' || value == '\n' || value == '\r' || value == '\t';
+  }
+
+
+  private IOException syntaxError(final String message) {
+    return new IOException(String.format("%s at offset %d", message, position));
+  }
+}
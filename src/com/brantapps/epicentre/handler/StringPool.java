@@ -0,0 +1,168 @@
+package com.brantapps.epicentre.handler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A bounded intern pool for the low cardinality values in the feed.
+ * <p>
+ * Contributor ids, magnitude types and the <code>sources</code> lists only
+ * take a handful of distinct values across a whole report. Pooling them
+ * means every feature shares one {@link String} (and one contributor
+ * array) per distinct value instead of holding its own copy.
+ * </p>
+ * <p>
+ * Once the pool is full new values are handed back unpooled, so a feed
+ * full of unexpected values cannot grow it without bound. The contributor
+ * arrays are shared between features and must not be modified.
+ * </p>
+ * <p>
+ * The pool is read by every parsing thread at once, so lookups take no
+ * lock. Values are only ever added, each slot written once, and only
+ * adding a value locks. A lookup racing an add may miss the new value
+ * and fall through to the locked add, which finds it.
+ * </p>
+ *
+ * @author David C Branton
+ */
+final class StringPool {
+  /**
+   * The pool shared by the feed parsers.
+   */
+  static final StringPool SHARED = new StringPool(512);
+
+  private final int capacity;
+  private final AtomicReferenceArray<String> table;
+  private final int mask;
+  private final ConcurrentMap<String, String[]> contributors = new ConcurrentHashMap<String, String[]>();
+  private int size;
+
+
+  /**
+   * @param capacity  The maximum number of distinct strings to pool.
+   */
+  StringPool(final int capacity) {
+    this.capacity = capacity;
+    this.table = new AtomicReferenceArray<String>(Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1);
+    this.mask = table.length() - 1;
+  }
+
+
+  /**
+   * @param value The value to pool.
+   * @return the pooled instance equal to the value, or the value itself.
+   */
+  String intern(final String value) {
+    if (value == null) {
+      return null;
+    }
+    final String pooled = lookup(value);
+    return pooled == null ? add(value) : pooled;
+  }
+
+
+  /**
+   * Find a pooled string from its UTF-8 bytes without decoding them.
+   *
+   * @param buffer  The buffer holding the bytes.
+   * @param start The absolute index of the first byte.
+   * @param end The absolute index one past the last byte.
+   * @return the pooled string, or <code>null</code> when it is not pooled or
+   *         the bytes are not plain ASCII.
+   */
+  String find(final ByteBuffer buffer, final int start, final int end) {
+    // String.hashCode() of an ASCII string is the same polynomial over its bytes.
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      final byte next = buffer.get(i);
+      if (next < 0) {
+        return null;
+      }
+      hash = 31 * hash + next;
+    }
+    final int length = end - start;
+    int index = hash & mask;
+    String pooled;
+    while ((pooled = table.get(index)) != null) {
+      if (pooled.length() == length && matches(pooled, buffer, start)) {
+        return pooled;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+
+  /**
+   * Split a comma separated <code>sources</code> list.
+   *
+   * Only the contributor ids are pooled; the raw list, which rarely
+   * repeats across reports, is kept only as the key of its array.
+   *
+   * @param sources The raw list, e.g. <code>",us,ak,"</code>.
+   * @return the shared array of pooled contributor ids.
+   */
+  String[] splitContributors(final String sources) {
+    if (sources == null) {
+      return null;
+    }
+    String[] split = contributors.get(sources);
+    if (split == null) {
+      split = StringUtils.split(sources, ",");
+      for (int i = 0; i < split.length; i++) {
+        split[i] = intern(split[i]);
+      }
+      if (contributors.size() < capacity) {
+        final String[] raced = contributors.putIfAbsent(sources, split);
+        if (raced != null) {
+          split = raced;
+        }
+      }
+    }
+    return split;
+  }
+
+
+  private String lookup(final String value) {
+    int index = value.hashCode() & mask;
+    String pooled;
+    while ((pooled = table.get(index)) != null) {
+      if (pooled.equals(value)) {
+        return pooled;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+
+  private synchronized String add(final String value) {
+    int index = value.hashCode() & mask;
+    String pooled;
+    while ((pooled = table.get(index)) != null) {
+      if (pooled.equals(value)) {
+        return pooled;
+      }
+      index = (index + 1) & mask;
+    }
+    if (size < capacity) {
+      table.set(index, value);
+      size++;
+    }
+    return value;
+  }
+
+
+  private static boolean matches(final String pooled, final ByteBuffer buffer, final int start) {
+    for (int i = 0; i < pooled.length(); i++) {
+      if (pooled.charAt(i) != buffer.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,97 @@
+package com.brantapps.epicentre.index;
+
+/**
+ * A latitude/longitude box on the map.
+ * <p>
+ * A box whose western edge is east of its eastern edge crosses the
+ * antimeridian, e.g. west 170 to east -170 covers the twenty degrees
+ * around Fiji rather than the rest of the world.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class BoundingBox {
+  private final double south;
+  private final double west;
+  private final double north;
+  private final double east;
+
+  /**
+   * @param south The southern latitude.
+   * @param west  The western longitude.
+   * @param north The northern latitude.
+   * @param east  The eastern longitude.
+   */
+  public BoundingBox(final double south, final double west, final double north, final double east) {
+    if (south > north) {
+      throw new IllegalArgumentException(String.format("South [%f] is north of north [%f].", south, north));
+    }
+    this.south = south;
+    this.west = west;
+    this.north = north;
+    this.east = east;
+  }
+
+
+  /**
+   * @return whether the box crosses the antimeridian.
+   */
+  public boolean crossesAntimeridian() {
+    return west > east;
+  }
+
+
+  /**
+   * @param latitude  The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @return whether the point is inside the box, edges included.
+   */
+  public boolean contains(final double latitude, final double longitude) {
+    if (latitude < south || latitude > north) {
+      return false;
+    }
+    return crossesAntimeridian() ? longitude >= west || longitude <= east
+                                 : longitude >= west && longitude <= east;
+  }
+
+
+  /**
+   * @return the southern latitude.
+   */
+  public double getSouth() {
+    return south;
+  }
+
+
+  /**
+   * @return the western longitude.
+   */
+  public double getWest() {
+    return west;
+  }
+
+
+  /**
+   * @return the northern latitude.
+   */
+  public double getNorth() {
+    return north;
+  }
+
+
+  /**
+   * @return the eastern longitude.
+   */
+  public double getEast() {
+    return east;
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format("[%f, %f, %f, %f]", south, west, north, east);
+  }
+}
@@ -0,0 +1,293 @@
+package com.brantapps.epicentre.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.brantapps.epicentre.model.ArrayCopies;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * A uniform latitude/longitude grid over the features of a
+ * {@link GeoFeatureCollection} for bounding box queries.
+ * <p>
+ * Each cell lists the positions of the features that fall in it, and the
+ * index keeps its own copy of every coordinate. A query only visits the
+ * cells the box overlaps: cells wholly inside the box are taken without
+ * looking at their points and only the cells on the edge of the box are
+ * tested point by point. Boxes crossing the antimeridian are split in two.
+ * </p>
+ * <p>
+ * Features appended to the collection are picked up by {@link #update()}
+ * without touching the cells already built. Any other change to the
+ * collection, as told by its {@link GeoFeatureCollection#getModificationCount()},
+ * makes the update a {@link #rebuild()}.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class GeoFeatureGridIndex {
+  private static final double DEFAULT_CELL_DEGREES = 1d;
+  private static final int INITIAL_CELL_CAPACITY = 4;
+
+  private final GeoFeatureCollection featureCollection;
+  private final double cellDegrees;
+  private final int rows;
+  private final int columns;
+  private final int[][] cells;
+  private final int[] cellSizes;
+  private double[] latitudes = new double[0];
+  private double[] longitudes = new double[0];
+  private int size;
+  private int builtAt;
+  private int appendedAt;
+
+  /**
+   * Index a collection with one degree cells.
+   *
+   * @param featureCollection The collection to index.
+   */
+  public GeoFeatureGridIndex(final GeoFeatureCollection featureCollection) {
+    this(featureCollection, DEFAULT_CELL_DEGREES);
+  }
+
+
+  /**
+   * @param featureCollection The collection to index.
+   * @param cellDegrees The width and height of a cell in degrees.
+   */
+  public GeoFeatureGridIndex(final GeoFeatureCollection featureCollection, final double cellDegrees) {
+    if (cellDegrees <= 0d || cellDegrees > 180d) {
+      throw new IllegalArgumentException(String.format("Invalid cell size [%f].", cellDegrees));
+    }
+    this.featureCollection = featureCollection;
+    this.cellDegrees = cellDegrees;
+    this.rows = (int) Math.ceil(180d / cellDegrees);
+    this.columns = (int) Math.ceil(360d / cellDegrees);
+    this.cells = new int[rows * columns][];
+    this.cellSizes = new int[rows * columns];
+    update();
+  }
+
+
+  /**
+   * Index the features appended to the collection since the last update.
+   * The index is rebuilt if the collection has changed in any other way.
+   */
+  public void update() {
+    final int target = featureCollection.size();
+    final int modifications = featureCollection.getModificationCount() - builtAt;
+    final int appends = featureCollection.getAppendCount() - appendedAt;
+    if (modifications != appends || target < size) {
+      rebuild();
+      return;
+    }
+    ensureCapacity(target);
+    for (int i = size; i < target; i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      add(i, geoFeature.getLatitude(), geoFeature.getLongitude());
+    }
+    size = target;
+    builtAt += modifications;
+    appendedAt += appends;
+  }
+
+
+  /**
+   * Discard the index and build it again from the whole collection.
+   */
+  public void rebuild() {
+    Arrays.fill(cells, null);
+    Arrays.fill(cellSizes, 0);
+    size = 0;
+    builtAt = featureCollection.getModificationCount();
+    appendedAt = featureCollection.getAppendCount();
+    update();
+  }
+
+
+  /**
+   * @return the number of features indexed.
+   */
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * @param box The area to search.
+   * @return the positions in the collection of the features inside the box, in ascending order.
+   */
+  public int[] query(final BoundingBox box) {
+    final Matches matches = new Matches();
+    if (box.crossesAntimeridian()) {
+      search(box.getSouth(), box.getNorth(), box.getWest(), 180d, matches);
+      search(box.getSouth(), box.getNorth(), -180d, box.getEast(), matches);
+    } else {
+      search(box.getSouth(), box.getNorth(), box.getWest(), box.getEast(), matches);
+    }
+    return inOrder(matches);
+  }
+
+
+  /**
+   * @param box The area to search.
+   * @return the features inside the box, in collection order.
+   */
+  public List<GeoFeature> features(final BoundingBox box) {
+    final int[] positions = query(box);
+    final List<GeoFeature> features = new ArrayList<GeoFeature>(positions.length);
+    for (int position : positions) {
+      features.add(featureCollection.get(position));
+    }
+    return features;
+  }
+
+
+  /**
+   * @param box The area to search.
+   * @return the number of features inside the box.
+   */
+  public int count(final BoundingBox box) {
+    final Matches matches = new Matches();
+    matches.countOnly = true;
+    if (box.crossesAntimeridian()) {
+      search(box.getSouth(), box.getNorth(), box.getWest(), 180d, matches);
+      search(box.getSouth(), box.getNorth(), -180d, box.getEast(), matches);
+    } else {
+      search(box.getSouth(), box.getNorth(), box.getWest(), box.getEast(), matches);
+    }
+    return matches.count;
+  }
+
+
+  private void search(final double south, final double north, final double west, final double east, final Matches matches) {
+    final int firstRow = row(south);
+    final int lastRow = row(north);
+    final int firstColumn = column(west);
+    final int lastColumn = column(east);
+    for (int row = firstRow; row <= lastRow; row++) {
+      final double cellSouth = row * cellDegrees - 90d;
+      final boolean rowInside = cellSouth >= south && cellSouth + cellDegrees <= north;
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        final int cell = row * columns + column;
+        final int cellSize = cellSizes[cell];
+        if (cellSize == 0) {
+          continue;
+        }
+        final double cellWest = column * cellDegrees - 180d;
+        final int[] positions = cells[cell];
+        if (rowInside && cellWest >= west && cellWest + cellDegrees <= east) {
+          matches.addAll(positions, cellSize);
+        } else {
+          for (int i = 0; i < cellSize; i++) {
+            final int position = positions[i];
+            final double latitude = latitudes[position];
+            final double longitude = longitudes[position];
+            if (latitude >= south && latitude <= north && longitude >= west && longitude <= east) {
+              matches.add(position);
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  private int[] inOrder(final Matches matches) {
+    if (matches.count < size >> 6) {
+      final int[] positions = ArrayCopies.copyOf(matches.positions, matches.count);
+      Arrays.sort(positions);
+      return positions;
+    }
+    // Large results are ordered by marking them in a bit set rather than sorting.
+    final long[] marks = new long[(size + 63) >> 6];
+    for (int i = 0; i < matches.count; i++) {
+      final int position = matches.positions[i];
+      marks[position >> 6] |= 1L << position;
+    }
+    final int[] positions = new int[matches.count];
+    int count = 0;
+    for (int word = 0; word < marks.length; word++) {
+      long bits = marks[word];
+      while (bits != 0) {
+        positions[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+    }
+    return positions;
+  }
+
+
+  private void add(final int position, final double latitude, final double longitude) {
+    latitudes[position] = latitude;
+    longitudes[position] = longitude;
+    final int cell = row(latitude) * columns + column(longitude);
+    int[] positions = cells[cell];
+    if (positions == null) {
+      positions = new int[INITIAL_CELL_CAPACITY];
+      cells[cell] = positions;
+    } else if (cellSizes[cell] == positions.length) {
+      positions = ArrayCopies.copyOf(positions, positions.length * 2);
+      cells[cell] = positions;
+    }
+    positions[cellSizes[cell]++] = position;
+  }
+
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity > latitudes.length) {
+      final int grown = Math.max(capacity, latitudes.length + (latitudes.length >> 1));
+      latitudes = ArrayCopies.copyOf(latitudes, grown);
+      longitudes = ArrayCopies.copyOf(longitudes, grown);
+    }
+  }
+
+
+  private int row(final double latitude) {
+    return clamp((int) Math.floor((latitude + 90d) / cellDegrees), rows);
+  }
+
+
+  private int column(final double longitude) {
+    return clamp((int) Math.floor((longitude + 180d) / cellDegrees), columns);
+  }
+
+
+  private static int clamp(final int value, final int limit) {
+    return value < 0 ? 0 : value >= limit ? limit - 1 : value;
+  }
+
+
+  /**
+   * The positions matched by a query.
+   *
+   * @author David C Branton
+   */
+  private static final class Matches {
+    private int[] positions = new int[64];
+    private int count;
+    private boolean countOnly;
+
+    void add(final int position) {
+      if (!countOnly) {
+        if (count == positions.length) {
+          positions = ArrayCopies.copyOf(positions, count * 2);
+        }
+        positions[count] = position;
+      }
+      count++;
+    }
+
+    void addAll(final int[] cell, final int cellSize) {
+      if (!countOnly) {
+        if (count + cellSize > positions.length) {
+          positions = ArrayCopies.copyOf(positions, Math.max(positions.length * 2, count + cellSize));
+        }
+        System.arraycopy(cell, 0, positions, count, cellSize);
+      }
+      count += cellSize;
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package com.brantapps.epicentre.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * A k-d tree over the features of a {@link GeoFeatureCollection} for
+ * "nearest quakes to this point" searches.
+ * <p>
+ * Each epicentre is placed on the unit sphere as an x, y, z point. The
+ * straight line (chord) distance between two such points grows with the
+ * great circle distance between them, so the tree can prune with cheap
+ * Euclidean comparisons and still rank results by great circle distance
+ * without any trigonometry per row. There are no special cases at the
+ * poles or the antimeridian.
+ * </p>
+ * <p>
+ * The tree is a snapshot: build a new one when the collection changes.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class GeoFeatureKdTree {
+  /**
+   * The mean radius of the Earth in kilometres.
+   */
+  public static final double EARTH_RADIUS = 6371.0088d;
+  private static final NeighbourFilter ACCEPT_ALL = new NeighbourFilter();
+
+  private final GeoFeatureCollection featureCollection;
+  private final int size;
+  // The node at the middle of each range, in tree order.
+  private final double[] x;
+  private final double[] y;
+  private final double[] z;
+  private final double[] magnitudes;
+  private final long[] times;
+  private final int[] positions;
+
+  /**
+   * @param featureCollection The collection to index.
+   */
+  public GeoFeatureKdTree(final GeoFeatureCollection featureCollection) {
+    this.featureCollection = featureCollection;
+    this.size = featureCollection.size();
+    final double[][] points = new double[3][size];
+    final int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      final double latitude = Math.toRadians(geoFeature.getLatitude());
+      final double longitude = Math.toRadians(geoFeature.getLongitude());
+      points[0][i] = Math.cos(latitude) * Math.cos(longitude);
+      points[1][i] = Math.cos(latitude) * Math.sin(longitude);
+      points[2][i] = Math.sin(latitude);
+      order[i] = i;
+    }
+    build(points, order, 0, size, 0);
+
+    x = new double[size];
+    y = new double[size];
+    z = new double[size];
+    magnitudes = new double[size];
+    times = new long[size];
+    positions = order;
+    for (int i = 0; i < size; i++) {
+      final int position = order[i];
+      final GeoFeature geoFeature = featureCollection.get(position);
+      x[i] = points[0][position];
+      y[i] = points[1][position];
+      z[i] = points[2][position];
+      magnitudes[i] = geoFeature.getMagnitude();
+      times[i] = geoFeature.getTimeInMillis();
+    }
+  }
+
+
+  /**
+   * @return the number of features indexed.
+   */
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * @see #nearest(double, double, int, double, NeighbourFilter)
+   */
+  public List<Neighbour> nearest(final double latitude, final double longitude, final int count, final double radius) {
+    return nearest(latitude, longitude, count, radius, ACCEPT_ALL);
+  }
+
+
+  /**
+   * Find the features nearest to a point.
+   *
+   * @param latitude  The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @param count The most features to return.
+   * @param radius  The furthest great circle distance to search, in kilometres.
+   * @param filter  The features that may be returned.
+   * @return the nearest features, closest first.
+   */
+  public List<Neighbour> nearest(final double latitude,
+                                 final double longitude,
+                                 final int count,
+                                 final double radius,
+                                 final NeighbourFilter filter) {
+    final double phi = Math.toRadians(latitude);
+    final double lambda = Math.toRadians(longitude);
+    final Search search = new Search(Math.cos(phi) * Math.cos(lambda),
+                                     Math.cos(phi) * Math.sin(lambda),
+                                     Math.sin(phi),
+                                     count,
+                                     chordSquared(radius),
+                                     filter);
+    if (count > 0) {
+      search(search, 0, size, 0);
+    }
+    return search.results();
+  }
+
+
+  private void search(final Search search, final int low, final int high, final int depth) {
+    if (low >= high) {
+      return;
+    }
+    final int middle = (low + high) >>> 1;
+    final double dx = search.x - x[middle];
+    final double dy = search.y - y[middle];
+    final double dz = search.z - z[middle];
+    final double distance = dx * dx + dy * dy + dz * dz;
+    if (distance <= search.limit() && search.filter.accepts(magnitudes[middle], times[middle])) {
+      search.offer(middle, distance);
+    }
+    final double split = depth % 3 == 0 ? dx : depth % 3 == 1 ? dy : dz;
+    if (split < 0) {
+      search(search, low, middle, depth + 1);
+      if (split * split <= search.limit()) {
+        search(search, middle + 1, high, depth + 1);
+      }
+    } else {
+      search(search, middle + 1, high, depth + 1);
+      if (split * split <= search.limit()) {
+        search(search, low, middle, depth + 1);
+      }
+    }
+  }
+
+
+  /**
+   * Arrange the order so the median of each range on the axis
+   * for its depth sits in the middle of the range.
+   */
+  private static void build(final double[][] points, final int[] order, final int low, final int high, final int depth) {
+    if (high - low <= 1) {
+      return;
+    }
+    final int middle = (low + high) >>> 1;
+    select(points[depth % 3], order, low, high - 1, middle);
+    build(points, order, low, middle, depth + 1);
+    build(points, order, middle + 1, high, depth + 1);
+  }
+
+
+  private static void select(final double[] axis, final int[] order, final int first, final int last, final int target) {
+    int low = first;
+    int high = last;
+    while (low < high) {
+      final double pivot = axis[order[(low + high) >>> 1]];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (axis[order[i]] < pivot) {
+          i++;
+        }
+        while (axis[order[j]] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          final int swap = order[i];
+          order[i] = order[j];
+          order[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      if (target <= j) {
+        high = j;
+      } else if (target >= i) {
+        low = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+
+  private static double chordSquared(final double radius) {
+    final double angle = Math.min(radius / EARTH_RADIUS, Math.PI);
+    final double chord = 2d * Math.sin(angle / 2d);
+    // Widened slightly so rounding never drops a point on the boundary.
+    return chord * chord * (1d + 1e-12);
+  }
+
+
+  private static double greatCircle(final double chordSquared) {
+    return 2d * Math.asin(Math.min(1d, Math.sqrt(chordSquared) / 2d)) * EARTH_RADIUS;
+  }
+
+
+  /**
+   * The state of one search: the query point and a bounded
+   * max-heap of the closest nodes found so far.
+   *
+   * @author David C Branton
+   */
+  private final class Search {
+    private final double x;
+    private final double y;
+    private final double z;
+    private final int count;
+    private final double radius;
+    private final NeighbourFilter filter;
+    private final int[] nodes;
+    private final double[] distances;
+    private int found;
+
+    Search(final double x, final double y, final double z, final int count, final double radius, final NeighbourFilter filter) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.count = count;
+      this.radius = radius;
+      this.filter = filter;
+      final int capacity = Math.max(0, Math.min(count, size));
+      this.nodes = new int[capacity];
+      this.distances = new double[capacity];
+    }
+
+    double limit() {
+      return found == count ? distances[0] : radius;
+    }
+
+    void offer(final int node, final double distance) {
+      if (found < count) {
+        int child = found++;
+        while (child > 0) {
+          final int parent = (child - 1) >> 1;
+          if (distances[parent] >= distance) {
+            break;
+          }
+          nodes[child] = nodes[parent];
+          distances[child] = distances[parent];
+          child = parent;
+        }
+        nodes[child] = node;
+        distances[child] = distance;
+      } else if (distance < distances[0]) {
+        siftDown(node, distance, found);
+      }
+    }
+
+    private void siftDown(final int node, final double distance, final int heapSize) {
+      int parent = 0;
+      while (true) {
+        int child = 2 * parent + 1;
+        if (child >= heapSize) {
+          break;
+        }
+        if (child + 1 < heapSize && distances[child + 1] > distances[child]) {
+          child++;
+        }
+        if (distances[child] <= distance) {
+          break;
+        }
+        nodes[parent] = nodes[child];
+        distances[parent] = distances[child];
+        parent = child;
+      }
+      nodes[parent] = node;
+      distances[parent] = distance;
+    }
+
+    List<Neighbour> results() {
+      final Neighbour[] sorted = new Neighbour[found];
+      // Pop the furthest off the heap into the back of the results.
+      for (int heapSize = found; heapSize > 0; heapSize--) {
+        final int node = nodes[0];
+        final double distance = distances[0];
+        siftDown(nodes[heapSize - 1], distances[heapSize - 1], heapSize - 1);
+        final int position = positions[node];
+        sorted[heapSize - 1] = new Neighbour(position, featureCollection.get(position), greatCircle(distance));
+      }
+      final List<Neighbour> results = new ArrayList<Neighbour>(found);
+      for (Neighbour neighbour : sorted) {
+        results.add(neighbour);
+      }
+      return results;
+    }
+  }
+}
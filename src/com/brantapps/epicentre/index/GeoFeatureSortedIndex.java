@@ -0,0 +1,326 @@
+package com.brantapps.epicentre.index;
+
+import java.util.Arrays;
+
+import com.brantapps.epicentre.model.ArrayCopies;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Sorted indexes over the magnitude, event time and significance of the
+ * features in a {@link GeoFeatureCollection}.
+ * <p>
+ * Each index is the positions of the features ordered by one field, next
+ * to the field values in the same order, so a range is found with two
+ * binary searches. Combined queries, such as "M5.5 to 7 in the last 72
+ * hours", count both ranges first and only walk the smaller one, testing
+ * the other field from a primitive column.
+ * </p>
+ * <p>
+ * The indexes are built when the index is created and rebuilt on the next
+ * query after the collection's {@link GeoFeatureCollection#getModificationCount()}
+ * moves on. Results are positions in the collection in ascending order.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class GeoFeatureSortedIndex {
+  private final GeoFeatureCollection featureCollection;
+  private int builtAt;
+  private double[] magnitudes;
+  private long[] times;
+  private int[] byMagnitude;
+  private long[] sortedMagnitudes;
+  private int[] byTime;
+  private long[] sortedTimes;
+  private int[] bySignificance;
+  private long[] sortedSignificances;
+
+  /**
+   * @param featureCollection The collection to index.
+   */
+  public GeoFeatureSortedIndex(final GeoFeatureCollection featureCollection) {
+    this.featureCollection = featureCollection;
+    rebuild();
+  }
+
+
+  /**
+   * @return whether the collection has changed since the indexes were built.
+   */
+  public boolean isStale() {
+    return builtAt != featureCollection.getModificationCount() || magnitudes.length != featureCollection.size();
+  }
+
+
+  /**
+   * Build the indexes from the current contents of the collection.
+   */
+  public void rebuild() {
+    final int size = featureCollection.size();
+    magnitudes = new double[size];
+    times = new long[size];
+    final long[] magnitudeKeys = new long[size];
+    final long[] significanceKeys = new long[size];
+    for (int i = 0; i < size; i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      magnitudes[i] = geoFeature.getMagnitude();
+      times[i] = geoFeature.getTimeInMillis();
+      magnitudeKeys[i] = sortable(magnitudes[i]);
+      significanceKeys[i] = geoFeature.getSignificance();
+    }
+    byMagnitude = identity(size);
+    sortedMagnitudes = magnitudeKeys;
+    sort(sortedMagnitudes, byMagnitude);
+    byTime = identity(size);
+    sortedTimes = times.clone();
+    sort(sortedTimes, byTime);
+    bySignificance = identity(size);
+    sortedSignificances = significanceKeys;
+    sort(sortedSignificances, bySignificance);
+    builtAt = featureCollection.getModificationCount();
+  }
+
+
+  /**
+   * @param minimum The smallest magnitude, inclusive.
+   * @param maximum The largest magnitude, inclusive.
+   * @return the positions of the features in the band.
+   */
+  public int[] byMagnitude(final double minimum, final double maximum) {
+    refresh();
+    return positions(byMagnitude, sortedMagnitudes, sortable(minimum), sortable(maximum));
+  }
+
+
+  /**
+   * @param minimum The smallest magnitude, inclusive.
+   * @param maximum The largest magnitude, inclusive.
+   * @return the number of features in the band.
+   */
+  public int countByMagnitude(final double minimum, final double maximum) {
+    refresh();
+    return count(sortedMagnitudes, sortable(minimum), sortable(maximum));
+  }
+
+
+  /**
+   * @param from  The earliest event time, inclusive, in milliseconds since the epoch.
+   * @param to  The latest event time, inclusive, in milliseconds since the epoch.
+   * @return the positions of the features in the window.
+   */
+  public int[] byTime(final long from, final long to) {
+    refresh();
+    return positions(byTime, sortedTimes, from, to);
+  }
+
+
+  /**
+   * @param from  The earliest event time, inclusive, in milliseconds since the epoch.
+   * @param to  The latest event time, inclusive, in milliseconds since the epoch.
+   * @return the number of features in the window.
+   */
+  public int countByTime(final long from, final long to) {
+    refresh();
+    return count(sortedTimes, from, to);
+  }
+
+
+  /**
+   * @param minimum The lowest significance, inclusive.
+   * @param maximum The highest significance, inclusive.
+   * @return the positions of the features in the range.
+   */
+  public int[] bySignificance(final int minimum, final int maximum) {
+    refresh();
+    return positions(bySignificance, sortedSignificances, minimum, maximum);
+  }
+
+
+  /**
+   * Find the features in a magnitude band and a time window.
+   *
+   * @param minimumMagnitude  The smallest magnitude, inclusive.
+   * @param maximumMagnitude  The largest magnitude, inclusive.
+   * @param from  The earliest event time, inclusive, in milliseconds since the epoch.
+   * @param to  The latest event time, inclusive, in milliseconds since the epoch.
+   * @return the positions of the features in both.
+   */
+  public int[] byMagnitudeAndTime(final double minimumMagnitude,
+                                  final double maximumMagnitude,
+                                  final long from,
+                                  final long to) {
+    refresh();
+    final long minimumKey = sortable(minimumMagnitude);
+    final long maximumKey = sortable(maximumMagnitude);
+    final int magnitudeStart = lowerBound(sortedMagnitudes, minimumKey);
+    final int magnitudeEnd = upperBound(sortedMagnitudes, maximumKey);
+    final int timeStart = lowerBound(sortedTimes, from);
+    final int timeEnd = upperBound(sortedTimes, to);
+    int[] matches;
+    int count = 0;
+    if (magnitudeEnd - magnitudeStart <= timeEnd - timeStart) {
+      matches = new int[Math.max(0, magnitudeEnd - magnitudeStart)];
+      for (int i = magnitudeStart; i < magnitudeEnd; i++) {
+        final long time = times[byMagnitude[i]];
+        if (time >= from && time <= to) {
+          matches[count++] = byMagnitude[i];
+        }
+      }
+    } else {
+      matches = new int[Math.max(0, timeEnd - timeStart)];
+      for (int i = timeStart; i < timeEnd; i++) {
+        final double magnitude = magnitudes[byTime[i]];
+        if (magnitude >= minimumMagnitude && magnitude <= maximumMagnitude) {
+          matches[count++] = byTime[i];
+        }
+      }
+    }
+    matches = ArrayCopies.copyOf(matches, count);
+    Arrays.sort(matches);
+    return matches;
+  }
+
+
+  /**
+   * @param first Ascending positions.
+   * @param second  Ascending positions.
+   * @return the positions in both, ascending.
+   */
+  public static int[] intersect(final int[] first, final int[] second) {
+    final int[] both = new int[Math.min(first.length, second.length)];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        i++;
+      } else if (first[i] > second[j]) {
+        j++;
+      } else {
+        both[count++] = first[i];
+        i++;
+        j++;
+      }
+    }
+    return ArrayCopies.copyOf(both, count);
+  }
+
+
+  private void refresh() {
+    if (isStale()) {
+      rebuild();
+    }
+  }
+
+
+  private static int[] positions(final int[] order, final long[] keys, final long minimum, final long maximum) {
+    final int start = lowerBound(keys, minimum);
+    final int end = upperBound(keys, maximum);
+    if (end <= start) {
+      return new int[0];
+    }
+    final int[] positions = new int[end - start];
+    System.arraycopy(order, start, positions, 0, positions.length);
+    Arrays.sort(positions);
+    return positions;
+  }
+
+
+  private static int count(final long[] keys, final long minimum, final long maximum) {
+    return Math.max(0, upperBound(keys, maximum) - lowerBound(keys, minimum));
+  }
+
+
+  /**
+   * @return the first index whose key is not less than the key.
+   */
+  private static int lowerBound(final long[] keys, final long key) {
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (keys[middle] < key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * @return the first index whose key is greater than the key.
+   */
+  private static int upperBound(final long[] keys, final long key) {
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (keys[middle] <= key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * Map a double to a long with the same ordering.
+   */
+  private static long sortable(final double value) {
+    final long bits = Double.doubleToLongBits(value == 0d ? 0d : value);
+    return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+  }
+
+
+  private static int[] identity(final int size) {
+    final int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    return order;
+  }
+
+
+  /**
+   * A stable merge sort of the keys carrying the positions along.
+   */
+  private static void sort(final long[] keys, final int[] order) {
+    final int size = keys.length;
+    long[] keysFrom = keys;
+    int[] orderFrom = order;
+    long[] keysTo = new long[size];
+    int[] orderTo = new int[size];
+    for (int width = 1; width < size; width *= 2) {
+      for (int low = 0; low < size; low += 2 * width) {
+        final int middle = Math.min(low + width, size);
+        final int high = Math.min(low + 2 * width, size);
+        int i = low;
+        int j = middle;
+        for (int k = low; k < high; k++) {
+          if (i < middle && (j >= high || keysFrom[i] <= keysFrom[j])) {
+            keysTo[k] = keysFrom[i];
+            orderTo[k] = orderFrom[i++];
+          } else {
+            keysTo[k] = keysFrom[j];
+            orderTo[k] = orderFrom[j++];
+          }
+        }
+      }
+      final long[] keysSwap = keysFrom;
+      keysFrom = keysTo;
+      keysTo = keysSwap;
+      final int[] orderSwap = orderFrom;
+      orderFrom = orderTo;
+      orderTo = orderSwap;
+    }
+    if (keysFrom != keys) {
+      System.arraycopy(keysFrom, 0, keys, 0, size);
+      System.arraycopy(orderFrom, 0, order, 0, size);
+    }
+  }
+}
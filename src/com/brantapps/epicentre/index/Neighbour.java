@@ -0,0 +1,44 @@
+package com.brantapps.epicentre.index;
+
+import com.brantapps.epicentre.model.GeoFeature;
+
+/**
+ * A feature found by a nearest neighbour search.
+ *
+ * @author David C Branton
+ */
+public final class Neighbour {
+  private final int position;
+  private final GeoFeature geoFeature;
+  private final double distance;
+
+  Neighbour(final int position, final GeoFeature geoFeature, final double distance) {
+    this.position = position;
+    this.geoFeature = geoFeature;
+    this.distance = distance;
+  }
+
+
+  /**
+   * @return the position of the feature in its collection.
+   */
+  public int getPosition() {
+    return position;
+  }
+
+
+  /**
+   * @return the feature.
+   */
+  public GeoFeature getGeoFeature() {
+    return geoFeature;
+  }
+
+
+  /**
+   * @return the great circle distance to the feature in kilometres.
+   */
+  public double getDistance() {
+    return distance;
+  }
+}
@@ -0,0 +1,44 @@
+package com.brantapps.epicentre.index;
+
+/**
+ * Restricts the features a nearest neighbour search may return.
+ * By default every feature is accepted.
+ *
+ * @author David C Branton
+ */
+public class NeighbourFilter {
+  private double minimumMagnitude = Double.NEGATIVE_INFINITY;
+  private long from = Long.MIN_VALUE;
+  private long to = Long.MAX_VALUE;
+
+  /**
+   * @param minimumMagnitude  Only accept features of at least this magnitude.
+   * @return this filter.
+   */
+  public NeighbourFilter setMinimumMagnitude(final double minimumMagnitude) {
+    this.minimumMagnitude = minimumMagnitude;
+    return this;
+  }
+
+
+  /**
+   * @param from  The earliest event time accepted, in milliseconds since the epoch.
+   * @param to  The latest event time accepted, in milliseconds since the epoch.
+   * @return this filter.
+   */
+  public NeighbourFilter setTimeWindow(final long from, final long to) {
+    this.from = from;
+    this.to = to;
+    return this;
+  }
+
+
+  /**
+   * @param magnitude The magnitude of the feature.
+   * @param time  The event time of the feature.
+   * @return whether the feature is accepted.
+   */
+  boolean accepts(final double magnitude, final long time) {
+    return magnitude >= minimumMagnitude && time >= from && time <= to;
+  }
+}
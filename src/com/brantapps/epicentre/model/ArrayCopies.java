@@ -0,0 +1,78 @@
+package com.brantapps.epicentre.model;
+
+import java.lang.reflect.Array;
+
+/**
+ * Array copies for API levels before 9, where Arrays.copyOf is not available.
+ * <p>
+ * Each copy has the given length, truncated or padded with the array's
+ * default value as Arrays.copyOf would be.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class ArrayCopies {
+
+  private ArrayCopies() { }
+
+
+  /**
+   * @param values  The array to copy.
+   * @param length  The length of the copy.
+   * @return the copy.
+   */
+  public static byte[] copyOf(final byte[] values, final int length) {
+    final byte[] copy = new byte[length];
+    System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+    return copy;
+  }
+
+
+  /**
+   * @param values  The array to copy.
+   * @param length  The length of the copy.
+   * @return the copy.
+   */
+  public static int[] copyOf(final int[] values, final int length) {
+    final int[] copy = new int[length];
+    System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+    return copy;
+  }
+
+
+  /**
+   * @param values  The array to copy.
+   * @param length  The length of the copy.
+   * @return the copy.
+   */
+  public static long[] copyOf(final long[] values, final int length) {
+    final long[] copy = new long[length];
+    System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+    return copy;
+  }
+
+
+  /**
+   * @param values  The array to copy.
+   * @param length  The length of the copy.
+   * @return the copy.
+   */
+  public static double[] copyOf(final double[] values, final int length) {
+    final double[] copy = new double[length];
+    System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+    return copy;
+  }
+
+
+  /**
+   * @param values  The array to copy.
+   * @param length  The length of the copy.
+   * @return the copy, of the same component type as the array.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T[] copyOf(final T[] values, final int length) {
+    final T[] copy = (T[]) Array.newInstance(values.getClass().getComponentType(), length);
+    System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+    return copy;
+  }
+}
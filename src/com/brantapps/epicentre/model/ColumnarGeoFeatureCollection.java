@@ -0,0 +1,648 @@
+package com.brantapps.epicentre.model;
+
+import java.net.URL;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.joda.time.LocalDateTime;
+
+/**
+ * A {@link GeoFeatureCollection} that stores each field of its features
+ * in its own primitive array rather than as a list of {@link GeoFeature}s.
+ * <p>
+ * Scans over a single field, such as filtering by magnitude or building map
+ * markers, run through the indexed accessors (e.g. {@link #getMagnitude(int)})
+ * over contiguous arrays instead of visiting a feature object per row.
+ * </p>
+ * <p>
+ * The collection still behaves as a <code>List&lt;GeoFeature&gt;</code>.
+ * Adding a feature copies its fields into the columns, and {@link #get(int)}
+ * returns a short lived view over a row that reads and writes the columns.
+ * A view follows its index, so after an insert or removal it shows
+ * whichever feature has moved into that row. Views are not equal to the
+ * features they were copied from.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class ColumnarGeoFeatureCollection extends GeoFeatureCollection {
+  private static final GeoJsonType[] TYPES = GeoJsonType.values();
+  private static final PagerAlertLevel[] ALERT_LEVELS = PagerAlertLevel.values();
+  private static final ReviewStatus[] REVIEW_STATUSES = ReviewStatus.values();
+  private static final byte NONE = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+
+  private final Columns columns;
+
+  /**
+   * Constructs an empty columnar collection.
+   */
+  public ColumnarGeoFeatureCollection() {
+    this(new Columns());
+  }
+
+
+  private ColumnarGeoFeatureCollection(final Columns columns) {
+    super(columns);
+    this.columns = columns;
+  }
+
+
+  /**
+   * @see com.brantapps.epicentre.model.GeoFeatureCollection#ensureCapacity(int)
+   */
+  @Override
+  public void ensureCapacity(final int capacity) {
+    columns.ensureCapacity(capacity);
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the latitude of the feature.
+   */
+  public double getLatitude(final int index) {
+    return columns.latitude[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the longitude of the feature.
+   */
+  public double getLongitude(final int index) {
+    return columns.longitude[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the depth of the feature.
+   */
+  public double getDepth(final int index) {
+    return columns.depth[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the magnitude of the feature.
+   */
+  public double getMagnitude(final int index) {
+    return columns.magnitude[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the time the quake occurred in milliseconds since the epoch.
+   */
+  public long getTimeInMillis(final int index) {
+    return columns.time[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the updated time of the report in milliseconds since the epoch.
+   */
+  public long getUpdatedTimeInMillis(final int index) {
+    return columns.updatedTime[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the significance of the feature.
+   */
+  public int getSignificance(final int index) {
+    return columns.significance[columns.check(index)];
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the alert level of the feature.
+   */
+  public PagerAlertLevel getAlertLevel(final int index) {
+    return decode(ALERT_LEVELS, columns.alertLevel[columns.check(index)]);
+  }
+
+
+  /**
+   * @param index The row.
+   * @return the review status of the feature.
+   */
+  public ReviewStatus getReviewStatus(final int index) {
+    return decode(REVIEW_STATUSES, columns.reviewStatus[columns.check(index)]);
+  }
+
+
+  private static byte encode(final Enum<?> value) {
+    return value == null ? NONE : (byte) (value.ordinal() + 1);
+  }
+
+
+  private static <T> T decode(final T[] values, final byte code) {
+    return code == NONE ? null : values[code - 1];
+  }
+
+
+  private static double encode(final Double value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+
+  private static Double decode(final double value) {
+    return Double.isNaN(value) ? null : Double.valueOf(value);
+  }
+
+
+  private static byte encode(final Boolean value) {
+    return value == null ? NONE : value.booleanValue() ? TRUE : FALSE;
+  }
+
+
+  private static Boolean decode(final byte value) {
+    return value == NONE ? null : Boolean.valueOf(value == TRUE);
+  }
+
+
+  /**
+   * The column store.
+   *
+   * @author David C Branton
+   */
+  private static final class Columns extends AbstractList<GeoFeature> implements RandomAccess {
+    private int size;
+    private byte[] type = new byte[0];
+    private double[] latitude = new double[0];
+    private double[] longitude = new double[0];
+    private double[] depth = new double[0];
+    private double[] magnitude = new double[0];
+    private long[] time = new long[0];
+    private long[] updatedTime = new long[0];
+    private int[] timezoneOffset = new int[0];
+    private int[] significance = new int[0];
+    private int[] noOfEyeWitnessReports = new int[0];
+    private int[] noOfStationsReportingEvent = new int[0];
+    private double[] maximumReportedIntensity = new double[0];
+    private double[] maximumInstrumentedIntensity = new double[0];
+    private double[] minDistFromEpicentreToStation = new double[0];
+    private byte[] alertLevel = new byte[0];
+    private byte[] reviewStatus = new byte[0];
+    private byte[] generatingTsunami = new byte[0];
+    private String[] location = new String[0];
+    private String[] code = new String[0];
+    private String[] magnitudeType = new String[0];
+    private String[] contributorId = new String[0];
+    private String[][] contributors = new String[0][];
+    private URL[] eventPageUrl = new URL[0];
+
+    /**
+     * @see java.util.AbstractList#get(int)
+     */
+    @Override
+    public GeoFeature get(final int index) {
+      return new Row(this, check(index));
+    }
+
+    /**
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /**
+     * @see java.util.AbstractList#add(int, java.lang.Object)
+     */
+    @Override
+    public void add(final int index, final GeoFeature geoFeature) {
+      if (index < 0 || index > size) {
+        throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+      }
+      ensureCapacity(size + 1);
+      move(index, index + 1, size - index);
+      size++;
+      modCount++;
+      copy(geoFeature, index);
+    }
+
+    /**
+     * @see java.util.AbstractList#set(int, java.lang.Object)
+     */
+    @Override
+    public GeoFeature set(final int index, final GeoFeature geoFeature) {
+      final GeoFeature previous = detach(check(index));
+      copy(geoFeature, index);
+      return previous;
+    }
+
+    /**
+     * @see java.util.AbstractList#remove(int)
+     */
+    @Override
+    public GeoFeature remove(final int index) {
+      final GeoFeature previous = detach(check(index));
+      move(index + 1, index, size - index - 1);
+      size--;
+      modCount++;
+      clearRow(size);
+      return previous;
+    }
+
+    /**
+     * @see java.util.AbstractList#clear()
+     */
+    @Override
+    public void clear() {
+      for (int i = 0; i < size; i++) {
+        clearRow(i);
+      }
+      size = 0;
+      modCount++;
+    }
+
+    int check(final int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+      }
+      return index;
+    }
+
+    void ensureCapacity(final int capacity) {
+      if (capacity <= latitude.length) {
+        return;
+      }
+      final int grown = Math.max(capacity, latitude.length + (latitude.length >> 1) + 16);
+      type = ArrayCopies.copyOf(type, grown);
+      latitude = ArrayCopies.copyOf(latitude, grown);
+      longitude = ArrayCopies.copyOf(longitude, grown);
+      depth = ArrayCopies.copyOf(depth, grown);
+      magnitude = ArrayCopies.copyOf(magnitude, grown);
+      time = ArrayCopies.copyOf(time, grown);
+      updatedTime = ArrayCopies.copyOf(updatedTime, grown);
+      timezoneOffset = ArrayCopies.copyOf(timezoneOffset, grown);
+      significance = ArrayCopies.copyOf(significance, grown);
+      noOfEyeWitnessReports = ArrayCopies.copyOf(noOfEyeWitnessReports, grown);
+      noOfStationsReportingEvent = ArrayCopies.copyOf(noOfStationsReportingEvent, grown);
+      maximumReportedIntensity = ArrayCopies.copyOf(maximumReportedIntensity, grown);
+      maximumInstrumentedIntensity = ArrayCopies.copyOf(maximumInstrumentedIntensity, grown);
+      minDistFromEpicentreToStation = ArrayCopies.copyOf(minDistFromEpicentreToStation, grown);
+      alertLevel = ArrayCopies.copyOf(alertLevel, grown);
+      reviewStatus = ArrayCopies.copyOf(reviewStatus, grown);
+      generatingTsunami = ArrayCopies.copyOf(generatingTsunami, grown);
+      location = ArrayCopies.copyOf(location, grown);
+      code = ArrayCopies.copyOf(code, grown);
+      magnitudeType = ArrayCopies.copyOf(magnitudeType, grown);
+      contributorId = ArrayCopies.copyOf(contributorId, grown);
+      contributors = ArrayCopies.copyOf(contributors, grown);
+      eventPageUrl = ArrayCopies.copyOf(eventPageUrl, grown);
+    }
+
+    private void move(final int from, final int to, final int length) {
+      System.arraycopy(type, from, type, to, length);
+      System.arraycopy(latitude, from, latitude, to, length);
+      System.arraycopy(longitude, from, longitude, to, length);
+      System.arraycopy(depth, from, depth, to, length);
+      System.arraycopy(magnitude, from, magnitude, to, length);
+      System.arraycopy(time, from, time, to, length);
+      System.arraycopy(updatedTime, from, updatedTime, to, length);
+      System.arraycopy(timezoneOffset, from, timezoneOffset, to, length);
+      System.arraycopy(significance, from, significance, to, length);
+      System.arraycopy(noOfEyeWitnessReports, from, noOfEyeWitnessReports, to, length);
+      System.arraycopy(noOfStationsReportingEvent, from, noOfStationsReportingEvent, to, length);
+      System.arraycopy(maximumReportedIntensity, from, maximumReportedIntensity, to, length);
+      System.arraycopy(maximumInstrumentedIntensity, from, maximumInstrumentedIntensity, to, length);
+      System.arraycopy(minDistFromEpicentreToStation, from, minDistFromEpicentreToStation, to, length);
+      System.arraycopy(alertLevel, from, alertLevel, to, length);
+      System.arraycopy(reviewStatus, from, reviewStatus, to, length);
+      System.arraycopy(generatingTsunami, from, generatingTsunami, to, length);
+      System.arraycopy(location, from, location, to, length);
+      System.arraycopy(code, from, code, to, length);
+      System.arraycopy(magnitudeType, from, magnitudeType, to, length);
+      System.arraycopy(contributorId, from, contributorId, to, length);
+      System.arraycopy(contributors, from, contributors, to, length);
+      System.arraycopy(eventPageUrl, from, eventPageUrl, to, length);
+    }
+
+    private void clearRow(final int index) {
+      // Only the reference columns need clearing to release their values.
+      location[index] = null;
+      code[index] = null;
+      magnitudeType[index] = null;
+      contributorId[index] = null;
+      contributors[index] = null;
+      eventPageUrl[index] = null;
+    }
+
+    private void copy(final GeoFeature geoFeature, final int index) {
+      type[index] = encode(geoFeature.getType());
+      latitude[index] = geoFeature.getLatitude();
+      longitude[index] = geoFeature.getLongitude();
+      depth[index] = geoFeature.getDepth();
+      magnitude[index] = geoFeature.getMagnitude();
+      time[index] = geoFeature.getTimeInMillis();
+      updatedTime[index] = geoFeature.getUpdatedTimeInMillis();
+      timezoneOffset[index] = geoFeature.hasTimezoneOffset() ? geoFeature.getTimezoneOffset() : GeoFeature.NO_TIMEZONE_OFFSET;
+      significance[index] = geoFeature.getSignificance();
+      noOfEyeWitnessReports[index] = geoFeature.getNoOfEyeWitnessReports();
+      noOfStationsReportingEvent[index] = geoFeature.getNoOfStationsReportingEvent();
+      maximumReportedIntensity[index] = encode(geoFeature.getMaximumReportedIntensity());
+      maximumInstrumentedIntensity[index] = encode(geoFeature.getMaximumInstrumentedIntensity());
+      minDistFromEpicentreToStation[index] = geoFeature.getMinDistFromEpicentreToStation();
+      alertLevel[index] = encode(geoFeature.getAlertLevel());
+      reviewStatus[index] = encode(geoFeature.getReviewStatus());
+      generatingTsunami[index] = encode(geoFeature.isGeneratingTsunami());
+      location[index] = geoFeature.getLocation();
+      code[index] = geoFeature.getCode();
+      magnitudeType[index] = geoFeature.getMagnitudeType();
+      contributorId[index] = geoFeature.getContributorId();
+      contributors[index] = geoFeature.getContributors();
+      eventPageUrl[index] = geoFeature.getEventPageUrl();
+    }
+
+    /**
+     * @return a standalone copy of a row, for the values handed back by set and remove.
+     */
+    private GeoFeature detach(final int index) {
+      return GeoFeature.copyOf(new Row(this, index));
+    }
+  }
+
+
+  /**
+   * A view over one row of the columns.
+   *
+   * @author David C Branton
+   */
+  private static final class Row extends GeoFeature {
+    private final Columns columns;
+    private final int index;
+
+    Row(final Columns columns, final int index) {
+      super(null, 0d, 0d);
+      this.columns = columns;
+      this.index = index;
+    }
+
+    @Override
+    public GeoJsonType getType() {
+      return decode(TYPES, columns.type[index]);
+    }
+
+    @Override
+    public double getLatitude() {
+      return columns.latitude[index];
+    }
+
+    @Override
+    public double getLongitude() {
+      return columns.longitude[index];
+    }
+
+    @Override
+    public double getDepth() {
+      return columns.depth[index];
+    }
+
+    @Override
+    public void setDepth(final double depth) {
+      columns.depth[index] = depth;
+    }
+
+    @Override
+    public double getMagnitude() {
+      return columns.magnitude[index];
+    }
+
+    @Override
+    public void setMagnitude(final double magnitude) {
+      columns.magnitude[index] = magnitude;
+    }
+
+    @Override
+    public String getLocation() {
+      return columns.location[index];
+    }
+
+    @Override
+    public void setLocation(final String location) {
+      columns.location[index] = location;
+    }
+
+    @Override
+    public LocalDateTime getTime() {
+      final long time = columns.time[index];
+      return time == NO_TIME ? null : new LocalDateTime(time, timeZone(columns.timezoneOffset[index]));
+    }
+
+    @Override
+    public void setTime(final LocalDateTime time) {
+      columns.time[index] = time == null ? NO_TIME : time.toDateTime(timeZone(columns.timezoneOffset[index])).getMillis();
+    }
+
+    @Override
+    public long getTimeInMillis() {
+      return columns.time[index];
+    }
+
+    @Override
+    public void setTime(final long time) {
+      columns.time[index] = time;
+    }
+
+    @Override
+    public LocalDateTime getUpdatedTime() {
+      final long updatedTime = columns.updatedTime[index];
+      return updatedTime == NO_TIME ? null : new LocalDateTime(updatedTime, timeZone(columns.timezoneOffset[index]));
+    }
+
+    @Override
+    public void setUpdatedTime(final LocalDateTime updatedTime) {
+      columns.updatedTime[index] =
+          updatedTime == null ? NO_TIME : updatedTime.toDateTime(timeZone(columns.timezoneOffset[index])).getMillis();
+    }
+
+    @Override
+    public long getUpdatedTimeInMillis() {
+      return columns.updatedTime[index];
+    }
+
+    @Override
+    public void setUpdatedTime(final long updatedTime) {
+      columns.updatedTime[index] = updatedTime;
+    }
+
+    @Override
+    public int getTimezoneOffset() {
+      return hasTimezoneOffset() ? columns.timezoneOffset[index] : 0;
+    }
+
+    // A row holds only the instant, so unlike GeoFeature a local time assigned
+    // before the offset keeps its instant rather than its wall time.
+    @Override
+    public void setTimezoneOffset(final int timezoneOffset) {
+      columns.timezoneOffset[index] = timezoneOffset;
+    }
+
+    @Override
+    boolean hasTimezoneOffset() {
+      return columns.timezoneOffset[index] != NO_TIMEZONE_OFFSET;
+    }
+
+    @Override
+    public void setEncodedDetail(final byte[] encodedDetail) {
+      GeoFeatureDetail.decode(encodedDetail, this);
+    }
+
+    @Override
+    public boolean isDetailEncoded() {
+      return false;
+    }
+
+    @Override
+    public URL getEventPageUrl() {
+      return columns.eventPageUrl[index];
+    }
+
+    @Override
+    public void setEventPageUrl(final URL eventPageUrl) {
+      columns.eventPageUrl[index] = eventPageUrl;
+    }
+
+    @Override
+    public int getNoOfEyeWitnessReports() {
+      return columns.noOfEyeWitnessReports[index];
+    }
+
+    @Override
+    public void setNoOfEyeWitnessReports(final int noOfEyeWitnessReports) {
+      columns.noOfEyeWitnessReports[index] = noOfEyeWitnessReports;
+    }
+
+    @Override
+    public Double getMaximumReportedIntensity() {
+      return decode(columns.maximumReportedIntensity[index]);
+    }
+
+    @Override
+    public void setMaximumReportedIntensity(final Double maximumReportedIntensity) {
+      columns.maximumReportedIntensity[index] = encode(maximumReportedIntensity);
+    }
+
+    @Override
+    public Double getMaximumInstrumentedIntensity() {
+      return decode(columns.maximumInstrumentedIntensity[index]);
+    }
+
+    @Override
+    public void setMaximumInstrumentedIntensity(final Double maximumInstrumentedIntensity) {
+      columns.maximumInstrumentedIntensity[index] = encode(maximumInstrumentedIntensity);
+    }
+
+    @Override
+    public PagerAlertLevel getAlertLevel() {
+      return decode(ALERT_LEVELS, columns.alertLevel[index]);
+    }
+
+    @Override
+    public void setAlertLevel(final PagerAlertLevel alertLevel) {
+      columns.alertLevel[index] = encode(alertLevel);
+    }
+
+    @Override
+    public ReviewStatus getReviewStatus() {
+      return decode(REVIEW_STATUSES, columns.reviewStatus[index]);
+    }
+
+    @Override
+    public void setReviewStatus(final ReviewStatus reviewStatus) {
+      columns.reviewStatus[index] = encode(reviewStatus);
+    }
+
+    @Override
+    public Boolean isGeneratingTsunami() {
+      return decode(columns.generatingTsunami[index]);
+    }
+
+    @Override
+    public void setGeneratingTsunami(final Boolean generatingTsunami) {
+      columns.generatingTsunami[index] = encode(generatingTsunami);
+    }
+
+    @Override
+    public int getSignificance() {
+      return columns.significance[index];
+    }
+
+    @Override
+    public void setSignificance(final int significance) {
+      columns.significance[index] = significance;
+    }
+
+    @Override
+    public String getContributorId() {
+      return columns.contributorId[index];
+    }
+
+    @Override
+    public void setContributorId(final String contributorId) {
+      columns.contributorId[index] = contributorId;
+    }
+
+    @Override
+    public String getCode() {
+      return columns.code[index];
+    }
+
+    @Override
+    public void setCode(final String code) {
+      columns.code[index] = code;
+    }
+
+    @Override
+    public String[] getContributors() {
+      final String[] contributors = columns.contributors[index];
+      return contributors == null ? null : contributors.clone();
+    }
+
+    @Override
+    public void setContributors(final String[] contributors) {
+      columns.contributors[index] = contributors;
+    }
+
+    @Override
+    public int getNoOfStationsReportingEvent() {
+      return columns.noOfStationsReportingEvent[index];
+    }
+
+    @Override
+    public void setNoOfStationsReportingEvent(final int noOfStationsReportingEvent) {
+      columns.noOfStationsReportingEvent[index] = noOfStationsReportingEvent;
+    }
+
+    @Override
+    public double getMinDistFromEpicentreToStation() {
+      return columns.minDistFromEpicentreToStation[index];
+    }
+
+    @Override
+    public void setMinDistFromEpicentreToStation(final double minDistFromEpicentreToStation) {
+      columns.minDistFromEpicentreToStation[index] = minDistFromEpicentreToStation;
+    }
+
+    @Override
+    public String getMagnitudeType() {
+      return columns.magnitudeType[index];
+    }
+
+    @Override
+    public void setMagnitudeType(final String magnitudeType) {
+      columns.magnitudeType[index] = magnitudeType;
+    }
+  }
+}
@@ -21,7 +21,8 @@ public class DatabaseCreationSQL {
 
   public static final String CREATE_GEO_FEATURE_TABLE =
       "CREATE TABLE GeoFeature " +
-          "(code TEXT NOT NULL, " +
+          "(id INTEGER PRIMARY KEY, " +
+          "code TEXT NOT NULL, " +
           "collectionId INTEGER NOT NULL," +
           "geoJsonType STRING," +
           "time INTEGER," +
@@ -32,8 +33,55 @@ public class DatabaseCreationSQL {
           "magnitudeType TEXT," +
           "alertLevel TEXT," +
           "generatingTsunami INTEGER," +
-          "PRIMARY KEY(code, collectionId)); ";
+          "updatedTime INTEGER," +
+          "UNIQUE(code, collectionId)); ";
+
+  // Serves listing a collection newest first, and paging it on (time, code), without a sort.
+  public static final String CREATE_GEO_FEATURE_TIME_INDEX =
+      "CREATE INDEX IF NOT EXISTS GeoFeatureCollectionTimeCode " +
+          "ON GeoFeature (collectionId, time, code); ";
+
+  // Covers magnitude band counts, optionally within a time window.
+  public static final String CREATE_GEO_FEATURE_MAGNITUDE_INDEX =
+      "CREATE INDEX IF NOT EXISTS GeoFeatureCollectionMagnitude " +
+          "ON GeoFeature (collectionId, magnitude, time); ";
+
+  // Covers latitude band counts with the longitude to hand.
+  public static final String CREATE_GEO_FEATURE_COORDINATE_INDEX =
+      "CREATE INDEX IF NOT EXISTS GeoFeatureCollectionCoordinates " +
+          "ON GeoFeature (collectionId, latitude, longitude); ";
+
+  // Each feature's epicentre as a zero sized box, keyed on the feature's id.
+  public static final String CREATE_GEO_FEATURE_LOCATION_TABLE =
+      "CREATE VIRTUAL TABLE GeoFeatureLocation USING rtree " +
+          "(id, " +
+          "minLatitude, maxLatitude, " +
+          "minLongitude, maxLongitude); ";
+
+  public static final String CREATE_GEO_FEATURE_LOCATION_INSERT_TRIGGER =
+      "CREATE TRIGGER GeoFeatureLocationInsert AFTER INSERT ON GeoFeature BEGIN " +
+          "INSERT OR REPLACE INTO GeoFeatureLocation VALUES " +
+          "(new.id, new.latitude, new.latitude, new.longitude, new.longitude); " +
+          "END; ";
 
+  public static final String CREATE_GEO_FEATURE_LOCATION_UPDATE_TRIGGER =
+      "CREATE TRIGGER GeoFeatureLocationUpdate AFTER UPDATE OF latitude, longitude ON GeoFeature BEGIN " +
+          "UPDATE GeoFeatureLocation SET " +
+          "minLatitude = new.latitude, maxLatitude = new.latitude, " +
+          "minLongitude = new.longitude, maxLongitude = new.longitude " +
+          "WHERE id = new.id; " +
+          "END; ";
+
+  public static final String CREATE_GEO_FEATURE_LOCATION_DELETE_TRIGGER =
+      "CREATE TRIGGER GeoFeatureLocationDelete AFTER DELETE ON GeoFeature BEGIN " +
+          "DELETE FROM GeoFeatureLocation WHERE id = old.id; " +
+          "END; ";
+
+  public static final String POPULATE_GEO_FEATURE_LOCATION_TABLE =
+      "INSERT INTO GeoFeatureLocation " +
+          "SELECT id, latitude, latitude, longitude, longitude FROM GeoFeature; ";
+
+  // The detail of each feature, read only when the feature is opened. The id is the feature's id.
   public static final String CREATE_GEO_FEATURE_TECHNICAL_TABLE =
       "CREATE TABLE GeoFeatureTechnical " +
           "(id INTEGER PRIMARY KEY, " +
@@ -51,9 +99,144 @@ public class DatabaseCreationSQL {
           "stationsReportingEvent INTEGER," +
           "stationDistanceToEpicentre REAL); ";
 
+  public static final String CREATE_GEO_FEATURE_TECHNICAL_DELETE_TRIGGER =
+      "CREATE TRIGGER IF NOT EXISTS GeoFeatureTechnicalDelete AFTER DELETE ON GeoFeature BEGIN " +
+          "DELETE FROM GeoFeatureTechnical WHERE id = old.id; " +
+          "END; ";
+
+  // Per collection, whole magnitude band and hour of event time, so counts and charts read buckets, not features.
+  // A feature with no time has no hour; the NOT NULL hour makes the triggers' INSERT OR IGNORE leave it out.
+  public static final String CREATE_GEO_FEATURE_SUMMARY_TABLE =
+      "CREATE TABLE IF NOT EXISTS GeoFeatureSummary " +
+          "(collectionId INTEGER NOT NULL, " +
+          "magnitudeBand INTEGER NOT NULL, " +
+          "hour INTEGER NOT NULL, " +
+          "features INTEGER NOT NULL, " +
+          "maxMagnitude REAL, " +
+          "tsunamis INTEGER NOT NULL, " +
+          "greenAlerts INTEGER NOT NULL, " +
+          "yellowAlerts INTEGER NOT NULL, " +
+          "orangeAlerts INTEGER NOT NULL, " +
+          "redAlerts INTEGER NOT NULL, " +
+          "PRIMARY KEY(collectionId, magnitudeBand, hour)); ";
+
+  public static final String CREATE_GEO_FEATURE_SUMMARY_INSERT_TRIGGER =
+      "CREATE TRIGGER IF NOT EXISTS GeoFeatureSummaryInsert AFTER INSERT ON GeoFeature BEGIN " +
+          addToSummary("new") +
+          "END; ";
+
+  public static final String CREATE_GEO_FEATURE_SUMMARY_UPDATE_TRIGGER =
+      "CREATE TRIGGER IF NOT EXISTS GeoFeatureSummaryUpdate " +
+          "AFTER UPDATE OF collectionId, time, magnitude, alertLevel, generatingTsunami ON GeoFeature BEGIN " +
+          removeFromSummary("old") +
+          addToSummary("new") +
+          "END; ";
+
+  public static final String CREATE_GEO_FEATURE_SUMMARY_DELETE_TRIGGER =
+      "CREATE TRIGGER IF NOT EXISTS GeoFeatureSummaryDelete AFTER DELETE ON GeoFeature BEGIN " +
+          removeFromSummary("old") +
+          "END; ";
+
+  public static final String POPULATE_GEO_FEATURE_SUMMARY_TABLE =
+      "INSERT OR REPLACE INTO GeoFeatureSummary " +
+          "SELECT collectionId, CAST(magnitude AS INTEGER), time / 3600000, COUNT(*), MAX(magnitude), " +
+          "SUM(CASE WHEN generatingTsunami = 1 THEN 1 ELSE 0 END), " +
+          "SUM(CASE WHEN alertLevel = 'green' THEN 1 ELSE 0 END), " +
+          "SUM(CASE WHEN alertLevel = 'yellow' THEN 1 ELSE 0 END), " +
+          "SUM(CASE WHEN alertLevel = 'orange' THEN 1 ELSE 0 END), " +
+          "SUM(CASE WHEN alertLevel = 'red' THEN 1 ELSE 0 END) " +
+          "FROM GeoFeature GROUP BY 1, 2, 3; ";
+
   public static final String CREATE_UPGRADE_AUDIT_TABLE_SQL =
       "CREATE TABLE UpgradeAudit " +
           "(upgradeUUID TEXT PRIMARY KEY, " +
           "description TEXT, " +
           "upgradeSequence INTEGER); ";
+
+  /**
+   * Every statement above in the order they are run.
+   */
+  public static final String[] SCHEMA = {
+    CREATE_GEO_FEATURE_COLLECTION_TABLE,
+    CREATE_GEO_FEATURE_TABLE,
+    CREATE_GEO_FEATURE_TIME_INDEX,
+    CREATE_GEO_FEATURE_MAGNITUDE_INDEX,
+    CREATE_GEO_FEATURE_COORDINATE_INDEX,
+    CREATE_GEO_FEATURE_TECHNICAL_TABLE,
+    CREATE_GEO_FEATURE_TECHNICAL_DELETE_TRIGGER,
+    CREATE_GEO_FEATURE_SUMMARY_TABLE,
+    CREATE_GEO_FEATURE_SUMMARY_INSERT_TRIGGER,
+    CREATE_GEO_FEATURE_SUMMARY_UPDATE_TRIGGER,
+    CREATE_GEO_FEATURE_SUMMARY_DELETE_TRIGGER,
+    CREATE_UPGRADE_AUDIT_TABLE_SQL
+  };
+
+  /**
+   * The R*Tree spatial index over GeoFeature and the triggers keeping
+   * it in step. SQLite builds without the R*Tree module reject the
+   * first statement, leaving the features to the coordinate index.
+   */
+  public static final String[] SPATIAL_SCHEMA = {
+    CREATE_GEO_FEATURE_LOCATION_TABLE,
+    POPULATE_GEO_FEATURE_LOCATION_TABLE,
+    CREATE_GEO_FEATURE_LOCATION_INSERT_TRIGGER,
+    CREATE_GEO_FEATURE_LOCATION_UPDATE_TRIGGER,
+    CREATE_GEO_FEATURE_LOCATION_DELETE_TRIGGER
+  };
+
+
+  /**
+   * The trigger statements counting a feature into its summary bucket.
+   *
+   * @param row The trigger row, new or old.
+   */
+  private static String addToSummary(final String row) {
+    return "INSERT OR IGNORE INTO GeoFeatureSummary VALUES " +
+               "(" + row + ".collectionId, CAST(" + row + ".magnitude AS INTEGER), " + row + ".time / 3600000, " +
+               "0, " + row + ".magnitude, 0, 0, 0, 0, 0); " +
+           "UPDATE GeoFeatureSummary SET " +
+               "features = features + 1, " +
+               "maxMagnitude = MAX(maxMagnitude, " + row + ".magnitude), " +
+               "tsunamis = tsunamis + " + flag(row + ".generatingTsunami = 1") + ", " +
+               "greenAlerts = greenAlerts + " + flag(row + ".alertLevel = 'green'") + ", " +
+               "yellowAlerts = yellowAlerts + " + flag(row + ".alertLevel = 'yellow'") + ", " +
+               "orangeAlerts = orangeAlerts + " + flag(row + ".alertLevel = 'orange'") + ", " +
+               "redAlerts = redAlerts + " + flag(row + ".alertLevel = 'red'") + " " +
+               summaryBucket(row) + "; ";
+  }
+
+
+  /**
+   * The trigger statements counting a feature out of its summary bucket. The
+   * largest magnitude is only looked up again when the feature held it.
+   *
+   * @param row The trigger row, new or old.
+   */
+  private static String removeFromSummary(final String row) {
+    return "UPDATE GeoFeatureSummary SET " +
+               "features = features - 1, " +
+               "maxMagnitude = CASE WHEN " + row + ".magnitude < maxMagnitude THEN maxMagnitude ELSE " +
+                   "(SELECT MAX(magnitude) FROM GeoFeature WHERE collectionId = " + row + ".collectionId " +
+                   "AND time >= " + row + ".time / 3600000 * 3600000 AND time < (" + row + ".time / 3600000 + 1) * 3600000 " +
+                   "AND CAST(magnitude AS INTEGER) = CAST(" + row + ".magnitude AS INTEGER)) END, " +
+               "tsunamis = tsunamis - " + flag(row + ".generatingTsunami = 1") + ", " +
+               "greenAlerts = greenAlerts - " + flag(row + ".alertLevel = 'green'") + ", " +
+               "yellowAlerts = yellowAlerts - " + flag(row + ".alertLevel = 'yellow'") + ", " +
+               "orangeAlerts = orangeAlerts - " + flag(row + ".alertLevel = 'orange'") + ", " +
+               "redAlerts = redAlerts - " + flag(row + ".alertLevel = 'red'") + " " +
+               summaryBucket(row) + "; " +
+           "DELETE FROM GeoFeatureSummary " + summaryBucket(row) + " AND features = 0; ";
+  }
+
+
+  private static String summaryBucket(final String row) {
+    return "WHERE collectionId = " + row + ".collectionId " +
+           "AND magnitudeBand = CAST(" + row + ".magnitude AS INTEGER) " +
+           "AND hour = " + row + ".time / 3600000";
+  }
+
+
+  private static String flag(final String condition) {
+    return "(CASE WHEN " + condition + " THEN 1 ELSE 0 END)";
+  }
 }
@@ -0,0 +1,66 @@
+package com.brantapps.epicentre.model;
+
+
+/**
+ * The statements used to bring a database
+ * created by an earlier version of the application
+ * up to date with {@link DatabaseCreationSQL}.
+ *
+ * @author David C Branton
+ */
+public class DatabaseUpgradeSQL {
+
+  public static final String ADD_GEO_FEATURE_UPDATED_TIME =
+      "ALTER TABLE GeoFeature ADD COLUMN updatedTime INTEGER; ";
+
+  // Replaced by DatabaseCreationSQL.CREATE_GEO_FEATURE_TIME_INDEX, which adds code for paging.
+  public static final String DROP_GEO_FEATURE_TIME_INDEX =
+      "DROP INDEX IF EXISTS GeoFeatureCollectionTime; ";
+
+  // GeoFeature was keyed on (code, collectionId), leaving the side tables on its implicit
+  // rowid, which VACUUM may renumber. The rebuild keeps each rowid as the explicit id.
+  public static final String CREATE_GEO_FEATURE_REBUILD_TABLE =
+      "CREATE TABLE GeoFeatureRebuild " +
+          "(id INTEGER PRIMARY KEY, " +
+          "code TEXT NOT NULL, " +
+          "collectionId INTEGER NOT NULL," +
+          "geoJsonType STRING," +
+          "time INTEGER," +
+          "location TEXT," +
+          "latitude REAL, " +
+          "longitude REAL," +
+          "magnitude REAL," +
+          "magnitudeType TEXT," +
+          "alertLevel TEXT," +
+          "generatingTsunami INTEGER," +
+          "updatedTime INTEGER," +
+          "UNIQUE(code, collectionId)); ";
+
+  public static final String COPY_GEO_FEATURE_TO_REBUILD_TABLE =
+      "INSERT INTO GeoFeatureRebuild " +
+          "(id, code, collectionId, geoJsonType, time, location, latitude, longitude, " +
+          "magnitude, magnitudeType, alertLevel, generatingTsunami, updatedTime) " +
+          "SELECT rowid, code, collectionId, geoJsonType, time, location, latitude, longitude, " +
+          "magnitude, magnitudeType, alertLevel, generatingTsunami, updatedTime FROM GeoFeature; ";
+
+  // Also drops the indexes and triggers on GeoFeature, which the upgrade then creates again.
+  public static final String DROP_GEO_FEATURE_TABLE =
+      "DROP TABLE GeoFeature; ";
+
+  public static final String RENAME_GEO_FEATURE_REBUILD_TABLE =
+      "ALTER TABLE GeoFeatureRebuild RENAME TO GeoFeature; ";
+
+  // Unset times were stored as Long.MIN_VALUE, which put their features in a nonsense hour bucket.
+  public static final String CLEAR_GEO_FEATURE_UNSET_TIME =
+      "UPDATE GeoFeature SET time = NULL WHERE time = -9223372036854775808; ";
+
+  public static final String CLEAR_GEO_FEATURE_UNSET_UPDATED_TIME =
+      "UPDATE GeoFeature SET updatedTime = NULL WHERE updatedTime = -9223372036854775808; ";
+
+  public static final String CLEAR_GEO_FEATURE_TECHNICAL_UNSET_UPDATED_TIME =
+      "UPDATE GeoFeatureTechnical SET updatedTime = NULL WHERE updatedTime = -9223372036854775808; ";
+
+  // Lets the R*Tree be built again, keyed on the explicit id, wherever it was built before.
+  public static final String DROP_GEO_FEATURE_LOCATION_TABLE =
+      "DROP TABLE IF EXISTS GeoFeatureLocation; ";
+}
@@ -2,22 +2,45 @@ package com.brantapps.epicentre.model;
 
 import java.net.URL;
 
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
 
 /**
  * An earth feature.
+ * <p>
+ * Event times are held as epoch milliseconds alongside the reporting
+ * timezone offset. The {@link LocalDateTime} views are only built the first
+ * time they are asked for. Times and the offset may be assigned in any
+ * order: a time assigned as a {@link LocalDateTime} keeps its wall time
+ * when the offset is assigned afterwards, one assigned in milliseconds
+ * keeps its instant.
+ * </p>
+ * <p>
+ * The detail fields, everything other than the position, magnitude,
+ * location, times and code, may be assigned as a {@link GeoFeatureDetail}
+ * blob. The blob is decoded the first time any detail field is read or
+ * written.
+ * </p>
  *
  * @author David C Branton
  */
 public class GeoFeature {
+  static final long NO_TIME = Long.MIN_VALUE;
+  static final int NO_TIMEZONE_OFFSET = Integer.MIN_VALUE;
   private final GeoJsonType type;
   private final double latitude;
   private final double longitude;
   private double depth;
   private double magnitude;
   private String location;
-  private LocalDateTime time;
-  private LocalDateTime updatedTime;
+  private long time = NO_TIME;
+  private long updatedTime = NO_TIME;
+  private int timezoneOffset = NO_TIMEZONE_OFFSET;
+  private LocalDateTime localTime;
+  private LocalDateTime localUpdatedTime;
+  // Whether the times were assigned as wall times, to be kept should the offset change.
+  private boolean wallTime;
+  private boolean wallUpdatedTime;
   private URL eventPageUrl;
   private int noOfEyeWitnessReports;
   private Double maximumReportedIntensity;
@@ -32,6 +55,8 @@ public class GeoFeature {
   private int noOfStationsReportingEvent;
   private double minDistFromEpicentreToStation;
   private String magnitudeType;
+  // Volatile so a feature decoded on one thread is seen decoded, with its fields, on any other.
+  private volatile byte[] encodedDetail;
 
   /**
    * Constructs a {@link GeoFeature} for
@@ -49,6 +74,38 @@ public class GeoFeature {
   }
 
 
+  /**
+   * @param source  The feature to copy, which may be a view over another store.
+   * @return a standalone copy of the feature.
+   */
+  public static GeoFeature copyOf(final GeoFeature source) {
+    final GeoFeature geoFeature = new GeoFeature(source.getType(), source.getLatitude(), source.getLongitude());
+    geoFeature.setDepth(source.getDepth());
+    geoFeature.setMagnitude(source.getMagnitude());
+    geoFeature.setLocation(source.getLocation());
+    if (source.hasTimezoneOffset()) {
+      geoFeature.setTimezoneOffset(source.getTimezoneOffset());
+    }
+    geoFeature.setTime(source.getTimeInMillis());
+    geoFeature.setUpdatedTime(source.getUpdatedTimeInMillis());
+    geoFeature.setEventPageUrl(source.getEventPageUrl());
+    geoFeature.setNoOfEyeWitnessReports(source.getNoOfEyeWitnessReports());
+    geoFeature.setMaximumReportedIntensity(source.getMaximumReportedIntensity());
+    geoFeature.setMaximumInstrumentedIntensity(source.getMaximumInstrumentedIntensity());
+    geoFeature.setAlertLevel(source.getAlertLevel());
+    geoFeature.setReviewStatus(source.getReviewStatus());
+    geoFeature.setGeneratingTsunami(source.isGeneratingTsunami());
+    geoFeature.setSignificance(source.getSignificance());
+    geoFeature.setContributorId(source.getContributorId());
+    geoFeature.setCode(source.getCode());
+    geoFeature.setContributors(source.getContributors());
+    geoFeature.setNoOfStationsReportingEvent(source.getNoOfStationsReportingEvent());
+    geoFeature.setMinDistFromEpicentreToStation(source.getMinDistFromEpicentreToStation());
+    geoFeature.setMagnitudeType(source.getMagnitudeType());
+    return geoFeature;
+  }
+
+
   /**
    * @return the {@link GeoJsonType} of this feature.
    */
@@ -124,10 +181,14 @@ public class GeoFeature {
 
 
   /**
-   * @return the time the quake occurred.
+   * @return the time the quake occurred in the reporting timezone, or the
+   *         device timezone when the reporting timezone is unknown.
    */
   public LocalDateTime getTime() {
-    return time;
+    if (localTime == null && time != NO_TIME) {
+      localTime = new LocalDateTime(time, getTimeZone());
+    }
+    return localTime;
   }
 
 
@@ -135,15 +196,47 @@ public class GeoFeature {
    * @param time Assign the date the quake occurred.
    */
   public void setTime(final LocalDateTime time) {
+    this.localTime = time;
+    this.time = toMillis(time);
+    this.wallTime = time != null;
+  }
+
+
+  /**
+   * @return the time the quake occurred in milliseconds since the epoch.
+   */
+  public long getTimeInMillis() {
+    return time;
+  }
+
+
+  /**
+   * @return whether the time the quake occurred is known.
+   */
+  public boolean hasTime() {
+    return getTimeInMillis() != NO_TIME;
+  }
+
+
+  /**
+   * @param time Assign the time the quake occurred in milliseconds since the epoch.
+   */
+  public void setTime(final long time) {
     this.time = time;
+    this.localTime = null;
+    this.wallTime = false;
   }
 
 
   /**
-   * @return the updatedTime of the report.
+   * @return the updatedTime of the report in the reporting timezone, or the
+   *         device timezone when the reporting timezone is unknown.
    */
   public LocalDateTime getUpdatedTime() {
-    return updatedTime;
+    if (localUpdatedTime == null && updatedTime != NO_TIME) {
+      localUpdatedTime = new LocalDateTime(updatedTime, getTimeZone());
+    }
+    return localUpdatedTime;
   }
 
 
@@ -151,7 +244,129 @@ public class GeoFeature {
    * @param updatedTime Assign the updated time of the report.
    */
   public void setUpdatedTime(final LocalDateTime updatedTime) {
+    this.localUpdatedTime = updatedTime;
+    this.updatedTime = toMillis(updatedTime);
+    this.wallUpdatedTime = updatedTime != null;
+  }
+
+
+  /**
+   * @return the updated time of the report in milliseconds since the epoch.
+   */
+  public long getUpdatedTimeInMillis() {
+    return updatedTime;
+  }
+
+
+  /**
+   * @return whether the updated time of the report is known.
+   */
+  public boolean hasUpdatedTime() {
+    return getUpdatedTimeInMillis() != NO_TIME;
+  }
+
+
+  /**
+   * @param updatedTime Assign the updated time of the report in milliseconds since the epoch.
+   */
+  public void setUpdatedTime(final long updatedTime) {
     this.updatedTime = updatedTime;
+    this.localUpdatedTime = null;
+    this.wallUpdatedTime = false;
+  }
+
+
+  /**
+   * @return the offset of the reporting timezone from UTC in minutes.
+   */
+  public int getTimezoneOffset() {
+    return timezoneOffset == NO_TIMEZONE_OFFSET ? 0 : timezoneOffset;
+  }
+
+
+  /**
+   * @param timezoneOffset Assign the offset of the reporting timezone from UTC in minutes.
+   */
+  public void setTimezoneOffset(final int timezoneOffset) {
+    this.timezoneOffset = timezoneOffset;
+    if (wallTime) {
+      time = toMillis(localTime);
+    } else {
+      localTime = null;
+    }
+    if (wallUpdatedTime) {
+      updatedTime = toMillis(localUpdatedTime);
+    } else {
+      localUpdatedTime = null;
+    }
+  }
+
+
+  /**
+   * @param encodedDetail Assign the detail fields encoded by a {@link GeoFeatureDetail.Encoder}.
+   */
+  public void setEncodedDetail(final byte[] encodedDetail) {
+    this.encodedDetail = encodedDetail;
+  }
+
+
+  /**
+   * @return whether the detail fields are still held encoded.
+   */
+  public boolean isDetailEncoded() {
+    return encodedDetail != null;
+  }
+
+
+  private void decodeDetail() {
+    if (encodedDetail != null) {
+      synchronized (this) {
+        final byte[] detail = encodedDetail;
+        if (detail != null) {
+          // Decoded aside, as decoding assigns the fields through their setters,
+          // and cleared last so no thread sees the fields before they are assigned.
+          final GeoFeature decoded = new GeoFeature(type, latitude, longitude);
+          GeoFeatureDetail.decode(detail, decoded);
+          noOfEyeWitnessReports = decoded.noOfEyeWitnessReports;
+          significance = decoded.significance;
+          noOfStationsReportingEvent = decoded.noOfStationsReportingEvent;
+          minDistFromEpicentreToStation = decoded.minDistFromEpicentreToStation;
+          maximumReportedIntensity = decoded.maximumReportedIntensity;
+          maximumInstrumentedIntensity = decoded.maximumInstrumentedIntensity;
+          generatingTsunami = decoded.generatingTsunami;
+          reviewStatus = decoded.reviewStatus;
+          alertLevel = decoded.alertLevel;
+          eventPageUrl = decoded.eventPageUrl;
+          contributorId = decoded.contributorId;
+          magnitudeType = decoded.magnitudeType;
+          contributors = decoded.contributors;
+          encodedDetail = null;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * @return whether the reporting timezone is known.
+   */
+  boolean hasTimezoneOffset() {
+    return timezoneOffset != NO_TIMEZONE_OFFSET;
+  }
+
+
+  private long toMillis(final LocalDateTime local) {
+    return local == null ? NO_TIME : local.toDateTime(getTimeZone()).getMillis();
+  }
+
+
+  private DateTimeZone getTimeZone() {
+    return timeZone(timezoneOffset);
+  }
+
+
+  static DateTimeZone timeZone(final int timezoneOffset) {
+    return timezoneOffset == NO_TIMEZONE_OFFSET ? DateTimeZone.getDefault() : TimezoneOffsets.forMinutes(timezoneOffset);
   }
 
 
@@ -159,6 +374,7 @@ public class GeoFeature {
    * @return the eventPageUrl tracking the quake by USGS.
    */
   public URL getEventPageUrl() {
+    decodeDetail();
     return eventPageUrl;
   }
 
@@ -167,6 +383,7 @@ public class GeoFeature {
    * @param eventPageUrl Assign the event quake URL page.
    */
   public void setEventPageUrl(final URL eventPageUrl) {
+    decodeDetail();
     this.eventPageUrl = eventPageUrl;
   }
 
@@ -175,6 +392,7 @@ public class GeoFeature {
    * @return the noOfEyeWitnessReports.
    */
   public int getNoOfEyeWitnessReports() {
+    decodeDetail();
     return noOfEyeWitnessReports;
   }
 
@@ -183,6 +401,7 @@ public class GeoFeature {
    * @param noOfEyeWitnessReports Assign the number of eye witness reports.
    */
   public void setNoOfEyeWitnessReports(final int noOfEyeWitnessReports) {
+    decodeDetail();
     this.noOfEyeWitnessReports = noOfEyeWitnessReports;
   }
 
@@ -191,6 +410,7 @@ public class GeoFeature {
    * @return the maximumReportedIntensity of the quake.
    */
   public Double getMaximumReportedIntensity() {
+    decodeDetail();
     return maximumReportedIntensity;
   }
 
@@ -199,6 +419,7 @@ public class GeoFeature {
    * @param maximumReportedIntensity Assign the maximum reported intensity of the quake.
    */
   public void setMaximumReportedIntensity(final Double maximumReportedIntensity) {
+    decodeDetail();
     this.maximumReportedIntensity = maximumReportedIntensity;
   }
 
@@ -207,6 +428,7 @@ public class GeoFeature {
    * @return the maximumInstrumentedIntensity of the quake.
    */
   public Double getMaximumInstrumentedIntensity() {
+    decodeDetail();
     return maximumInstrumentedIntensity;
   }
 
@@ -215,6 +437,7 @@ public class GeoFeature {
    * @param maximumInstrumentedIntensity Assign the maximum instrumented intensity of the quake.
    */
   public void setMaximumInstrumentedIntensity(Double maximumInstrumentedIntensity) {
+    decodeDetail();
     this.maximumInstrumentedIntensity = maximumInstrumentedIntensity;
   }
 
@@ -223,6 +446,7 @@ public class GeoFeature {
    * @return the alertLevel designated by PAGER.
    */
   public PagerAlertLevel getAlertLevel() {
+    decodeDetail();
     return alertLevel;
   }
 
@@ -231,6 +455,7 @@ public class GeoFeature {
    * @param alertLevel Assign the alert level to the quake.
    */
   public void setAlertLevel(final PagerAlertLevel alertLevel) {
+    decodeDetail();
     this.alertLevel = alertLevel;
   }
 
@@ -239,6 +464,7 @@ public class GeoFeature {
    * @return the reviewStatus indicating whether the report had been eye-balled by a human.
    */
   public ReviewStatus getReviewStatus() {
+    decodeDetail();
     return reviewStatus;
   }
 
@@ -247,6 +473,7 @@ public class GeoFeature {
    * @param reviewStatus Assign whether the report has been eye-balled by a human.
    */
   public void setReviewStatus(final ReviewStatus reviewStatus) {
+    decodeDetail();
     this.reviewStatus = reviewStatus;
   }
 
@@ -255,6 +482,7 @@ public class GeoFeature {
    * @return the generatingTsunami flag indicating whether the quake has started a tsunami.
    */
   public Boolean isGeneratingTsunami() {
+    decodeDetail();
     return generatingTsunami;
   }
 
@@ -263,6 +491,7 @@ public class GeoFeature {
    * @param generatingTsunami Assign whether the quake has started a tsunami.
    */
   public void setGeneratingTsunami(final Boolean generatingTsunami) {
+    decodeDetail();
     this.generatingTsunami = generatingTsunami;
   }
 
@@ -271,6 +500,7 @@ public class GeoFeature {
    * @return the significance of the quake.
    */
   public int getSignificance() {
+    decodeDetail();
     return significance;
   }
 
@@ -279,6 +509,7 @@ public class GeoFeature {
    * @param significance Assign the level of importance levelled at the quake event.
    */
   public void setSignificance(final int significance) {
+    decodeDetail();
     this.significance = significance;
   }
 
@@ -287,6 +518,7 @@ public class GeoFeature {
    * @return the contributorId of the source reporter.
    */
   public String getContributorId() {
+    decodeDetail();
     return contributorId;
   }
 
@@ -295,6 +527,7 @@ public class GeoFeature {
    * @param contributorId Assign the report contributor.
    */
   public void setContributorId(final String contributorId) {
+    decodeDetail();
     this.contributorId = contributorId;
   }
 
@@ -316,10 +549,12 @@ public class GeoFeature {
 
 
   /**
-   * @return the contributors, contributing to this report.
+   * @return a copy of the contributors, contributing to this report, as
+   *  the array itself may be shared with other features by the parser.
    */
   public String[] getContributors() {
-    return contributors;
+    decodeDetail();
+    return contributors == null ? null : contributors.clone();
   }
 
 
@@ -327,6 +562,7 @@ public class GeoFeature {
    * @param contributors Assign the report contributors.
    */
   public void setContributors(final String[] contributors) {
+    decodeDetail();
     this.contributors = contributors;
   }
 
@@ -335,6 +571,7 @@ public class GeoFeature {
    * @return the noOfStationsReportingEvent.
    */
   public int getNoOfStationsReportingEvent() {
+    decodeDetail();
     return noOfStationsReportingEvent;
   }
 
@@ -343,6 +580,7 @@ public class GeoFeature {
    * @param noOfStationsReportingEvent Assign the number of stations reporting the event.
    */
   public void setNoOfStationsReportingEvent(final int noOfStationsReportingEvent) {
+    decodeDetail();
     this.noOfStationsReportingEvent = noOfStationsReportingEvent;
   }
 
@@ -351,6 +589,7 @@ public class GeoFeature {
    * @return the minDistFromEpicentreToStation that reported the event.
    */
   public double getMinDistFromEpicentreToStation() {
+    decodeDetail();
     return minDistFromEpicentreToStation;
   }
 
@@ -360,6 +599,7 @@ public class GeoFeature {
    *                                      measurement station.
    */
   public void setMinDistFromEpicentreToStation(double minDistFromEpicentreToStation) {
+    decodeDetail();
     this.minDistFromEpicentreToStation = minDistFromEpicentreToStation;
   }
 
@@ -368,6 +608,7 @@ public class GeoFeature {
    * @return the magnitudeType of the {@link #magnitude}.
    */
   public String getMagnitudeType() {
+    decodeDetail();
     return magnitudeType;
   }
 
@@ -376,6 +617,7 @@ public class GeoFeature {
    * @param magnitudeType Assign the {@link #magnitude} type.
    */
   public void setMagnitudeType(String magnitudeType) {
+    decodeDetail();
     this.magnitudeType = magnitudeType;
   }
 }
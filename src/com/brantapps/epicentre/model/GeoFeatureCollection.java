@@ -3,6 +3,7 @@ package com.brantapps.epicentre.model;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -17,6 +18,8 @@ import org.joda.time.Period;
  */
 public class GeoFeatureCollection implements List<GeoFeature> {
   private long identifier;
+  private int modificationCount;
+  private int appendCount;
   private final List<GeoFeature> geoFeatures;
   private LocalDateTime generated;
   private URL url;
@@ -33,11 +36,49 @@ public class GeoFeatureCollection implements List<GeoFeature> {
   }
 
 
+  /**
+   * Constructs the collection over another
+   * store of features.
+   *
+   * @param geoFeatures The list holding the features.
+   */
+  protected GeoFeatureCollection(final List<GeoFeature> geoFeatures) {
+    this.geoFeatures = geoFeatures;
+  }
+
+
+  /**
+   * @param source  The collection to wrap.
+   * @return a view of the collection through which neither its features
+   *  nor its report details can be changed.
+   */
+  public static GeoFeatureCollection unmodifiable(final GeoFeatureCollection source) {
+    return source instanceof Unmodifiable ? source : new Unmodifiable(source);
+  }
+
+
+  /**
+   * Make room for a number of features, typically the
+   * count given in the report metadata, ahead of adding them.
+   *
+   * @param capacity  The number of features expected.
+   */
+  public void ensureCapacity(final int capacity) {
+    if (geoFeatures instanceof ArrayList) {
+      ((ArrayList<GeoFeature>) geoFeatures).ensureCapacity(capacity);
+    }
+  }
+
+
   /**
    * @see java.util.List#add(int, java.lang.Object)
    */
   @Override
   public void add(final int location, final GeoFeature object) {
+    modificationCount++;
+    if (location == geoFeatures.size()) {
+      appendCount++;
+    }
     geoFeatures.add(location, object);
   }
 
@@ -47,6 +88,8 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean add(GeoFeature object) {
+    modificationCount++;
+    appendCount++;
     return geoFeatures.add(object);
   }
 
@@ -56,6 +99,10 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean addAll(int location, Collection<? extends GeoFeature> collection) {
+    modificationCount++;
+    if (location == geoFeatures.size()) {
+      appendCount++;
+    }
     return geoFeatures.addAll(location, collection);
   }
 
@@ -65,6 +112,8 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean addAll(Collection<? extends GeoFeature> collection) {
+    modificationCount++;
+    appendCount++;
     return geoFeatures.addAll(collection);
   }
 
@@ -74,6 +123,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public void clear() {
+    modificationCount++;
     geoFeatures.clear();
   }
 
@@ -164,6 +214,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public GeoFeature remove(int location) {
+    modificationCount++;
     return geoFeatures.remove(location);
   }
 
@@ -173,6 +224,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean remove(Object object) {
+    modificationCount++;
     return geoFeatures.remove(object);
   }
 
@@ -182,6 +234,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean removeAll(Collection<?> collection) {
+    modificationCount++;
     return geoFeatures.removeAll(collection);
   }
 
@@ -191,6 +244,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public boolean retainAll(Collection<?> collection) {
+    modificationCount++;
     return geoFeatures.retainAll(collection);
   }
 
@@ -200,6 +254,7 @@ public class GeoFeatureCollection implements List<GeoFeature> {
    */
   @Override
   public GeoFeature set(int location, GeoFeature object) {
+    modificationCount++;
     return geoFeatures.set(location, object);
   }
 
@@ -240,6 +295,30 @@ public class GeoFeatureCollection implements List<GeoFeature> {
   }
 
 
+  /**
+   * Counts the calls that add, remove or replace features so indexes
+   * built over the collection can tell when they are stale. Changes made
+   * through iterators, sub lists or the features themselves are not counted.
+   *
+   * @return the number of structural modifications made so far.
+   */
+  public int getModificationCount() {
+    return modificationCount;
+  }
+
+
+  /**
+   * Counts the modifications that only added features to the end. While
+   * this moves on in step with {@link #getModificationCount()}, the features
+   * already indexed are unchanged and only the new ones need indexing.
+   *
+   * @return the number of appends made so far.
+   */
+  public int getAppendCount() {
+    return appendCount;
+  }
+
+
   /**
    * @return the date the feature collection report was assembled.
    */
@@ -336,4 +415,94 @@ public class GeoFeatureCollection implements List<GeoFeature> {
   public void setIdentifier(final long identifier) {
     this.identifier = identifier;
   }
+
+
+  /**
+   * A read only view of another collection.
+   *
+   * @author David C Branton
+   */
+  private static final class Unmodifiable extends GeoFeatureCollection {
+    private final GeoFeatureCollection source;
+
+    Unmodifiable(final GeoFeatureCollection source) {
+      super(Collections.unmodifiableList(source));
+      this.source = source;
+    }
+
+    @Override
+    public void ensureCapacity(final int capacity) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getModificationCount() {
+      return source.getModificationCount();
+    }
+
+    @Override
+    public int getAppendCount() {
+      return source.getAppendCount();
+    }
+
+    @Override
+    public LocalDateTime getGenerated() {
+      return source.getGenerated();
+    }
+
+    @Override
+    public void setGenerated(final LocalDateTime generated) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public URL getUrl() {
+      return source.getUrl();
+    }
+
+    @Override
+    public void setUrl(final URL url) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getTitle() {
+      return source.getTitle();
+    }
+
+    @Override
+    public void setTitle(final String title) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getSubTitle() {
+      return source.getSubTitle();
+    }
+
+    @Override
+    public void setSubTitle(final String subTitle) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Period getCacheMaxAge() {
+      return source.getCacheMaxAge();
+    }
+
+    @Override
+    public void setCacheMaxAge(final Period cacheMaxAge) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getIdentifier() {
+      return source.getIdentifier();
+    }
+
+    @Override
+    public void setIdentifier(final long identifier) {
+      throw new UnsupportedOperationException();
+    }
+  }
 }
@@ -0,0 +1,170 @@
+package com.brantapps.epicentre.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * The compact encoding of the {@link GeoFeature} detail fields.
+ * <p>
+ * The map and list only need the position, magnitude, location and time
+ * of a feature. The remaining fields can be held as one encoded blob and
+ * only decoded when one of their getters is first called. The event page
+ * is kept as its text so no {@link URL} is built for features that are
+ * never opened.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class GeoFeatureDetail {
+  private static final int HAS_CDI = 1;
+  private static final int HAS_MMI = 1 << 1;
+  private static final int HAS_TSUNAMI = 1 << 2;
+  private static final int TSUNAMI = 1 << 3;
+  private static final int HAS_REVIEW_STATUS = 1 << 4;
+  private static final int HAS_ALERT_LEVEL = 1 << 5;
+  private static final int HAS_EVENT_PAGE = 1 << 6;
+  private static final PagerAlertLevel[] ALERT_LEVELS = PagerAlertLevel.values();
+  private static final ReviewStatus[] REVIEW_STATUSES = ReviewStatus.values();
+
+  private GeoFeatureDetail() { }
+
+
+  /**
+   * Encodes detail fields. An encoder reuses its buffer
+   * so keep one per parsing thread.
+   *
+   * @author David C Branton
+   */
+  public static final class Encoder {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    /**
+     * @return the encoded detail to hand to {@link GeoFeature#setEncodedDetail(byte[])}.
+     */
+    public byte[] encode(final String eventPageUrl,
+                         final int noOfEyeWitnessReports,
+                         final Double maximumReportedIntensity,
+                         final Double maximumInstrumentedIntensity,
+                         final PagerAlertLevel alertLevel,
+                         final ReviewStatus reviewStatus,
+                         final Boolean generatingTsunami,
+                         final int significance,
+                         final String contributorId,
+                         final String[] contributors,
+                         final int noOfStationsReportingEvent,
+                         final double minDistFromEpicentreToStation,
+                         final String magnitudeType) {
+      bytes.reset();
+      int flags = 0;
+      flags |= maximumReportedIntensity == null ? 0 : HAS_CDI;
+      flags |= maximumInstrumentedIntensity == null ? 0 : HAS_MMI;
+      flags |= generatingTsunami == null ? 0 : HAS_TSUNAMI;
+      flags |= Boolean.TRUE.equals(generatingTsunami) ? TSUNAMI : 0;
+      flags |= reviewStatus == null ? 0 : HAS_REVIEW_STATUS;
+      flags |= alertLevel == null ? 0 : HAS_ALERT_LEVEL;
+      flags |= eventPageUrl == null ? 0 : HAS_EVENT_PAGE;
+      try {
+        out.writeByte(flags);
+        out.writeInt(noOfEyeWitnessReports);
+        out.writeInt(significance);
+        out.writeInt(noOfStationsReportingEvent);
+        out.writeDouble(minDistFromEpicentreToStation);
+        if (maximumReportedIntensity != null) {
+          out.writeDouble(maximumReportedIntensity.doubleValue());
+        }
+        if (maximumInstrumentedIntensity != null) {
+          out.writeDouble(maximumInstrumentedIntensity.doubleValue());
+        }
+        if (reviewStatus != null) {
+          out.writeByte(reviewStatus.ordinal());
+        }
+        if (alertLevel != null) {
+          out.writeByte(alertLevel.ordinal());
+        }
+        if (eventPageUrl != null) {
+          out.writeUTF(eventPageUrl);
+        }
+        writeString(contributorId);
+        writeString(magnitudeType);
+        if (contributors == null) {
+          out.writeShort(-1);
+        } else {
+          out.writeShort(contributors.length);
+          for (String contributor : contributors) {
+            writeString(contributor);
+          }
+        }
+        out.flush();
+      } catch (IOException e) {
+        // Writing to memory cannot fail.
+        throw new IllegalStateException(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    private void writeString(final String value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        out.writeUTF(value);
+      }
+    }
+  }
+
+
+  /**
+   * Assign the encoded detail fields to a feature.
+   *
+   * @param detail  The encoded detail.
+   * @param geoFeature  The feature to populate.
+   */
+  static void decode(final byte[] detail, final GeoFeature geoFeature) {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(detail));
+    try {
+      final int flags = in.readUnsignedByte();
+      geoFeature.setNoOfEyeWitnessReports(in.readInt());
+      geoFeature.setSignificance(in.readInt());
+      geoFeature.setNoOfStationsReportingEvent(in.readInt());
+      geoFeature.setMinDistFromEpicentreToStation(in.readDouble());
+      geoFeature.setMaximumReportedIntensity((flags & HAS_CDI) == 0 ? null : Double.valueOf(in.readDouble()));
+      geoFeature.setMaximumInstrumentedIntensity((flags & HAS_MMI) == 0 ? null : Double.valueOf(in.readDouble()));
+      geoFeature.setGeneratingTsunami((flags & HAS_TSUNAMI) == 0 ? null : Boolean.valueOf((flags & TSUNAMI) != 0));
+      geoFeature.setReviewStatus((flags & HAS_REVIEW_STATUS) == 0 ? null : REVIEW_STATUSES[in.readUnsignedByte()]);
+      geoFeature.setAlertLevel((flags & HAS_ALERT_LEVEL) == 0 ? null : ALERT_LEVELS[in.readUnsignedByte()]);
+      geoFeature.setEventPageUrl((flags & HAS_EVENT_PAGE) == 0 ? null : toUrl(in.readUTF()));
+      geoFeature.setContributorId(readString(in));
+      geoFeature.setMagnitudeType(readString(in));
+      final int contributorCount = in.readShort();
+      if (contributorCount >= 0) {
+        final String[] contributors = new String[contributorCount];
+        for (int i = 0; i < contributorCount; i++) {
+          contributors[i] = readString(in);
+        }
+        geoFeature.setContributors(contributors);
+      } else {
+        geoFeature.setContributors(null);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Corrupt feature detail.", e);
+    }
+  }
+
+
+  private static String readString(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+
+  private static URL toUrl(final String spec) {
+    try {
+      return new URL(spec);
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,664 @@
+package com.brantapps.epicentre.model;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.LocalDateTime;
+import org.joda.time.Period;
+
+/**
+ * A read-only snapshot of a {@link GeoFeatureCollection} packed into
+ * direct {@link ByteBuffer}s outside of the Java heap.
+ * <p>
+ * Every feature is a fixed size record holding its coordinates, magnitude,
+ * depth, times and the other numeric fields. Text fields are offsets into a
+ * second buffer, the string region, where each distinct value is stored once.
+ * This keeps older reports resident without adding to the heap or to the
+ * work of the garbage collector.
+ * </p>
+ * <p>
+ * The features are read through a {@link Cursor}, a single reusable
+ * {@link GeoFeature} moved from record to record. Use {@link #unpack()}
+ * to get an ordinary collection back.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public final class PackedGeoFeatureCollection {
+  private static final String UTF8 = "UTF-8";
+  private static final GeoJsonType[] TYPES = GeoJsonType.values();
+  private static final PagerAlertLevel[] ALERT_LEVELS = PagerAlertLevel.values();
+  private static final ReviewStatus[] REVIEW_STATUSES = ReviewStatus.values();
+  private static final int NO_STRING = -1;
+  private static final byte NONE = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+
+  // Record layout, eight byte aligned.
+  private static final int LATITUDE = 0;
+  private static final int LONGITUDE = 8;
+  private static final int DEPTH = 16;
+  private static final int MAGNITUDE = 24;
+  private static final int TIME = 32;
+  private static final int UPDATED_TIME = 40;
+  private static final int MIN_DIST = 48;
+  private static final int REPORTED_INTENSITY = 56;
+  private static final int INSTRUMENTED_INTENSITY = 64;
+  private static final int TIMEZONE_OFFSET = 72;
+  private static final int SIGNIFICANCE = 76;
+  private static final int EYE_WITNESS_REPORTS = 80;
+  private static final int STATIONS = 84;
+  private static final int TYPE = 88;
+  private static final int ALERT_LEVEL = 89;
+  private static final int REVIEW_STATUS = 90;
+  private static final int TSUNAMI = 91;
+  private static final int LOCATION = 92;
+  private static final int CODE = 96;
+  private static final int MAGNITUDE_TYPE = 100;
+  private static final int CONTRIBUTOR_ID = 104;
+  private static final int CONTRIBUTORS = 108;
+  private static final int EVENT_PAGE_URL = 112;
+  static final int RECORD_SIZE = 120;
+
+  private final ByteBuffer buffer;
+  private final ByteBuffer strings;
+  private final int size;
+  private final long identifier;
+  private final LocalDateTime generated;
+  private final URL url;
+  private final String title;
+  private final String subTitle;
+  private final Period cacheMaxAge;
+
+  private PackedGeoFeatureCollection(final ByteBuffer buffer,
+                                     final ByteBuffer strings,
+                                     final int size,
+                                     final GeoFeatureCollection metadata) {
+    this.buffer = buffer;
+    this.strings = strings;
+    this.size = size;
+    this.identifier = metadata.getIdentifier();
+    this.generated = metadata.getGenerated();
+    this.url = metadata.getUrl();
+    this.title = metadata.getTitle();
+    this.subTitle = metadata.getSubTitle();
+    this.cacheMaxAge = metadata.getCacheMaxAge();
+  }
+
+
+  /**
+   * Pack a collection into direct buffers.
+   *
+   * @param featureCollection The collection to pack.
+   * @return the packed collection.
+   */
+  public static PackedGeoFeatureCollection pack(final GeoFeatureCollection featureCollection) {
+    final StringRegion strings = new StringRegion();
+    final int size = featureCollection.size();
+    final ByteBuffer records = ByteBuffer.allocateDirect(size * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < size; i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      final int record = i * RECORD_SIZE;
+      records.putDouble(record + LATITUDE, geoFeature.getLatitude());
+      records.putDouble(record + LONGITUDE, geoFeature.getLongitude());
+      records.putDouble(record + DEPTH, geoFeature.getDepth());
+      records.putDouble(record + MAGNITUDE, geoFeature.getMagnitude());
+      records.putLong(record + TIME, geoFeature.getTimeInMillis());
+      records.putLong(record + UPDATED_TIME, geoFeature.getUpdatedTimeInMillis());
+      records.putDouble(record + MIN_DIST, geoFeature.getMinDistFromEpicentreToStation());
+      records.putDouble(record + REPORTED_INTENSITY, encode(geoFeature.getMaximumReportedIntensity()));
+      records.putDouble(record + INSTRUMENTED_INTENSITY, encode(geoFeature.getMaximumInstrumentedIntensity()));
+      records.putInt(record + TIMEZONE_OFFSET,
+                     geoFeature.hasTimezoneOffset() ? geoFeature.getTimezoneOffset() : GeoFeature.NO_TIMEZONE_OFFSET);
+      records.putInt(record + SIGNIFICANCE, geoFeature.getSignificance());
+      records.putInt(record + EYE_WITNESS_REPORTS, geoFeature.getNoOfEyeWitnessReports());
+      records.putInt(record + STATIONS, geoFeature.getNoOfStationsReportingEvent());
+      records.put(record + TYPE, encode(geoFeature.getType()));
+      records.put(record + ALERT_LEVEL, encode(geoFeature.getAlertLevel()));
+      records.put(record + REVIEW_STATUS, encode(geoFeature.getReviewStatus()));
+      records.put(record + TSUNAMI, encode(geoFeature.isGeneratingTsunami()));
+      records.putInt(record + LOCATION, strings.add(geoFeature.getLocation()));
+      records.putInt(record + CODE, strings.add(geoFeature.getCode()));
+      records.putInt(record + MAGNITUDE_TYPE, strings.add(geoFeature.getMagnitudeType()));
+      records.putInt(record + CONTRIBUTOR_ID, strings.add(geoFeature.getContributorId()));
+      records.putInt(record + CONTRIBUTORS, strings.add(join(geoFeature.getContributors())));
+      final URL eventPageUrl = geoFeature.getEventPageUrl();
+      records.putInt(record + EVENT_PAGE_URL, strings.add(eventPageUrl == null ? null : eventPageUrl.toExternalForm()));
+    }
+    final ByteBuffer packedStrings = ByteBuffer.allocateDirect(strings.length).order(ByteOrder.nativeOrder());
+    packedStrings.put(strings.bytes, 0, strings.length);
+    return new PackedGeoFeatureCollection(records, packedStrings, size, featureCollection);
+  }
+
+
+  /**
+   * @return a {@link GeoFeatureCollection} holding a copy of every feature.
+   */
+  public GeoFeatureCollection unpack() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.setIdentifier(identifier);
+    featureCollection.setGenerated(generated);
+    featureCollection.setUrl(url);
+    featureCollection.setTitle(title);
+    featureCollection.setSubTitle(subTitle);
+    featureCollection.setCacheMaxAge(cacheMaxAge);
+    featureCollection.ensureCapacity(size);
+    final Cursor cursor = cursor();
+    while (cursor.next()) {
+      featureCollection.add(GeoFeature.copyOf(cursor));
+    }
+    return featureCollection;
+  }
+
+
+  /**
+   * @return a cursor positioned before the first feature.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+
+  /**
+   * @return the number of features.
+   */
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * @return the number of bytes held off the heap.
+   */
+  public int getPackedSize() {
+    return buffer.capacity() + strings.capacity();
+  }
+
+
+  /**
+   * @param index The feature.
+   * @return the magnitude of the feature.
+   */
+  public double getMagnitude(final int index) {
+    return buffer.getDouble(record(index) + MAGNITUDE);
+  }
+
+
+  /**
+   * @param index The feature.
+   * @return the latitude of the feature.
+   */
+  public double getLatitude(final int index) {
+    return buffer.getDouble(record(index) + LATITUDE);
+  }
+
+
+  /**
+   * @param index The feature.
+   * @return the longitude of the feature.
+   */
+  public double getLongitude(final int index) {
+    return buffer.getDouble(record(index) + LONGITUDE);
+  }
+
+
+  /**
+   * @param index The feature.
+   * @return the time the quake occurred in milliseconds since the epoch.
+   */
+  public long getTimeInMillis(final int index) {
+    return buffer.getLong(record(index) + TIME);
+  }
+
+
+  /**
+   * @return the database identifier of the packed collection.
+   */
+  public long getIdentifier() {
+    return identifier;
+  }
+
+
+  /**
+   * @return the date the feature collection report was assembled.
+   */
+  public LocalDateTime getGenerated() {
+    return generated;
+  }
+
+
+  /**
+   * @return the title of the feature collection report.
+   */
+  public String getTitle() {
+    return title;
+  }
+
+
+  private int record(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+    }
+    return index * RECORD_SIZE;
+  }
+
+
+  private String string(final int offset) {
+    if (offset == NO_STRING) {
+      return null;
+    }
+    final byte[] bytes = new byte[strings.getInt(offset)];
+    final ByteBuffer region = strings.duplicate();
+    region.position(offset + 4);
+    region.get(bytes);
+    try {
+      return new String(bytes, UTF8);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  private static String join(final String[] values) {
+    if (values == null) {
+      return null;
+    }
+    final StringBuilder joined = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        joined.append(',');
+      }
+      joined.append(values[i]);
+    }
+    return joined.toString();
+  }
+
+
+  private static String[] split(final String joined) {
+    if (joined == null) {
+      return null;
+    }
+    return joined.length() == 0 ? new String[0] : joined.split(",", -1);
+  }
+
+
+  private static byte encode(final Enum<?> value) {
+    return value == null ? NONE : (byte) (value.ordinal() + 1);
+  }
+
+
+  private static <T> T decode(final T[] values, final byte code) {
+    return code == NONE ? null : values[code - 1];
+  }
+
+
+  private static double encode(final Double value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+
+  private static Double decode(final double value) {
+    return Double.isNaN(value) ? null : Double.valueOf(value);
+  }
+
+
+  private static byte encode(final Boolean value) {
+    return value == null ? NONE : value.booleanValue() ? TRUE : FALSE;
+  }
+
+
+  private static Boolean decode(final byte value) {
+    return value == NONE ? null : Boolean.valueOf(value == TRUE);
+  }
+
+
+  /**
+   * The distinct strings of a collection being packed, each
+   * stored once as a length prefixed run of UTF-8.
+   *
+   * @author David C Branton
+   */
+  private static final class StringRegion {
+    private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+    private byte[] bytes = new byte[4096];
+    private int length;
+
+    int add(final String value) {
+      if (value == null) {
+        return NO_STRING;
+      }
+      final Integer existing = offsets.get(value);
+      if (existing != null) {
+        return existing.intValue();
+      }
+      final byte[] encoded;
+      try {
+        encoded = value.getBytes(UTF8);
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+      if (length + 4 + encoded.length > bytes.length) {
+        final byte[] grown = new byte[Math.max(bytes.length * 2, length + 4 + encoded.length)];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+      }
+      final int offset = length;
+      ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).putInt(offset, encoded.length);
+      System.arraycopy(encoded, 0, bytes, offset + 4, encoded.length);
+      length += 4 + encoded.length;
+      offsets.put(value, Integer.valueOf(offset));
+      return offset;
+    }
+  }
+
+
+  /**
+   * A reusable, read-only {@link GeoFeature} over one record of the
+   * packed collection. Text fields are decoded each time they are read,
+   * and the setters throw {@link UnsupportedOperationException}.
+   *
+   * @author David C Branton
+   */
+  public final class Cursor extends GeoFeature {
+    private int record = -RECORD_SIZE;
+
+    private Cursor() {
+      super(null, 0d, 0d);
+    }
+
+    /**
+     * Move to the next feature.
+     *
+     * @return whether there was a next feature.
+     */
+    public boolean next() {
+      if (record + RECORD_SIZE >= size * RECORD_SIZE) {
+        return false;
+      }
+      record += RECORD_SIZE;
+      return true;
+    }
+
+    /**
+     * @param index Move to the feature at this index.
+     * @return this cursor.
+     */
+    public Cursor moveTo(final int index) {
+      record = record(index);
+      return this;
+    }
+
+    /**
+     * @return the index of the current feature.
+     */
+    public int getIndex() {
+      return record / RECORD_SIZE;
+    }
+
+    @Override
+    public GeoJsonType getType() {
+      return decode(TYPES, buffer.get(record + TYPE));
+    }
+
+    @Override
+    public double getLatitude() {
+      return buffer.getDouble(record + LATITUDE);
+    }
+
+    @Override
+    public double getLongitude() {
+      return buffer.getDouble(record + LONGITUDE);
+    }
+
+    @Override
+    public double getDepth() {
+      return buffer.getDouble(record + DEPTH);
+    }
+
+    @Override
+    public double getMagnitude() {
+      return buffer.getDouble(record + MAGNITUDE);
+    }
+
+    @Override
+    public String getLocation() {
+      return string(buffer.getInt(record + LOCATION));
+    }
+
+    @Override
+    public LocalDateTime getTime() {
+      final long time = getTimeInMillis();
+      return time == NO_TIME ? null : new LocalDateTime(time, timeZone(buffer.getInt(record + TIMEZONE_OFFSET)));
+    }
+
+    @Override
+    public long getTimeInMillis() {
+      return buffer.getLong(record + TIME);
+    }
+
+    @Override
+    public LocalDateTime getUpdatedTime() {
+      final long updatedTime = getUpdatedTimeInMillis();
+      return updatedTime == NO_TIME ? null : new LocalDateTime(updatedTime, timeZone(buffer.getInt(record + TIMEZONE_OFFSET)));
+    }
+
+    @Override
+    public long getUpdatedTimeInMillis() {
+      return buffer.getLong(record + UPDATED_TIME);
+    }
+
+    @Override
+    public int getTimezoneOffset() {
+      return hasTimezoneOffset() ? buffer.getInt(record + TIMEZONE_OFFSET) : 0;
+    }
+
+    @Override
+    boolean hasTimezoneOffset() {
+      return buffer.getInt(record + TIMEZONE_OFFSET) != NO_TIMEZONE_OFFSET;
+    }
+
+    @Override
+    public boolean isDetailEncoded() {
+      return false;
+    }
+
+    @Override
+    public URL getEventPageUrl() {
+      final String spec = string(buffer.getInt(record + EVENT_PAGE_URL));
+      try {
+        return spec == null ? null : new URL(spec);
+      } catch (MalformedURLException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public int getNoOfEyeWitnessReports() {
+      return buffer.getInt(record + EYE_WITNESS_REPORTS);
+    }
+
+    @Override
+    public Double getMaximumReportedIntensity() {
+      return decode(buffer.getDouble(record + REPORTED_INTENSITY));
+    }
+
+    @Override
+    public Double getMaximumInstrumentedIntensity() {
+      return decode(buffer.getDouble(record + INSTRUMENTED_INTENSITY));
+    }
+
+    @Override
+    public PagerAlertLevel getAlertLevel() {
+      return decode(ALERT_LEVELS, buffer.get(record + ALERT_LEVEL));
+    }
+
+    @Override
+    public ReviewStatus getReviewStatus() {
+      return decode(REVIEW_STATUSES, buffer.get(record + REVIEW_STATUS));
+    }
+
+    @Override
+    public Boolean isGeneratingTsunami() {
+      return decode(buffer.get(record + TSUNAMI));
+    }
+
+    @Override
+    public int getSignificance() {
+      return buffer.getInt(record + SIGNIFICANCE);
+    }
+
+    @Override
+    public String getContributorId() {
+      return string(buffer.getInt(record + CONTRIBUTOR_ID));
+    }
+
+    @Override
+    public String getCode() {
+      return string(buffer.getInt(record + CODE));
+    }
+
+    @Override
+    public String[] getContributors() {
+      return split(string(buffer.getInt(record + CONTRIBUTORS)));
+    }
+
+    @Override
+    public int getNoOfStationsReportingEvent() {
+      return buffer.getInt(record + STATIONS);
+    }
+
+    @Override
+    public double getMinDistFromEpicentreToStation() {
+      return buffer.getDouble(record + MIN_DIST);
+    }
+
+    @Override
+    public String getMagnitudeType() {
+      return string(buffer.getInt(record + MAGNITUDE_TYPE));
+    }
+
+    @Override
+    public void setDepth(final double depth) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setMagnitude(final double magnitude) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setLocation(final String location) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setTime(final LocalDateTime time) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setTime(final long time) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setUpdatedTime(final LocalDateTime updatedTime) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setUpdatedTime(final long updatedTime) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setTimezoneOffset(final int timezoneOffset) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setEncodedDetail(final byte[] encodedDetail) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setEventPageUrl(final URL eventPageUrl) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setNoOfEyeWitnessReports(final int noOfEyeWitnessReports) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setMaximumReportedIntensity(final Double maximumReportedIntensity) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setMaximumInstrumentedIntensity(final Double maximumInstrumentedIntensity) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setAlertLevel(final PagerAlertLevel alertLevel) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setReviewStatus(final ReviewStatus reviewStatus) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setGeneratingTsunami(final Boolean generatingTsunami) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setSignificance(final int significance) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setContributorId(final String contributorId) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setCode(final String code) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setContributors(final String[] contributors) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setNoOfStationsReportingEvent(final int noOfStationsReportingEvent) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setMinDistFromEpicentreToStation(final double minDistFromEpicentreToStation) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setMagnitudeType(final String magnitudeType) {
+      throw readOnly();
+    }
+
+    private UnsupportedOperationException readOnly() {
+      return new UnsupportedOperationException("Packed feature collections are read-only.");
+    }
+  }
+}
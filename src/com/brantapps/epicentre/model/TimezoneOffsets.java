@@ -0,0 +1,34 @@
+package com.brantapps.epicentre.model;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * A shared cache of the fixed offset timezones used by the feed.
+ *
+ * @author David C Branton
+ */
+final class TimezoneOffsets {
+  private static final int MIN_OFFSET = -12 * 60;
+  private static final int MAX_OFFSET = 14 * 60;
+  private static final DateTimeZone[] ZONES = new DateTimeZone[MAX_OFFSET - MIN_OFFSET + 1];
+
+  private TimezoneOffsets() { }
+
+
+  /**
+   * @param offset  The offset from UTC in minutes.
+   * @return the fixed offset timezone.
+   */
+  static DateTimeZone forMinutes(final int offset) {
+    if (offset < MIN_OFFSET || offset > MAX_OFFSET) {
+      return DateTimeZone.forOffsetMillis(offset * 60000);
+    }
+    // Zones are immutable so a racing thread at worst builds a duplicate.
+    DateTimeZone zone = ZONES[offset - MIN_OFFSET];
+    if (zone == null) {
+      zone = DateTimeZone.forOffsetMillis(offset * 60000);
+      ZONES[offset - MIN_OFFSET] = zone;
+    }
+    return zone;
+  }
+}
@@ -0,0 +1,106 @@
+package com.brantapps.epicentre.service;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import android.database.Cursor;
+
+/**
+ * Query results read from an open cursor one row at a time.
+ * <p>
+ * Nothing is built until it is asked for, so memory stays bounded by
+ * the cursor window whatever the size of the result. SQLite still steps
+ * through every row to count them when the first window is filled, so
+ * the first row costs a full query and {@link #size()} is free after it.
+ * The cursor is closed once iteration runs off the end; callers stopping
+ * early must {@link #close()} the results themselves, ideally in a
+ * finally block.
+ * </p>
+ * <p>
+ * Each call to {@link #iterator()} rewinds the same cursor, so only
+ * one iteration may be in progress at a time.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class CursorResults<T> implements Iterable<T>, Closeable {
+  private final Cursor cursor;
+  private final RowMapper<T> rowMapper;
+
+  /**
+   * @param cursor  The open cursor to read.
+   * @param rowMapper Builds a model from each row.
+   */
+  public CursorResults(final Cursor cursor, final RowMapper<T> rowMapper) {
+    this.cursor = cursor;
+    this.rowMapper = rowMapper;
+  }
+
+
+  /**
+   * @return the number of rows in the results.
+   */
+  public int size() {
+    return cursor.getCount();
+  }
+
+
+  /**
+   * @see java.lang.Iterable#iterator()
+   */
+  @Override
+  public Iterator<T> iterator() {
+    if (cursor.isClosed()) {
+      throw new IllegalStateException("Results have been closed.");
+    }
+    cursor.moveToPosition(-1);
+    return new Iterator<T>() {
+      // Whether the cursor has moved onto the row the next call to next() returns.
+      private boolean movedOn;
+      private boolean hasRow;
+
+      @Override
+      public boolean hasNext() {
+        if (cursor.isClosed()) {
+          return false;
+        }
+        if (!movedOn) {
+          hasRow = cursor.moveToNext();
+          movedOn = true;
+          if (!hasRow) {
+            close();
+          }
+        }
+        return hasRow;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        movedOn = false;
+        return rowMapper.map(cursor);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+
+  /**
+   * Close the underlying cursor. Closing more than once is harmless.
+   *
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() {
+    if (!cursor.isClosed()) {
+      cursor.close();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.brantapps.epicentre.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+
+/**
+ * Runs every write to the database on one dedicated thread.
+ * <p>
+ * SQLite allows a single writer at a time. Queuing writes on their own
+ * thread means a long synchronisation never leaves another writer
+ * spinning on the database lock, and with write-ahead logging enabled
+ * readers on any other thread carry on against the last committed
+ * state while a write is in progress.
+ * </p>
+ * <p>
+ * Writes made from the writer thread itself, or from a thread already
+ * holding a transaction, run in place rather than queuing behind
+ * themselves.
+ * </p>
+ * <p>
+ * The writer outlives the injection of its first user, which may come
+ * before the database has been created, so the database is looked up
+ * on each write rather than held.
+ * </p>
+ *
+ * @author David C Branton
+ */
+@Singleton
+public class DatabaseWriter {
+  private final Provider<SQLiteDatabase> database;
+  private final ExecutorService executor;
+  private volatile Thread writerThread;
+
+  /**
+   * @param database  The database to write to, once it is open.
+   */
+  public DatabaseWriter(final SQLiteDatabase database) {
+    this(new Provider<SQLiteDatabase>() {
+      @Override
+      public SQLiteDatabase get() {
+        return database;
+      }
+    });
+  }
+
+
+  /**
+   * @param database  Provides the database to write to, or null until it is open.
+   */
+  @Inject
+  public DatabaseWriter(final Provider<SQLiteDatabase> database) {
+    this.database = database;
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        writerThread = new Thread(runnable, "DatabaseWriter");
+        writerThread.setDaemon(true);
+        return writerThread;
+      }
+    });
+  }
+
+
+  /**
+   * Turn on write-ahead logging where the platform supports it so
+   * readers are not blocked by a write in progress.
+   *
+   * @param database  The database to configure.
+   * @return whether write-ahead logging is enabled.
+   */
+  public static boolean enableWriteAheadLogging(final SQLiteDatabase database) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+      return database.enableWriteAheadLogging();
+    }
+    return false;
+  }
+
+
+  /**
+   * Run a write on the writer thread and wait for it to finish.
+   *
+   * @param write The write to run.
+   * @return the result of the write.
+   * @throws IllegalStateException  When the database is not open yet.
+   */
+  public <T> T write(final Callable<T> write) {
+    final SQLiteDatabase openDatabase = database.get();
+    if (openDatabase == null) {
+      throw new IllegalStateException("The database is not open yet.");
+    }
+    if (Thread.currentThread() == writerThread || openDatabase.inTransaction()) {
+      return call(write);
+    }
+    try {
+      return submit(write).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for a database write.", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Database write failed.", cause);
+    }
+  }
+
+
+  /**
+   * Queue a write on the writer thread without waiting for it.
+   *
+   * @param write The write to run.
+   * @return the pending result of the write.
+   */
+  public <T> Future<T> submit(final Callable<T> write) {
+    return executor.submit(write);
+  }
+
+
+  private static <T> T call(final Callable<T> write) {
+    try {
+      return write.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Database write failed.", e);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.brantapps.epicentre.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * The most recently loaded collections, with their features as read
+ * through one {@link GeoFeatureProjection}, kept in memory so loads on
+ * rotation or resume do not read the database.
+ * <p>
+ * The cache holds a fixed number of collections and drops the least
+ * recently used first. Every write to the collections invalidates it.
+ * A load that read the database before an invalidation is not cached
+ * after it, so a sync racing a load never leaves a stale copy behind.
+ * </p>
+ * <p>
+ * Cached collections are shared between callers, so they are held as
+ * {@link GeoFeatureCollection#unmodifiable(GeoFeatureCollection) unmodifiable}
+ * views. Their features are shared too, so a feature's detail is loaded
+ * into a copy by {@link GeoFeatureService#loadDetail(com.brantapps.epicentre.model.GeoFeature, long)}.
+ * </p>
+ *
+ * @author David C Branton
+ */
+@Singleton
+public class GeoFeatureCollectionCache {
+  private static final int DEFAULT_CAPACITY = 2;
+  private final Map<String, GeoFeatureCollection> collections;
+  private long generation;
+  private long hits;
+  private long misses;
+
+  /**
+   * Cache the two most recently used collections.
+   */
+  @Inject
+  public GeoFeatureCollectionCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+
+  /**
+   * @param capacity  The most collections to hold.
+   */
+  public GeoFeatureCollectionCache(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(String.format("Invalid capacity [%d].", capacity));
+    }
+    this.collections = new LinkedHashMap<String, GeoFeatureCollection>(capacity * 2, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, GeoFeatureCollection> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+
+  /**
+   * @param collectionId  The collection to find.
+   * @param projection  The feature columns wanted.
+   * @return the cached collection, or null when it must be loaded.
+   */
+  public synchronized GeoFeatureCollection get(final long collectionId, final GeoFeatureProjection projection) {
+    final GeoFeatureCollection collection = collections.get(key(collectionId, projection));
+    if (collection == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return collection;
+  }
+
+
+  /**
+   * @return the generation to pass to {@link #put(long, GeoFeatureProjection, GeoFeatureCollection, long)}
+   *  for a collection about to be read from the database.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+
+  /**
+   * Cache a loaded collection, unless the collections have been
+   * written since it was read.
+   *
+   * @param collectionId  The collection loaded.
+   * @param projection  The feature columns loaded.
+   * @param collection  The collection and its features.
+   * @param readAt  The generation taken before the collection was read.
+   */
+  public synchronized void put(final long collectionId,
+                               final GeoFeatureProjection projection,
+                               final GeoFeatureCollection collection,
+                               final long readAt) {
+    if (readAt == generation) {
+      collections.put(key(collectionId, projection), collection);
+    }
+  }
+
+
+  /**
+   * Drop every cached collection.
+   */
+  public synchronized void invalidate() {
+    generation++;
+    collections.clear();
+  }
+
+
+  /**
+   * @return the number of loads answered from the cache.
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+
+  /**
+   * @return the number of loads that went to the database.
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+
+  private static String key(final long collectionId, final GeoFeatureProjection projection) {
+    return collectionId + "/" + projection.name();
+  }
+}
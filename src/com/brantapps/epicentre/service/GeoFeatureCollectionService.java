@@ -5,6 +5,8 @@ import java.net.URL;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 
@@ -12,6 +14,7 @@ import org.joda.time.LocalDateTime;
 import org.joda.time.Period;
 
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
@@ -26,18 +29,28 @@ import com.brantapps.epicentre.model.GeoFeatureCollection;
  */
 public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureCollection> {
   private static final String COLLECTION_TABLE = "GeoFeatureCollection";
+  private static final int DEFAULT_CHUNK_SIZE = 5000;
   private final SQLiteDatabase database;
+  private final DatabaseWriter databaseWriter;
   private final GeoFeatureService geoFeatureService;
+  private final GeoFeatureCollectionCache collectionCache;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
 
 
   @Inject GeoFeatureCollectionService(final SQLiteDatabase database,
-                                      final GeoFeatureService geoFeatureService) {
+                                      final DatabaseWriter databaseWriter,
+                                      final GeoFeatureService geoFeatureService,
+                                      final GeoFeatureCollectionCache collectionCache) {
     this.database = database;
+    this.databaseWriter = databaseWriter;
     this.geoFeatureService = geoFeatureService;
+    this.collectionCache = collectionCache;
   }
 
 
   /**
+   * Loads the collection and every column of its features.
+   *
    * @throws ParseException When a date cannot be parsed.
    * @throws MalformedURLException  When a URL is constructed incorrectly.
    *
@@ -45,7 +58,26 @@ public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureC
    */
   @Override
   public GeoFeatureCollection load(final long index, final Double... preferences) {
-    GeoFeatureCollection collection = null;
+    return load(index, GeoFeatureProjection.FULL);
+  }
+
+
+  /**
+   * Loads the collection and its features, from the
+   * {@link GeoFeatureCollectionCache} when it holds them. On a miss the
+   * features are streamed from the database reading only the projected
+   * columns, so the map caches no more than its markers show.
+   *
+   * @param index The collection to load.
+   * @param projection  The feature columns to read.
+   * @return the collection, or null when it cannot be built.
+   */
+  public GeoFeatureCollection load(final long index, final GeoFeatureProjection projection) {
+    GeoFeatureCollection collection = collectionCache.get(index, projection);
+    if (collection != null) {
+      return collection;
+    }
+    final long readAt = collectionCache.getGeneration();
 
     // Collection.
     final SQLiteCursor collectionCursor =
@@ -59,7 +91,18 @@ public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureC
           "id desc");
     try {
       collection = buildGeoCollection(collectionCursor);
-      collection.addAll(geoFeatureService.list(index));
+      final CursorResults<GeoFeature> features = geoFeatureService.iterate(index, projection);
+      try {
+        collection.ensureCapacity(features.size());
+        for (GeoFeature feature : features) {
+          collection.add(feature);
+        }
+      } finally {
+        features.close();
+      }
+      // Shared through the cache, so handed out read only.
+      collection = GeoFeatureCollection.unmodifiable(collection);
+      collectionCache.put(index, projection, collection, readAt);
     } catch (MalformedURLException e) {
       Log.e(this.getClass().getSimpleName(), "Incorrect URL constructed for report");
     }
@@ -88,15 +131,131 @@ public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureC
 
 
   /**
+   * Saves the collection and its features in a transaction committed every
+   * {@link #setChunkSize(int) chunk} of features.
+   * <p>
+   * The chunks are not rolled back: should a later chunk fail, the
+   * collection row and the features of the chunks before it stay saved.
+   * Inside a transaction the caller already holds, nothing commits in
+   * chunks and the save commits, or rolls back, with the caller's.
+   * </p>
+   *
    * @see com.brantapps.epicentre.service.ServiceInterface#save(java.lang.Object, java.lang.Long[])
    */
   @Override
   public long save(final GeoFeatureCollection persistedModel, final Long... longs) {
-    final long featureCollectionId = database.insert(COLLECTION_TABLE, null, buildColumnMappings(persistedModel));
-    for (GeoFeature feature : persistedModel) {
-      geoFeatureService.save(feature, featureCollectionId);
+    return databaseWriter.write(new Callable<Long>() {
+      @Override
+      public Long call() {
+        try {
+          return saveOnWriter(persistedModel);
+        } finally {
+          collectionCache.invalidate();
+        }
+      }
+    });
+  }
+
+
+  private long saveOnWriter(final GeoFeatureCollection persistedModel) {
+    // Only the outermost transaction may be committed in chunks.
+    final int chunks = database.inTransaction() ? GeoFeatureService.NO_CHUNKS : chunkSize;
+    database.beginTransaction();
+    try {
+      final long featureCollectionId = database.insert(COLLECTION_TABLE, null, buildColumnMappings(persistedModel));
+      geoFeatureService.saveAll(persistedModel, featureCollectionId, chunks);
+      database.setTransactionSuccessful();
+      return featureCollectionId;
+    } finally {
+      database.endTransaction();
+    }
+  }
+
+
+  /**
+   * @param chunkSize The number of features saved between commits on a large import.
+   *  A synchronisation, or a save inside a caller's transaction, always commits as one.
+   */
+  public void setChunkSize(final int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException(String.format("Invalid chunk size [%d].", chunkSize));
+    }
+    this.chunkSize = chunkSize;
+  }
+
+
+  /**
+   * Bring the stored copy of a report up to date in one transaction.
+   * <p>
+   * Features are matched on their code: new ones are inserted, ones
+   * whose updated time has changed are rewritten and ones the report
+   * no longer lists, having fallen out of its window, are deleted.
+   * Unchanged features are not written at all. The report is matched
+   * to its stored collection on URL and is inserted when there is none.
+   * </p>
+   *
+   * @param report  The freshly downloaded report.
+   * @return what changed.
+   */
+  public SynchronisationResult synchronise(final GeoFeatureCollection report) {
+    return databaseWriter.write(new Callable<SynchronisationResult>() {
+      @Override
+      public SynchronisationResult call() {
+        try {
+          return synchroniseOnWriter(report);
+        } finally {
+          collectionCache.invalidate();
+        }
+      }
+    });
+  }
+
+
+  private SynchronisationResult synchroniseOnWriter(final GeoFeatureCollection report) {
+    int updated = 0;
+    int unchanged = 0;
+    database.beginTransaction();
+    try {
+      final long collectionId = findCollectionId(report);
+      if (collectionId == -1) {
+        final long featureCollectionId = database.insert(COLLECTION_TABLE, null, buildColumnMappings(report));
+        final int inserted = geoFeatureService.saveAll(report, featureCollectionId, GeoFeatureService.NO_CHUNKS);
+        database.setTransactionSuccessful();
+        return new SynchronisationResult(featureCollectionId, inserted, 0, 0, 0);
+      }
+      database.update(COLLECTION_TABLE,
+                      buildColumnMappings(report),
+                      "id = ?",
+                      new String[]{Long.toString(collectionId)});
+
+      // What is left in the map afterwards has dropped out of the report.
+      final Map<String, Long> storedUpdatedTimes = geoFeatureService.listUpdatedTimes(collectionId);
+      final List<GeoFeature> newFeatures = new ArrayList<GeoFeature>();
+      for (GeoFeature feature : report) {
+        final String code = feature.getCode();
+        if (!storedUpdatedTimes.containsKey(code)) {
+          newFeatures.add(feature);
+        } else {
+          final Long storedUpdatedTime = storedUpdatedTimes.remove(code);
+          final boolean changed = storedUpdatedTime == null
+              ? feature.hasUpdatedTime()
+              : !feature.hasUpdatedTime() || storedUpdatedTime.longValue() != feature.getUpdatedTimeInMillis();
+          if (changed) {
+            geoFeatureService.update(feature, collectionId);
+            updated++;
+          } else {
+            unchanged++;
+          }
+        }
+      }
+      // Not chunked: the whole synchronisation commits, or rolls back, as one.
+      final int inserted = geoFeatureService.saveAll(newFeatures, collectionId, GeoFeatureService.NO_CHUNKS);
+      final int expired = geoFeatureService.delete(storedUpdatedTimes.keySet(), collectionId);
+      database.setTransactionSuccessful();
+      return new SynchronisationResult(collectionId, inserted, updated, unchanged, expired);
+    } finally {
+      database.endTransaction();
     }
-    return featureCollectionId;
   }
 
 
@@ -105,9 +264,18 @@ public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureC
    */
   @Override
   public void delete(final Long... longs) {
-    database.delete(COLLECTION_TABLE,
-                    "identifier = ?",
-                    new String[]{longs[0].toString()});
+    databaseWriter.write(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        try {
+          return database.delete(COLLECTION_TABLE,
+                                 "identifier = ?",
+                                 new String[]{longs[0].toString()});
+        } finally {
+          collectionCache.invalidate();
+        }
+      }
+    });
   }
 
 
@@ -115,20 +283,56 @@ public class GeoFeatureCollectionService implements ServiceInterface<GeoFeatureC
    * Delete all previous data.
    */
   public void deleteAll(final Long... longs) {
-    database.delete(COLLECTION_TABLE, null, null);
-    geoFeatureService.deleteAll();
+    databaseWriter.write(new Callable<Void>() {
+      @Override
+      public Void call() {
+        database.beginTransaction();
+        try {
+          database.delete(COLLECTION_TABLE, null, null);
+          geoFeatureService.deleteAll();
+          database.setTransactionSuccessful();
+        } finally {
+          database.endTransaction();
+          collectionCache.invalidate();
+        }
+        return null;
+      }
+    });
+  }
+
+
+  private long findCollectionId(final GeoFeatureCollection report) {
+    final Cursor cursor =
+        database.query(
+          COLLECTION_TABLE,
+          new String[]{"id"},
+          "url = ?",
+          new String[]{report.getUrl().toExternalForm()},
+          null,
+          null,
+          "generated DESC",
+          "1");
+    try {
+      return cursor.moveToNext() ? cursor.getLong(0) : -1;
+    } finally {
+      cursor.close();
+    }
   }
 
 
   private List<GeoFeatureCollection> buildGeoCollections(final SQLiteCursor cursor) {
     final List<GeoFeatureCollection> geoFeatureCollections = new ArrayList<GeoFeatureCollection>();
 
-    while (cursor.moveToNext()) {
-      try {
-        geoFeatureCollections.add(buildGeoCollection(cursor));
-      } catch (MalformedURLException e) {
-        Log.e(this.getClass().getSimpleName(), "Incorrect URL constructed for report");
+    try {
+      while (cursor.moveToNext()) {
+        try {
+          geoFeatureCollections.add(buildGeoCollection(cursor));
+        } catch (MalformedURLException e) {
+          Log.e(this.getClass().getSimpleName(), "Incorrect URL constructed for report");
+        }
       }
+    } finally {
+      cursor.close();
     }
 
     return geoFeatureCollections;
@@ -0,0 +1,49 @@
+package com.brantapps.epicentre.service;
+
+/**
+ * The columns of the GeoFeature table a query reads.
+ *
+ * @author David C Branton
+ */
+public enum GeoFeatureProjection {
+  /**
+   * Enough to place and label a marker on the map.
+   */
+  MARKER("code", "time", "location", "latitude", "longitude", "magnitude"),
+
+  /**
+   * Every stored column.
+   */
+  FULL("code", "geoJsonType", "time", "location", "latitude", "longitude", "magnitude",
+       "magnitudeType", "alertLevel", "generatingTsunami", "updatedTime");
+
+  private final String[] columns;
+
+  GeoFeatureProjection(final String... columns) {
+    this.columns = columns;
+  }
+
+
+  /**
+   * @return the column names, for use as a query projection.
+   */
+  public String[] getColumns() {
+    return columns.clone();
+  }
+
+
+  /**
+   * @param alias The alias of the GeoFeature table in the query.
+   * @return the columns as a comma separated select list.
+   */
+  String toSelectList(final String alias) {
+    final StringBuilder selectList = new StringBuilder();
+    for (String column : columns) {
+      if (selectList.length() > 0) {
+        selectList.append(", ");
+      }
+      selectList.append(alias).append('.').append(column);
+    }
+    return selectList.toString();
+  }
+}
@@ -0,0 +1,232 @@
+package com.brantapps.epicentre.service;
+
+import com.brantapps.epicentre.index.BoundingBox;
+import com.brantapps.epicentre.model.PagerAlertLevel;
+
+/**
+ * The criteria for a search of the features of a collection.
+ * By default every feature is matched, newest first, with every
+ * column read.
+ * <p>
+ * The {@link GeoFeatureService} compiles a query to SQL once per shape,
+ * i.e. per combination of criteria set, sort and projection, and binds
+ * the values of the criteria as parameters, so queries differing only in
+ * their values share one prepared statement.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class GeoFeatureQuery {
+  /**
+   * The orders a query can return features in.
+   *
+   * @author David C Branton
+   */
+  public enum Sort {
+    /**
+     * The most recent first.
+     */
+    NEWEST("time DESC, code DESC"),
+
+    /**
+     * The oldest first.
+     */
+    OLDEST("time ASC, code ASC"),
+
+    /**
+     * The largest magnitude first, most recent first within a magnitude.
+     */
+    STRONGEST("magnitude DESC, time DESC");
+
+    private final String orderBy;
+
+    Sort(final String orderBy) {
+      this.orderBy = orderBy;
+    }
+
+
+    /**
+     * @return the ORDER BY terms.
+     */
+    String getOrderBy() {
+      return orderBy;
+    }
+  }
+
+  private final long collectionId;
+  private Double minimumMagnitude;
+  private Double maximumMagnitude;
+  private Long from;
+  private Long to;
+  private BoundingBox box;
+  private PagerAlertLevel alertLevel;
+  private Boolean generatingTsunami;
+  private Integer limit;
+  private Sort sort = Sort.NEWEST;
+  private GeoFeatureProjection projection = GeoFeatureProjection.FULL;
+
+  /**
+   * @param collectionId  The collection to search.
+   */
+  public GeoFeatureQuery(final long collectionId) {
+    this.collectionId = collectionId;
+  }
+
+
+  /**
+   * @param minimumMagnitude  The smallest magnitude wanted, inclusive, or null for any.
+   * @param maximumMagnitude  The largest magnitude wanted, inclusive, or null for any.
+   * @return this query.
+   */
+  public GeoFeatureQuery setMagnitudeRange(final Double minimumMagnitude, final Double maximumMagnitude) {
+    this.minimumMagnitude = minimumMagnitude;
+    this.maximumMagnitude = maximumMagnitude;
+    return this;
+  }
+
+
+  /**
+   * @param from  The earliest event time wanted, inclusive, in milliseconds since the epoch, or null for any.
+   * @param to  The latest event time wanted, inclusive, in milliseconds since the epoch, or null for any.
+   * @return this query.
+   */
+  public GeoFeatureQuery setTimeWindow(final Long from, final Long to) {
+    this.from = from;
+    this.to = to;
+    return this;
+  }
+
+
+  /**
+   * @param box The area to search, or null for anywhere.
+   * @return this query.
+   */
+  public GeoFeatureQuery setBoundingBox(final BoundingBox box) {
+    this.box = box;
+    return this;
+  }
+
+
+  /**
+   * @param alertLevel  The PAGER alert level wanted, or null for any.
+   * @return this query.
+   */
+  public GeoFeatureQuery setAlertLevel(final PagerAlertLevel alertLevel) {
+    this.alertLevel = alertLevel;
+    return this;
+  }
+
+
+  /**
+   * @param generatingTsunami Whether the features wanted have started a tsunami, or null for either.
+   * @return this query.
+   */
+  public GeoFeatureQuery setGeneratingTsunami(final Boolean generatingTsunami) {
+    this.generatingTsunami = generatingTsunami;
+    return this;
+  }
+
+
+  /**
+   * @param limit The most features to return, or null for all of them.
+   * @return this query.
+   */
+  public GeoFeatureQuery setLimit(final Integer limit) {
+    this.limit = limit;
+    return this;
+  }
+
+
+  /**
+   * @param sort  The order to return the features in.
+   * @return this query.
+   */
+  public GeoFeatureQuery setSort(final Sort sort) {
+    this.sort = sort;
+    return this;
+  }
+
+
+  /**
+   * @param projection  The columns to read.
+   * @return this query.
+   */
+  public GeoFeatureQuery setProjection(final GeoFeatureProjection projection) {
+    this.projection = projection;
+    return this;
+  }
+
+
+  /**
+   * @return the key shared by every query compiling to the same SQL.
+   */
+  String getShape() {
+    final StringBuilder shape = new StringBuilder();
+    shape.append(minimumMagnitude == null ? '-' : 'm')
+         .append(maximumMagnitude == null ? '-' : 'M')
+         .append(from == null ? '-' : 'f')
+         .append(to == null ? '-' : 't')
+         .append(box == null ? '-' : box.crossesAntimeridian() ? 'A' : 'B')
+         .append(alertLevel == null ? '-' : 'a')
+         .append(generatingTsunami == null ? '-' : 'g')
+         .append(limit == null ? '-' : 'l')
+         .append(':').append(sort.name())
+         .append(':').append(projection.name());
+    return shape.toString();
+  }
+
+
+  long getCollectionId() {
+    return collectionId;
+  }
+
+
+  Double getMinimumMagnitude() {
+    return minimumMagnitude;
+  }
+
+
+  Double getMaximumMagnitude() {
+    return maximumMagnitude;
+  }
+
+
+  Long getFrom() {
+    return from;
+  }
+
+
+  Long getTo() {
+    return to;
+  }
+
+
+  BoundingBox getBoundingBox() {
+    return box;
+  }
+
+
+  PagerAlertLevel getAlertLevel() {
+    return alertLevel;
+  }
+
+
+  Boolean getGeneratingTsunami() {
+    return generatingTsunami;
+  }
+
+
+  Integer getLimit() {
+    return limit;
+  }
+
+
+  Sort getSort() {
+    return sort;
+  }
+
+
+  GeoFeatureProjection getProjection() {
+    return projection;
+  }
+}
@@ -0,0 +1,89 @@
+package com.brantapps.epicentre.service;
+
+import android.database.Cursor;
+
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoJsonType;
+import com.brantapps.epicentre.model.PagerAlertLevel;
+
+/**
+ * Builds a {@link GeoFeature} from whichever GeoFeature columns a
+ * cursor holds. Column positions are looked up by name on the first
+ * row of each cursor and reused for the rest, and fields whose column
+ * is absent from the projection are left unset, apart from the type,
+ * which is taken to be a point.
+ * <p>
+ * A mapper remembers the cursor it last resolved, so use one per query.
+ * </p>
+ *
+ * @author David C Branton
+ */
+final class GeoFeatureRowMapper implements RowMapper<GeoFeature> {
+  private Cursor resolved;
+  private int code;
+  private int geoJsonType;
+  private int time;
+  private int location;
+  private int latitude;
+  private int longitude;
+  private int magnitude;
+  private int magnitudeType;
+  private int alertLevel;
+  private int generatingTsunami;
+  private int updatedTime;
+
+  /**
+   * @see com.brantapps.epicentre.service.RowMapper#map(android.database.Cursor)
+   */
+  @Override
+  public GeoFeature map(final Cursor cursor) {
+    if (cursor != resolved) {
+      resolve(cursor);
+    }
+    final GeoFeature geoFeature =
+        new GeoFeature(geoJsonType == -1 ? GeoJsonType.POINT : GeoJsonType.safeValueOf(cursor.getString(geoJsonType)),
+                       cursor.getDouble(latitude),
+                       cursor.getDouble(longitude));
+    if (code != -1) {
+      geoFeature.setCode(cursor.getString(code));
+    }
+    if (time != -1 && !cursor.isNull(time)) {
+      geoFeature.setTime(cursor.getLong(time));
+    }
+    if (location != -1) {
+      geoFeature.setLocation(cursor.getString(location));
+    }
+    if (magnitude != -1) {
+      geoFeature.setMagnitude(cursor.getDouble(magnitude));
+    }
+    if (magnitudeType != -1) {
+      geoFeature.setMagnitudeType(cursor.getString(magnitudeType));
+    }
+    if (alertLevel != -1) {
+      geoFeature.setAlertLevel(PagerAlertLevel.safeValueOf(cursor.getString(alertLevel)));
+    }
+    if (generatingTsunami != -1 && !cursor.isNull(generatingTsunami)) {
+      geoFeature.setGeneratingTsunami(cursor.getInt(generatingTsunami) == 1);
+    }
+    if (updatedTime != -1 && !cursor.isNull(updatedTime)) {
+      geoFeature.setUpdatedTime(cursor.getLong(updatedTime));
+    }
+    return geoFeature;
+  }
+
+
+  private void resolve(final Cursor cursor) {
+    code = cursor.getColumnIndex("code");
+    geoJsonType = cursor.getColumnIndex("geoJsonType");
+    time = cursor.getColumnIndex("time");
+    location = cursor.getColumnIndex("location");
+    latitude = cursor.getColumnIndexOrThrow("latitude");
+    longitude = cursor.getColumnIndexOrThrow("longitude");
+    magnitude = cursor.getColumnIndex("magnitude");
+    magnitudeType = cursor.getColumnIndex("magnitudeType");
+    alertLevel = cursor.getColumnIndex("alertLevel");
+    generatingTsunami = cursor.getColumnIndex("generatingTsunami");
+    updatedTime = cursor.getColumnIndex("updatedTime");
+    resolved = cursor;
+  }
+}
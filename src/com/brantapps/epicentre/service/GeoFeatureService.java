@@ -1,20 +1,28 @@
 package com.brantapps.epicentre.service;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 
-import org.joda.time.LocalDateTime;
+import org.apache.commons.lang.StringUtils;
 
 import android.content.ContentValues;
-import android.database.sqlite.SQLiteCursor;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 
+import com.brantapps.epicentre.index.BoundingBox;
 import com.brantapps.epicentre.model.GeoFeature;
-import com.brantapps.epicentre.model.GeoJsonType;
-import com.brantapps.epicentre.model.PagerAlertLevel;
+import com.brantapps.epicentre.model.ReviewStatus;
 
 /**
  * Access to stored geographic feature.
@@ -22,11 +30,59 @@ import com.brantapps.epicentre.model.PagerAlertLevel;
  * @author David C Branton
  */
 public class GeoFeatureService implements ServiceInterface<GeoFeature> {
-  private static final String FEATURE_TABLE = "GeoFeature";
+  /**
+   * The chunk size for an insert committing only with the caller's transaction.
+   */
+  public static final int NO_CHUNKS = 0;
+  static final String FEATURE_TABLE = "GeoFeature";
+  static final String LIST_SELECTION = "collectionId = ?";
+  static final String LIST_ORDER = "time DESC";
+  static final String PAGE_SELECTION = "collectionId = ? AND time <= ? AND (time < ? OR code < ?)";
+  static final String PAGE_ORDER = "time DESC, code DESC";
+  private static final String INSERT_FEATURE =
+      "INSERT OR IGNORE INTO " + FEATURE_TABLE + " " +
+          "(code, collectionId, geoJsonType, time, location, latitude, longitude, " +
+          "magnitude, magnitudeType, alertLevel, generatingTsunami, updatedTime) " +
+          "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  static final String TECHNICAL_TABLE = "GeoFeatureTechnical";
+  static final String SUMMARY_TABLE = "GeoFeatureSummary";
+  private static final String TECHNICAL_COLUMNS =
+      "code, updatedTime, depth, eventPageUrl, eyeWitnessReports, maxReportedIntensity, " +
+          "maxInstrumentedIntensity, reviewStatus, significance, contributor, contributors, " +
+          "stationsReportingEvent, stationDistanceToEpicentre";
+  private static final String TECHNICAL_VALUES = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+  // The feature's id is bound last, after the detail.
+  private static final String INSERT_TECHNICAL =
+      "INSERT OR REPLACE INTO " + TECHNICAL_TABLE + " (" + TECHNICAL_COLUMNS + ", id) " +
+          "VALUES (" + TECHNICAL_VALUES + ", ?)";
+  // The feature's code and collection are bound last, after the detail.
+  private static final String UPDATE_TECHNICAL =
+      "INSERT OR REPLACE INTO " + TECHNICAL_TABLE + " (" + TECHNICAL_COLUMNS + ", id) " +
+          "SELECT " + TECHNICAL_VALUES + ", id FROM " + FEATURE_TABLE + " WHERE code = ? AND collectionId = ?";
+  private static final String SELECT_TECHNICAL =
+      "SELECT " + TECHNICAL_COLUMNS + " FROM " + TECHNICAL_TABLE + " " +
+          "WHERE id = (SELECT id FROM " + FEATURE_TABLE + " WHERE code = ? AND collectionId = ?)";
+  // Kept under SQLite's default limit of 999 bound parameters.
+  private static final int MAX_CODES_PER_DELETE = 500;
+  private static final String LOCATION_TABLE = "GeoFeatureLocation";
+  private static final int MAX_COMPILED_QUERIES = 32;
   private final SQLiteDatabase database;
+  private final DatabaseWriter databaseWriter;
+  // The SQL of each query shape seen, least recently used first. The same SQL text
+  // for a shape lets SQLite's prepared statement cache skip compiling it again.
+  private final Map<String, String> compiledQueries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+      return size() > MAX_COMPILED_QUERIES;
+    }
+  };
+  private Boolean spatiallyIndexed;
 
-  @Inject GeoFeatureService(final SQLiteDatabase database) {
+  @Inject GeoFeatureService(final SQLiteDatabase database, final DatabaseWriter databaseWriter) {
     this.database = database;
+    this.databaseWriter = databaseWriter;
   }
 
 
@@ -44,16 +100,150 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
    */
   @Override
   public List<GeoFeature> list(final Long... longs) {
-    final SQLiteCursor featureCursor =
-        (SQLiteCursor) database.query(
-          FEATURE_TABLE,
-          null,
-          "collectionId = ?",
-          new String[]{Long.toString(longs[0])},
-          null,
-          null,
-          "time DESC");
-    return buildGeoFeatures(featureCursor);
+    return buildGeoFeatures(queryCollection(longs[0], GeoFeatureProjection.FULL));
+  }
+
+
+  /**
+   * @see #iterate(long, GeoFeatureProjection)
+   */
+  public CursorResults<GeoFeature> iterate(final long collectionId) {
+    return iterate(collectionId, GeoFeatureProjection.FULL);
+  }
+
+
+  /**
+   * Stream the features of a collection, newest first, building
+   * each one only as it is reached.
+   *
+   * @param collectionId  The collection to read.
+   * @param projection  The columns to read.
+   * @return the open results, to be closed by the caller.
+   */
+  public CursorResults<GeoFeature> iterate(final long collectionId, final GeoFeatureProjection projection) {
+    return new CursorResults<GeoFeature>(queryCollection(collectionId, projection), new GeoFeatureRowMapper());
+  }
+
+
+  /**
+   * @see #page(long, GeoFeature, int, GeoFeatureProjection)
+   */
+  public List<GeoFeature> page(final long collectionId, final GeoFeature after, final int limit) {
+    return page(collectionId, after, limit, GeoFeatureProjection.FULL);
+  }
+
+
+  /**
+   * Read one page of a collection, newest first.
+   * <p>
+   * Pages are keyed on the time and code of the last feature of the
+   * previous page rather than an offset, so each page is a seek on the
+   * time index however deep into the collection it is, and features
+   * arriving in a sync between pages neither repeat nor go missing.
+   * </p>
+   *
+   * @param collectionId  The collection to read.
+   * @param after The last feature of the previous page, or null for the first page.
+   * @param limit The most features to return.
+   * @param projection  The columns to read.
+   * @return the page, empty after the last one.
+   */
+  public List<GeoFeature> page(final long collectionId,
+                               final GeoFeature after,
+                               final int limit,
+                               final GeoFeatureProjection projection) {
+    final String limitClause = Integer.toString(limit);
+    if (after == null) {
+      return buildGeoFeatures(database.query(FEATURE_TABLE,
+                                             projection.getColumns(),
+                                             LIST_SELECTION,
+                                             new String[]{Long.toString(collectionId)},
+                                             null,
+                                             null,
+                                             PAGE_ORDER,
+                                             limitClause));
+    }
+    final String time = Long.toString(after.getTimeInMillis());
+    return buildGeoFeatures(database.query(FEATURE_TABLE,
+                                           projection.getColumns(),
+                                           PAGE_SELECTION,
+                                           new String[]{Long.toString(collectionId), time, time, after.getCode()},
+                                           null,
+                                           null,
+                                           PAGE_ORDER,
+                                           limitClause));
+  }
+
+
+  /**
+   * @see #list(long, BoundingBox, Double, Long, Long)
+   */
+  public List<GeoFeature> list(final long collectionId, final BoundingBox box) {
+    return list(collectionId, box, null, null, null, GeoFeatureProjection.FULL);
+  }
+
+
+  /**
+   * @see #list(long, BoundingBox, Double, Long, Long, GeoFeatureProjection)
+   */
+  public List<GeoFeature> list(final long collectionId,
+                               final BoundingBox box,
+                               final Double minimumMagnitude,
+                               final Long from,
+                               final Long to) {
+    return list(collectionId, box, minimumMagnitude, from, to, GeoFeatureProjection.FULL);
+  }
+
+
+  /**
+   * List the features of a collection inside a bounding box.
+   * <p>
+   * Candidates are found through the GeoFeatureLocation R*Tree, or the
+   * coordinate index where SQLite lacks the R*Tree module, so only the
+   * rows inside the box are read. Boxes crossing the antimeridian are
+   * searched as two halves.
+   * </p>
+   *
+   * @param collectionId  The collection to search.
+   * @param box The area to search.
+   * @param minimumMagnitude  The smallest magnitude wanted, or null for any.
+   * @param from  The earliest event time wanted in milliseconds since the epoch, or null for any.
+   * @param to  The latest event time wanted in milliseconds since the epoch, or null for any.
+   * @param projection  The columns to read.
+   * @return the features found, newest first.
+   */
+  public List<GeoFeature> list(final long collectionId,
+                               final BoundingBox box,
+                               final Double minimumMagnitude,
+                               final Long from,
+                               final Long to,
+                               final GeoFeatureProjection projection) {
+    return list(new GeoFeatureQuery(collectionId).setBoundingBox(box)
+                                                 .setMagnitudeRange(minimumMagnitude, null)
+                                                 .setTimeWindow(from, to)
+                                                 .setProjection(projection));
+  }
+
+
+  /**
+   * List the features of a collection matching a query.
+   *
+   * @param query The criteria to search by.
+   * @return the features found, in the order of the query.
+   */
+  public List<GeoFeature> list(final GeoFeatureQuery query) {
+    return buildGeoFeatures(database.rawQuery(compile(query), bind(query)));
+  }
+
+
+  /**
+   * Stream the features of a collection matching a query.
+   *
+   * @param query The criteria to search by.
+   * @return the open results, to be closed by the caller.
+   */
+  public CursorResults<GeoFeature> iterate(final GeoFeatureQuery query) {
+    return new CursorResults<GeoFeature>(database.rawQuery(compile(query), bind(query)), new GeoFeatureRowMapper());
   }
 
 
@@ -62,7 +252,29 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
    */
   @Override
   public long save(final GeoFeature persistedModel, final Long... longs) {
-    return database.insert(FEATURE_TABLE, null, buildColumnMappings(persistedModel, longs[0]));
+    return databaseWriter.write(new Callable<Long>() {
+      @Override
+      public Long call() {
+        database.beginTransaction();
+        try {
+          final long rowId = database.insert(FEATURE_TABLE, null, buildColumnMappings(persistedModel, longs[0]));
+          if (rowId != -1) {
+            final SQLiteStatement insertTechnical = database.compileStatement(INSERT_TECHNICAL);
+            try {
+              bindTechnical(insertTechnical, persistedModel);
+              insertTechnical.bindLong(14, rowId);
+              insertTechnical.executeInsert();
+            } finally {
+              insertTechnical.close();
+            }
+          }
+          database.setTransactionSuccessful();
+          return rowId;
+        } finally {
+          database.endTransaction();
+        }
+      }
+    });
   }
 
 
@@ -71,9 +283,178 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
    */
   @Override
   public void delete(final Long... longs) {
-    database.delete(FEATURE_TABLE,
-                    "collectionId = ?",
-                    new String[]{Long.toString(longs[0])});
+    databaseWriter.write(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return database.delete(FEATURE_TABLE,
+                               "collectionId = ?",
+                               new String[]{Long.toString(longs[0])});
+      }
+    });
+  }
+
+
+  /**
+   * Insert many features, and their detail, through precompiled statements.
+   * <p>
+   * Only the {@link GeoFeatureCollectionService} writes features in bulk,
+   * from a transaction it opened on the {@link DatabaseWriter}, so this and
+   * the update and delete below are not public. A caller owning the
+   * outermost transaction may pass a <code>chunkSize</code>: every that
+   * many rows the transaction is marked successful, ended and begun again,
+   * so a very large import commits in chunks rather than journalling every
+   * row on its own or holding one enormous transaction. Any other caller,
+   * and one whose work must commit as a whole such as a synchronisation,
+   * passes {@link #NO_CHUNKS} and the rows commit with its transaction.
+   * </p>
+   *
+   * @param geoFeatures The features to insert.
+   * @param collectionId  The collection holding the features.
+   * @param chunkSize The number of rows to insert between commits, or {@link #NO_CHUNKS}.
+   * @return the number of rows inserted.
+   */
+  int saveAll(final Iterable<GeoFeature> geoFeatures, final long collectionId, final int chunkSize) {
+    final SQLiteStatement insert = database.compileStatement(INSERT_FEATURE);
+    final SQLiteStatement insertTechnical = database.compileStatement(INSERT_TECHNICAL);
+    int rows = 0;
+    try {
+      for (GeoFeature geoFeature : geoFeatures) {
+        bindInsert(insert, geoFeature, collectionId);
+        final long rowId = insert.executeInsert();
+        // A feature already stored is ignored, along with its detail, and not counted.
+        if (rowId == -1) {
+          continue;
+        }
+        bindTechnical(insertTechnical, geoFeature);
+        insertTechnical.bindLong(14, rowId);
+        insertTechnical.executeInsert();
+        rows++;
+        if (chunkSize != NO_CHUNKS && rows % chunkSize == 0) {
+          database.setTransactionSuccessful();
+          database.endTransaction();
+          database.beginTransaction();
+        }
+      }
+    } finally {
+      insert.close();
+      insertTechnical.close();
+    }
+    return rows;
+  }
+
+
+  /**
+   * Update a stored feature, and its detail, in place, within
+   * the caller's transaction on the {@link DatabaseWriter}.
+   *
+   * @param geoFeature  The revised feature.
+   * @param collectionId  The collection holding the feature.
+   * @return the number of rows updated.
+   */
+  int update(final GeoFeature geoFeature, final long collectionId) {
+    final int updated = database.update(FEATURE_TABLE,
+                                        buildColumnMappings(geoFeature, collectionId),
+                                        "code = ? AND collectionId = ?",
+                                        new String[]{geoFeature.getCode(), Long.toString(collectionId)});
+    final SQLiteStatement updateTechnical = database.compileStatement(UPDATE_TECHNICAL);
+    try {
+      bindTechnical(updateTechnical, geoFeature);
+      bindString(updateTechnical, 14, geoFeature.getCode());
+      updateTechnical.bindLong(15, collectionId);
+      updateTechnical.execute();
+    } finally {
+      updateTechnical.close();
+    }
+    return updated;
+  }
+
+
+  /**
+   * Read the detail of a stored feature, kept apart from the
+   * columns the map and lists read, when the feature is opened.
+   * The feature given is left as it is, as it may be shared
+   * through the {@link GeoFeatureCollectionCache}.
+   *
+   * @param listed  The feature to complete.
+   * @param collectionId  The collection holding the feature.
+   * @return a copy of the feature with its detail, or null when no detail is stored for it.
+   */
+  public GeoFeature loadDetail(final GeoFeature listed, final long collectionId) {
+    final Cursor cursor = database.rawQuery(SELECT_TECHNICAL, new String[]{listed.getCode(), Long.toString(collectionId)});
+    try {
+      if (!cursor.moveToNext()) {
+        return null;
+      }
+      final GeoFeature geoFeature = GeoFeature.copyOf(listed);
+      geoFeature.setDepth(cursor.getDouble(2));
+      geoFeature.setEventPageUrl(cursor.isNull(3) ? null : toUrl(cursor.getString(3)));
+      geoFeature.setNoOfEyeWitnessReports(cursor.getInt(4));
+      geoFeature.setMaximumReportedIntensity(cursor.isNull(5) ? null : cursor.getDouble(5));
+      geoFeature.setMaximumInstrumentedIntensity(cursor.isNull(6) ? null : cursor.getDouble(6));
+      geoFeature.setReviewStatus(cursor.isNull(7) ? null : ReviewStatus.safeValueOf(cursor.getString(7)));
+      geoFeature.setSignificance(cursor.getInt(8));
+      geoFeature.setContributorId(cursor.getString(9));
+      geoFeature.setContributors(cursor.isNull(10) ? null : StringUtils.split(cursor.getString(10), ","));
+      geoFeature.setNoOfStationsReportingEvent(cursor.getInt(11));
+      geoFeature.setMinDistFromEpicentreToStation(cursor.getDouble(12));
+      return geoFeature;
+    } finally {
+      cursor.close();
+    }
+  }
+
+
+  /**
+   * Delete stored features by code, within the caller's
+   * transaction on the {@link DatabaseWriter}.
+   *
+   * @param codes The codes of the features to delete.
+   * @param collectionId  The collection holding the features.
+   * @return the number of rows deleted.
+   */
+  int delete(final Collection<String> codes, final long collectionId) {
+    int deleted = 0;
+    final Iterator<String> remaining = codes.iterator();
+    while (remaining.hasNext()) {
+      final List<String> arguments = new ArrayList<String>();
+      final StringBuilder where = new StringBuilder("collectionId = ? AND code IN (");
+      arguments.add(Long.toString(collectionId));
+      while (remaining.hasNext() && arguments.size() <= MAX_CODES_PER_DELETE) {
+        where.append(arguments.size() == 1 ? "?" : ", ?");
+        arguments.add(remaining.next());
+      }
+      where.append(')');
+      deleted += database.delete(FEATURE_TABLE, where.toString(), arguments.toArray(new String[arguments.size()]));
+    }
+    return deleted;
+  }
+
+
+  /**
+   * List when each stored feature in a collection was last updated.
+   *
+   * @param collectionId  The collection to list.
+   * @return the updated time of each feature keyed by code, null for rows stored before updated times were.
+   */
+  public Map<String, Long> listUpdatedTimes(final long collectionId) {
+    final Cursor cursor =
+        database.query(
+          FEATURE_TABLE,
+          new String[]{"code", "updatedTime"},
+          "collectionId = ?",
+          new String[]{Long.toString(collectionId)},
+          null,
+          null,
+          null);
+    final Map<String, Long> updatedTimes = new HashMap<String, Long>(Math.max(16, cursor.getCount() * 4 / 3 + 1));
+    try {
+      while (cursor.moveToNext()) {
+        updatedTimes.put(cursor.getString(0), cursor.isNull(1) ? null : cursor.getLong(1));
+      }
+    } finally {
+      cursor.close();
+    }
+    return updatedTimes;
   }
 
 
@@ -81,7 +462,12 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
    * Delete all previous data.
    */
   public void deleteAll(final Long... longs) {
-    database.delete(FEATURE_TABLE, null, null);
+    databaseWriter.write(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return database.delete(FEATURE_TABLE, null, null);
+      }
+    });
   }
 
 
@@ -94,12 +480,73 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
   }
 
 
+  /**
+   * Count the features of a collection from its summary
+   * buckets rather than the features themselves. Features
+   * with no time have no bucket and are counted directly.
+   *
+   * @param collectionId  The collection to count.
+   * @return the number of features in the collection.
+   */
+  public long count(final long collectionId) {
+    final SQLiteStatement statement =
+        database.compileStatement("SELECT IFNULL(SUM(features), 0) + " +
+                                  "(SELECT COUNT(*) FROM " + FEATURE_TABLE + " WHERE collectionId = ?1 AND time IS NULL) " +
+                                  "FROM " + SUMMARY_TABLE + " WHERE collectionId = ?1");
+    try {
+      statement.bindLong(1, collectionId);
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+
+  /**
+   * List the summary buckets of a collection, kept up to date
+   * in the same transaction as every write to its features.
+   *
+   * @param collectionId  The collection to summarise.
+   * @return a bucket per magnitude band per hour holding features, oldest hour first.
+   *  Features with no time are in no bucket.
+   */
+  public List<GeoFeatureSummary> listSummaries(final long collectionId) {
+    final Cursor cursor =
+        database.query(
+          SUMMARY_TABLE,
+          new String[]{"magnitudeBand", "hour", "features", "maxMagnitude", "tsunamis",
+                       "greenAlerts", "yellowAlerts", "orangeAlerts", "redAlerts"},
+          "collectionId = ?",
+          new String[]{Long.toString(collectionId)},
+          null,
+          null,
+          "hour, magnitudeBand");
+    final List<GeoFeatureSummary> summaries = new ArrayList<GeoFeatureSummary>(cursor.getCount());
+    try {
+      while (cursor.moveToNext()) {
+        summaries.add(new GeoFeatureSummary(cursor.getInt(0),
+                                            cursor.getLong(1),
+                                            cursor.getInt(2),
+                                            cursor.getDouble(3),
+                                            cursor.getInt(4),
+                                            cursor.getInt(5),
+                                            cursor.getInt(6),
+                                            cursor.getInt(7),
+                                            cursor.getInt(8)));
+      }
+    } finally {
+      cursor.close();
+    }
+    return summaries;
+  }
+
+
   private ContentValues buildColumnMappings(final GeoFeature geoFeature, final Long collectionId) {
     final ContentValues values = new ContentValues();
     values.put("code", geoFeature.getCode());
     values.put("collectionId", collectionId);
     values.put("geoJsonType", geoFeature.getType() == null ? null : geoFeature.getType().getType());
-    values.put("time", geoFeature.getTime().toDate().getTime());
+    values.put("time", geoFeature.hasTime() ? Long.valueOf(geoFeature.getTimeInMillis()) : null);
     values.put("location", geoFeature.getLocation());
     values.put("latitude", geoFeature.getLatitude());
     values.put("longitude", geoFeature.getLongitude());
@@ -107,41 +554,245 @@ public class GeoFeatureService implements ServiceInterface<GeoFeature> {
     values.put("magnitudeType", geoFeature.getMagnitudeType());
     values.put("alertLevel", geoFeature.getAlertLevel() == null ? null : geoFeature.getAlertLevel().getLevel());
     values.put("generatingTsunami", geoFeature.isGeneratingTsunami());
+    values.put("updatedTime", geoFeature.hasUpdatedTime() ? Long.valueOf(geoFeature.getUpdatedTimeInMillis()) : null);
     return values;
   }
 
 
-  private List<GeoFeature> buildGeoFeatures(final SQLiteCursor cursor) {
-    final List<GeoFeature> geoFeatures = new ArrayList<GeoFeature>();
+  private Cursor queryCollection(final long collectionId, final GeoFeatureProjection projection) {
+    return database.query(FEATURE_TABLE,
+                          projection.getColumns(),
+                          LIST_SELECTION,
+                          new String[]{Long.toString(collectionId)},
+                          null,
+                          null,
+                          LIST_ORDER);
+  }
+
 
-    while (cursor.moveToNext()) {
-      geoFeatures.add(buildGeoFeature(cursor));
+  /**
+   * @return the SQL for the shape of the query, compiled once per shape.
+   */
+  String compile(final GeoFeatureQuery query) {
+    final boolean spatial = query.getBoundingBox() != null && isSpatiallyIndexed();
+    final String shape = query.getShape();
+    synchronized (compiledQueries) {
+      String sql = compiledQueries.get(shape);
+      if (sql == null) {
+        sql = buildQuery(query, spatial);
+        compiledQueries.put(shape, sql);
+      }
+      return sql;
     }
+  }
 
-    return geoFeatures;
+
+  /**
+   * @return the values of the query, in the order of the parameters in its SQL.
+   */
+  String[] bind(final GeoFeatureQuery query) {
+    final boolean spatial = query.getBoundingBox() != null && isSpatiallyIndexed();
+    final List<String> arguments = new ArrayList<String>();
+    final BoundingBox box = query.getBoundingBox();
+    if (box == null) {
+      bindSelect(arguments, query, spatial, 0d, 0d);
+    } else if (box.crossesAntimeridian()) {
+      bindSelect(arguments, query, spatial, box.getWest(), 180d);
+      bindSelect(arguments, query, spatial, -180d, box.getEast());
+    } else {
+      bindSelect(arguments, query, spatial, box.getWest(), box.getEast());
+    }
+    if (query.getLimit() != null) {
+      arguments.add(query.getLimit().toString());
+    }
+    return arguments.toArray(new String[arguments.size()]);
   }
 
-  private GeoFeature buildGeoFeature(final SQLiteCursor cursor) {
-    if (cursor.isBeforeFirst()) {
-      cursor.moveToNext();
+
+  private static String buildQuery(final GeoFeatureQuery query, final boolean spatial) {
+    final StringBuilder sql = new StringBuilder();
+    appendSelect(sql, query, spatial);
+    if (query.getBoundingBox() != null && query.getBoundingBox().crossesAntimeridian()) {
+      // Each half of the box is searched by its own select.
+      sql.append(" UNION ALL ");
+      appendSelect(sql, query, spatial);
+    }
+    sql.append(" ORDER BY ").append(query.getSort().getOrderBy());
+    if (query.getLimit() != null) {
+      sql.append(" LIMIT CAST(? AS INTEGER)");
     }
+    return sql.toString();
+  }
 
-    final GeoFeature geoFeature =
-        new GeoFeature(GeoJsonType.safeValueOf(cursor.getString(2)),
-                                               cursor.getDouble(5),
-                                               cursor.getDouble(6));
-    geoFeature.setCode(cursor.getString(0));
-    geoFeature.setTime(new LocalDateTime(cursor.getLong(3)));
-    geoFeature.setLocation(cursor.getString(4));
-    geoFeature.setMagnitude(cursor.getDouble(7));
-    geoFeature.setMagnitudeType(cursor.getString(8));
-    geoFeature.setAlertLevel(PagerAlertLevel.safeValueOf(cursor.getString(9)));
-    if (cursor.getInt(10) == 1) {
-      geoFeature.setGeneratingTsunami(true);
-    } else if (cursor.getInt(10) == 0) {
-      geoFeature.setGeneratingTsunami(false);
+
+  private static void appendSelect(final StringBuilder sql, final GeoFeatureQuery query, final boolean spatial) {
+    sql.append("SELECT ").append(query.getProjection().toSelectList("f")).append(" FROM ").append(FEATURE_TABLE).append(" f WHERE ");
+    final String column;
+    if (spatial) {
+      // The R*Tree rounds its boxes outwards so the exact bounds are still tested on
+      // the feature. The unary + keeps the planner from preferring the B-tree indexes.
+      sql.append("f.id IN (SELECT id FROM ").append(LOCATION_TABLE).append(" ")
+         .append("WHERE maxLatitude >= ? AND minLatitude <= ? AND maxLongitude >= ? AND minLongitude <= ?) AND ");
+      column = "+f.";
+    } else {
+      column = "f.";
+    }
+    sql.append(column).append("collectionId = CAST(? AS INTEGER)");
+    if (query.getBoundingBox() != null) {
+      sql.append(" AND f.latitude BETWEEN ? AND ? AND f.longitude BETWEEN ? AND ?");
+    }
+    if (query.getMinimumMagnitude() != null) {
+      sql.append(" AND ").append(column).append("magnitude >= CAST(? AS REAL)");
+    }
+    if (query.getMaximumMagnitude() != null) {
+      sql.append(" AND ").append(column).append("magnitude <= CAST(? AS REAL)");
+    }
+    if (query.getFrom() != null) {
+      sql.append(" AND ").append(column).append("time >= CAST(? AS INTEGER)");
+    }
+    if (query.getTo() != null) {
+      sql.append(" AND ").append(column).append("time <= CAST(? AS INTEGER)");
+    }
+    if (query.getAlertLevel() != null) {
+      sql.append(" AND ").append(column).append("alertLevel = ?");
     }
+    if (query.getGeneratingTsunami() != null) {
+      sql.append(" AND ").append(column).append("generatingTsunami = CAST(? AS INTEGER)");
+    }
+  }
+
 
-    return geoFeature;
+  private static void bindSelect(final List<String> arguments,
+                                 final GeoFeatureQuery query,
+                                 final boolean spatial,
+                                 final double west,
+                                 final double east) {
+    final BoundingBox box = query.getBoundingBox();
+    if (spatial) {
+      arguments.add(Double.toString(box.getSouth()));
+      arguments.add(Double.toString(box.getNorth()));
+      arguments.add(Double.toString(west));
+      arguments.add(Double.toString(east));
+    }
+    arguments.add(Long.toString(query.getCollectionId()));
+    if (box != null) {
+      arguments.add(Double.toString(box.getSouth()));
+      arguments.add(Double.toString(box.getNorth()));
+      arguments.add(Double.toString(west));
+      arguments.add(Double.toString(east));
+    }
+    if (query.getMinimumMagnitude() != null) {
+      arguments.add(query.getMinimumMagnitude().toString());
+    }
+    if (query.getMaximumMagnitude() != null) {
+      arguments.add(query.getMaximumMagnitude().toString());
+    }
+    if (query.getFrom() != null) {
+      arguments.add(query.getFrom().toString());
+    }
+    if (query.getTo() != null) {
+      arguments.add(query.getTo().toString());
+    }
+    if (query.getAlertLevel() != null) {
+      arguments.add(query.getAlertLevel().getLevel());
+    }
+    if (query.getGeneratingTsunami() != null) {
+      arguments.add(query.getGeneratingTsunami() ? "1" : "0");
+    }
+  }
+
+
+  private boolean isSpatiallyIndexed() {
+    if (spatiallyIndexed == null) {
+      final SQLiteStatement statement =
+          database.compileStatement("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = '" + LOCATION_TABLE + "'");
+      try {
+        spatiallyIndexed = statement.simpleQueryForLong() > 0;
+      } finally {
+        statement.close();
+      }
+    }
+    return spatiallyIndexed;
+  }
+
+
+  private static void bindInsert(final SQLiteStatement insert, final GeoFeature geoFeature, final long collectionId) {
+    insert.clearBindings();
+    bindString(insert, 1, geoFeature.getCode());
+    insert.bindLong(2, collectionId);
+    bindString(insert, 3, geoFeature.getType() == null ? null : geoFeature.getType().getType());
+    if (geoFeature.hasTime()) {
+      insert.bindLong(4, geoFeature.getTimeInMillis());
+    }
+    bindString(insert, 5, geoFeature.getLocation());
+    insert.bindDouble(6, geoFeature.getLatitude());
+    insert.bindDouble(7, geoFeature.getLongitude());
+    insert.bindDouble(8, geoFeature.getMagnitude());
+    bindString(insert, 9, geoFeature.getMagnitudeType());
+    bindString(insert, 10, geoFeature.getAlertLevel() == null ? null : geoFeature.getAlertLevel().getLevel());
+    final Boolean generatingTsunami = geoFeature.isGeneratingTsunami();
+    if (generatingTsunami != null) {
+      insert.bindLong(11, generatingTsunami ? 1 : 0);
+    }
+    if (geoFeature.hasUpdatedTime()) {
+      insert.bindLong(12, geoFeature.getUpdatedTimeInMillis());
+    }
+  }
+
+
+  private static void bindTechnical(final SQLiteStatement statement, final GeoFeature geoFeature) {
+    statement.clearBindings();
+    bindString(statement, 1, geoFeature.getCode());
+    if (geoFeature.hasUpdatedTime()) {
+      statement.bindLong(2, geoFeature.getUpdatedTimeInMillis());
+    }
+    statement.bindDouble(3, geoFeature.getDepth());
+    bindString(statement, 4, geoFeature.getEventPageUrl() == null ? null : geoFeature.getEventPageUrl().toExternalForm());
+    statement.bindLong(5, geoFeature.getNoOfEyeWitnessReports());
+    if (geoFeature.getMaximumReportedIntensity() != null) {
+      statement.bindDouble(6, geoFeature.getMaximumReportedIntensity());
+    }
+    if (geoFeature.getMaximumInstrumentedIntensity() != null) {
+      statement.bindDouble(7, geoFeature.getMaximumInstrumentedIntensity());
+    }
+    bindString(statement, 8, geoFeature.getReviewStatus() == null ? null : geoFeature.getReviewStatus().getLevel());
+    statement.bindLong(9, geoFeature.getSignificance());
+    bindString(statement, 10, geoFeature.getContributorId());
+    // Stored as the report lists them, e.g. ",us,ak,".
+    final String[] contributors = geoFeature.getContributors();
+    bindString(statement, 11, contributors == null ? null : "," + StringUtils.join(contributors, ',') + ",");
+    statement.bindLong(12, geoFeature.getNoOfStationsReportingEvent());
+    statement.bindDouble(13, geoFeature.getMinDistFromEpicentreToStation());
+  }
+
+
+  private static URL toUrl(final String spec) {
+    try {
+      return new URL(spec);
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+
+  private static void bindString(final SQLiteStatement statement, final int index, final String value) {
+    if (value != null) {
+      statement.bindString(index, value);
+    }
+  }
+
+
+  private static List<GeoFeature> buildGeoFeatures(final Cursor cursor) {
+    final GeoFeatureRowMapper rowMapper = new GeoFeatureRowMapper();
+    final List<GeoFeature> geoFeatures = new ArrayList<GeoFeature>(cursor.getCount());
+    try {
+      while (cursor.moveToNext()) {
+        geoFeatures.add(rowMapper.map(cursor));
+      }
+    } finally {
+      cursor.close();
+    }
+
+    return geoFeatures;
   }
 }
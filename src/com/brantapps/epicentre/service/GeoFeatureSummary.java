@@ -0,0 +1,112 @@
+package com.brantapps.epicentre.service;
+
+/**
+ * The features of a collection in one whole magnitude band
+ * and one hour of event time, as kept up to date on ingest.
+ *
+ * @author David C Branton
+ */
+public final class GeoFeatureSummary {
+  private static final long HOUR = 3600000L;
+  private final int magnitudeBand;
+  private final long hour;
+  private final int features;
+  private final double maxMagnitude;
+  private final int tsunamis;
+  private final int greenAlerts;
+  private final int yellowAlerts;
+  private final int orangeAlerts;
+  private final int redAlerts;
+
+  GeoFeatureSummary(final int magnitudeBand,
+                    final long hour,
+                    final int features,
+                    final double maxMagnitude,
+                    final int tsunamis,
+                    final int greenAlerts,
+                    final int yellowAlerts,
+                    final int orangeAlerts,
+                    final int redAlerts) {
+    this.magnitudeBand = magnitudeBand;
+    this.hour = hour;
+    this.features = features;
+    this.maxMagnitude = maxMagnitude;
+    this.tsunamis = tsunamis;
+    this.greenAlerts = greenAlerts;
+    this.yellowAlerts = yellowAlerts;
+    this.orangeAlerts = orangeAlerts;
+    this.redAlerts = redAlerts;
+  }
+
+
+  /**
+   * @return the whole magnitude of the band, e.g. 4 for M4.0 to M4.9.
+   */
+  public int getMagnitudeBand() {
+    return magnitudeBand;
+  }
+
+
+  /**
+   * @return the start of the hour in milliseconds since the epoch.
+   */
+  public long getHourInMillis() {
+    return hour * HOUR;
+  }
+
+
+  /**
+   * @return the number of features.
+   */
+  public int getFeatures() {
+    return features;
+  }
+
+
+  /**
+   * @return the largest magnitude.
+   */
+  public double getMaxMagnitude() {
+    return maxMagnitude;
+  }
+
+
+  /**
+   * @return the number of features that started a tsunami.
+   */
+  public int getTsunamis() {
+    return tsunamis;
+  }
+
+
+  /**
+   * @return the number of features on a green PAGER alert.
+   */
+  public int getGreenAlerts() {
+    return greenAlerts;
+  }
+
+
+  /**
+   * @return the number of features on a yellow PAGER alert.
+   */
+  public int getYellowAlerts() {
+    return yellowAlerts;
+  }
+
+
+  /**
+   * @return the number of features on an orange PAGER alert.
+   */
+  public int getOrangeAlerts() {
+    return orangeAlerts;
+  }
+
+
+  /**
+   * @return the number of features on a red PAGER alert.
+   */
+  public int getRedAlerts() {
+    return redAlerts;
+  }
+}
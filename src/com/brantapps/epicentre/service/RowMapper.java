@@ -0,0 +1,17 @@
+package com.brantapps.epicentre.service;
+
+import android.database.Cursor;
+
+/**
+ * Builds a model from the row a cursor is positioned on.
+ *
+ * @author David C Branton
+ */
+public interface RowMapper<T> {
+
+  /**
+   * @param cursor  A cursor positioned on a row.
+   * @return the model for the row.
+   */
+  T map(final Cursor cursor);
+}
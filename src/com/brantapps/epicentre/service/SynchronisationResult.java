@@ -0,0 +1,71 @@
+package com.brantapps.epicentre.service;
+
+/**
+ * What a synchronisation of a report changed in the database.
+ *
+ * @author David C Branton
+ */
+public final class SynchronisationResult {
+  private final long collectionId;
+  private final int inserted;
+  private final int updated;
+  private final int unchanged;
+  private final int expired;
+
+  SynchronisationResult(final long collectionId, final int inserted, final int updated, final int unchanged, final int expired) {
+    this.collectionId = collectionId;
+    this.inserted = inserted;
+    this.updated = updated;
+    this.unchanged = unchanged;
+    this.expired = expired;
+  }
+
+
+  /**
+   * @return the database identifier of the synchronised collection.
+   */
+  public long getCollectionId() {
+    return collectionId;
+  }
+
+
+  /**
+   * @return the number of new features stored.
+   */
+  public int getInserted() {
+    return inserted;
+  }
+
+
+  /**
+   * @return the number of revised features rewritten.
+   */
+  public int getUpdated() {
+    return updated;
+  }
+
+
+  /**
+   * @return the number of features left untouched.
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+
+  /**
+   * @return the number of features deleted as no longer in the report.
+   */
+  public int getExpired() {
+    return expired;
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format("%d inserted, %d updated, %d unchanged, %d expired", inserted, updated, unchanged, expired);
+  }
+}
@@ -5,12 +5,17 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
 import com.brantapps.epicentre.model.DatabaseCreationSQL;
+import com.brantapps.epicentre.model.DatabaseUpgradeSQL;
 
 /**
  * Creates a database helper.
@@ -18,6 +23,62 @@ import com.brantapps.epicentre.model.DatabaseCreationSQL;
  * @author David C Branton
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
+  private static final String UPGRADE_AUDIT_TABLE = "UpgradeAudit";
+  // The last upgrade already part of DatabaseCreationSQL.SCHEMA.
+  private static final int SCHEMA_SEQUENCE = 2;
+  private static final DatabaseUpgrade[] UPGRADES = {
+    new DatabaseUpgrade("0c6bb0a2-5b7e-4d33-9a0f-3f1e2f8d6a51", 1,
+                        "Record when each feature was last updated for incremental synchronisation.",
+                        DatabaseUpgradeSQL.ADD_GEO_FEATURE_UPDATED_TIME),
+    new DatabaseUpgrade("5d2f6c1e-8a43-4b9e-b7c2-91e0d4a3f7b8", 2,
+                        "Index features by time, magnitude and coordinates within a collection.",
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_TIME_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_MAGNITUDE_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_COORDINATE_INDEX),
+    new DatabaseUpgrade("a8e14f37-2c90-4e6b-8d15-6b7f3c0e9d24", 3,
+                        "Mirror feature coordinates into an R*Tree for bounding box queries.", true,
+                        DatabaseCreationSQL.SPATIAL_SCHEMA),
+    new DatabaseUpgrade("e61b9d08-7f25-43ac-9e3d-2c84a5f1b067", 4,
+                        "Add the code to the time index so collections can be paged on (time, code).",
+                        DatabaseUpgradeSQL.DROP_GEO_FEATURE_TIME_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_TIME_INDEX),
+    new DatabaseUpgrade("3f7c2a95-d1e8-4b60-a4f9-58e0b6c13d72", 5,
+                        "Delete the technical detail of a feature along with the feature.",
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_TECHNICAL_DELETE_TRIGGER),
+    new DatabaseUpgrade("b94e0c7a-6f13-4d28-8e5b-0a7d2c9f4e61", 6,
+                        "Summarise features by collection, magnitude band and hour as they are written.",
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_TABLE,
+                        DatabaseCreationSQL.POPULATE_GEO_FEATURE_SUMMARY_TABLE,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_INSERT_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_UPDATE_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_DELETE_TRIGGER),
+    new DatabaseUpgrade("6a0d3e94-21c7-4f58-b3e6-d97c40a815f2", 7,
+                        "Key each feature on an explicit id that VACUUM cannot renumber.",
+                        DatabaseUpgradeSQL.CREATE_GEO_FEATURE_REBUILD_TABLE,
+                        DatabaseUpgradeSQL.COPY_GEO_FEATURE_TO_REBUILD_TABLE,
+                        DatabaseUpgradeSQL.DROP_GEO_FEATURE_TABLE,
+                        DatabaseUpgradeSQL.RENAME_GEO_FEATURE_REBUILD_TABLE,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_TIME_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_MAGNITUDE_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_COORDINATE_INDEX,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_TECHNICAL_DELETE_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_INSERT_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_UPDATE_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_SUMMARY_DELETE_TRIGGER),
+    new DatabaseUpgrade("c3f85b27-9e4a-4d16-8a70-1b6e2f9d5c38", 8,
+                        "Rebuild the R*Tree on the explicit feature id.", true,
+                        DatabaseUpgradeSQL.DROP_GEO_FEATURE_LOCATION_TABLE,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_LOCATION_TABLE,
+                        DatabaseCreationSQL.POPULATE_GEO_FEATURE_LOCATION_TABLE,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_LOCATION_INSERT_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_LOCATION_UPDATE_TRIGGER,
+                        DatabaseCreationSQL.CREATE_GEO_FEATURE_LOCATION_DELETE_TRIGGER),
+    new DatabaseUpgrade("f2d74c19-8b3e-4a05-9c61-e5a07b3d82f4", 9,
+                        "Store unset feature times as NULL rather than Long.MIN_VALUE.",
+                        DatabaseUpgradeSQL.CLEAR_GEO_FEATURE_UNSET_TIME,
+                        DatabaseUpgradeSQL.CLEAR_GEO_FEATURE_UNSET_UPDATED_TIME,
+                        DatabaseUpgradeSQL.CLEAR_GEO_FEATURE_TECHNICAL_UNSET_UPDATED_TIME)
+  };
 
   /**
    * Constructs a database helper.
@@ -36,10 +97,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
    */
   @Override
   public void onCreate(final SQLiteDatabase database) {
-    database.execSQL(DatabaseCreationSQL.CREATE_GEO_FEATURE_COLLECTION_TABLE);
-    database.execSQL(DatabaseCreationSQL.CREATE_GEO_FEATURE_TABLE);
-    database.execSQL(DatabaseCreationSQL.CREATE_GEO_FEATURE_TECHNICAL_TABLE);
-    database.execSQL(DatabaseCreationSQL.CREATE_UPGRADE_AUDIT_TABLE_SQL);
+    for (String statement : DatabaseCreationSQL.SCHEMA) {
+      database.execSQL(statement);
+    }
+    // A new database already has the shape the upgrades up to SCHEMA_SEQUENCE produce.
+    for (DatabaseUpgrade upgrade : UPGRADES) {
+      if (upgrade.getSequence() <= SCHEMA_SEQUENCE) {
+        audit(database, upgrade);
+      }
+    }
+    final Set<String> failedUpgrades = new HashSet<String>();
+    executeUpgrades(database, 0, 0, failedUpgrades);
+    if (!failedUpgrades.isEmpty()) {
+      Log.w(this.getClass().getSimpleName(), String.format("Optional upgrades %s failed on a new database.", failedUpgrades));
+    }
   }
 
 
@@ -59,18 +130,64 @@ public class DatabaseHelper extends SQLiteOpenHelper {
       final int newVersion) {
     Set<String> failedUpgrades = new HashSet<String>();
     executeUpgrades(database, oldVersion, newVersion, failedUpgrades);
+    if (!failedUpgrades.isEmpty()) {
+      Log.w(this.getClass().getSimpleName(), String.format("Optional upgrades %s failed.", failedUpgrades));
+    }
   }
 
 
   /**
-   * Perform a database upgrade.
+   * Perform a database upgrade. A failed optional upgrade is added to the
+   * failed upgrades and tried again next time; any other failure is thrown,
+   * so the database is not opened at the new version without it.
    *
    * @param database  The database to upgrade
    * @param oldVersion  The database version from the previous application instance.
    * @param newVersion  The current database version.
-   * @param failedUpgrades  A set of failed upgrades.
+   * @param failedUpgrades  A set of failed optional upgrades.
+   * @throws SQLException  When an upgrade that is not optional fails.
    */
   public void executeUpgrades(final SQLiteDatabase database, final int oldVersion, final int newVersion, final Set<String> failedUpgrades) {
-    // Upgrades here when we need that.
+    final Set<String> appliedUpgrades = appliedUpgrades(database);
+    for (DatabaseUpgrade upgrade : UPGRADES) {
+      if (appliedUpgrades.contains(upgrade.getIdentifier())) {
+        continue;
+      }
+      try {
+        upgrade.apply(database);
+        audit(database, upgrade);
+        Log.i(this.getClass().getSimpleName(), String.format("Applied upgrade [%s].", upgrade.getDescription()));
+      } catch (SQLException e) {
+        if (!upgrade.isOptional()) {
+          Log.e(this.getClass().getSimpleName(), String.format("Upgrade [%s] failed.", upgrade.getDescription()), e);
+          throw e;
+        }
+        Log.w(this.getClass().getSimpleName(), String.format("Optional upgrade [%s] failed.", upgrade.getDescription()), e);
+        failedUpgrades.add(upgrade.getIdentifier());
+      }
+    }
+  }
+
+
+  private Set<String> appliedUpgrades(final SQLiteDatabase database) {
+    final Set<String> appliedUpgrades = new HashSet<String>();
+    final Cursor cursor = database.query(UPGRADE_AUDIT_TABLE, new String[] {"upgradeUUID"}, null, null, null, null, null);
+    try {
+      while (cursor.moveToNext()) {
+        appliedUpgrades.add(cursor.getString(0));
+      }
+    } finally {
+      cursor.close();
+    }
+    return appliedUpgrades;
+  }
+
+
+  private void audit(final SQLiteDatabase database, final DatabaseUpgrade upgrade) {
+    final ContentValues values = new ContentValues();
+    values.put("upgradeUUID", upgrade.getIdentifier());
+    values.put("description", upgrade.getDescription());
+    values.put("upgradeSequence", upgrade.getSequence());
+    database.insert(UPGRADE_AUDIT_TABLE, null, values);
   }
 }
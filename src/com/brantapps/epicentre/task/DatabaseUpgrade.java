@@ -0,0 +1,104 @@
+package com.brantapps.epicentre.task;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A change to the schema of an existing database. Each upgrade
+ * is applied once and then recorded in the UpgradeAudit table.
+ *
+ * @author David C Branton
+ */
+final class DatabaseUpgrade {
+  private static final String SAVEPOINT = "upgrade";
+  private final String identifier;
+  private final int sequence;
+  private final String description;
+  private final boolean optional;
+  private final String[] statements;
+
+  /**
+   * @param identifier  The UUID recorded once the upgrade is applied.
+   * @param sequence  The order the upgrade is applied in.
+   * @param description What the upgrade does.
+   * @param statements  The SQL making up the upgrade.
+   */
+  DatabaseUpgrade(final String identifier, final int sequence, final String description, final String... statements) {
+    this(identifier, sequence, description, false, statements);
+  }
+
+
+  /**
+   * @param identifier  The UUID recorded once the upgrade is applied.
+   * @param sequence  The order the upgrade is applied in.
+   * @param description What the upgrade does.
+   * @param optional  Whether the application works on without the upgrade.
+   * @param statements  The SQL making up the upgrade.
+   */
+  DatabaseUpgrade(final String identifier,
+                  final int sequence,
+                  final String description,
+                  final boolean optional,
+                  final String... statements) {
+    this.identifier = identifier;
+    this.sequence = sequence;
+    this.description = description;
+    this.optional = optional;
+    this.statements = statements;
+  }
+
+
+  /**
+   * Run the upgrade's statements in a savepoint, so an upgrade
+   * failing part way leaves nothing behind and can be run again.
+   *
+   * @param database  The database to upgrade.
+   * @throws SQLException  When a statement fails.
+   */
+  void apply(final SQLiteDatabase database) {
+    database.execSQL("SAVEPOINT " + SAVEPOINT);
+    try {
+      for (String statement : statements) {
+        database.execSQL(statement);
+      }
+    } catch (SQLException e) {
+      database.execSQL("ROLLBACK TO " + SAVEPOINT);
+      throw e;
+    } finally {
+      database.execSQL("RELEASE " + SAVEPOINT);
+    }
+  }
+
+
+  /**
+   * @return the UUID recorded once the upgrade is applied.
+   */
+  String getIdentifier() {
+    return identifier;
+  }
+
+
+  /**
+   * @return the order the upgrade is applied in.
+   */
+  int getSequence() {
+    return sequence;
+  }
+
+
+  /**
+   * @return what the upgrade does.
+   */
+  String getDescription() {
+    return description;
+  }
+
+
+  /**
+   * @return whether the application works on without the upgrade,
+   *  so a failure is left to be tried again on the next upgrade.
+   */
+  boolean isOptional() {
+    return optional;
+  }
+}
@@ -15,6 +15,7 @@ import com.brantapps.epicentre.events.SychroniseReportReceiver;
 import com.brantapps.epicentre.handler.GeoFeatureParser;
 import com.brantapps.epicentre.model.GeoFeatureCollection;
 import com.brantapps.epicentre.service.GeoFeatureCollectionService;
+import com.brantapps.epicentre.service.SynchronisationResult;
 
 /**
  * Fetch the latest M2.5+ 30 day report
@@ -27,7 +28,7 @@ public class FetchLatestM25Plus30DayReportTask extends AsyncTask<Void, Integer,
   private final LocalBroadcastManager localBroadcastManager;
   private final GeoFeatureParser geoFeatureParser;
   private final GeoFeatureCollectionService geoFeatureCollectionService;
-  private long collectionId; // ID of the latest report.
+  private long collectionId = -1; // ID of the latest report.
 
 
   /**
@@ -50,12 +51,14 @@ public class FetchLatestM25Plus30DayReportTask extends AsyncTask<Void, Integer,
    */
   @Override
   protected Void doInBackground(final Void... params) {
-    geoFeatureCollectionService.deleteAll();
     try {
       final URL geoJsonEarthquakeReport = new URL(M25_PLUS_30_DAY_REPORT);
       final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
       geoFeatureParser.parseResponse(geoJsonEarthquakeReport.openStream(), featureCollection);
-      collectionId = geoFeatureCollectionService.save(featureCollection);
+      // The stored report is only touched once the download has fully parsed.
+      final SynchronisationResult result = geoFeatureCollectionService.synchronise(featureCollection);
+      collectionId = result.getCollectionId();
+      Log.i(this.getClass().getSimpleName(), String.format("Synchronised report: %s.", result));
     } catch (MalformedURLException e) {
       Log.e(this.getClass().getSimpleName(), "Error creating URL for retrieving 30 day report from USGS.");
     } catch (IOException e) {
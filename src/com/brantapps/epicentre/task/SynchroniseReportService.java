@@ -98,9 +98,14 @@ public class SynchroniseReportService extends Service {
      */
     @Override
     public void onReceive(final Context context, final Intent intent) {
-      addNotification(drawable.ic_menu_sort_by_size,
-                      getString(string.report_retrieved_message),
-                      String.format(getString(string.report_earthquakes_found_message), geoFeatureService.count()));
+      // Counted from the summary buckets of the synchronised collection.
+      // A failed synchronisation has no collection, so nothing to report.
+      final long collectionId = intent.getLongExtra("collectionId", -1);
+      if (collectionId != -1) {
+        addNotification(drawable.ic_menu_sort_by_size,
+                        getString(string.report_retrieved_message),
+                        String.format(getString(string.report_earthquakes_found_message), geoFeatureService.count(collectionId)));
+      }
       stopSelf();
     }
   }
@@ -0,0 +1,319 @@
+package com.brantapps.epicentre.handler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes deterministic, synthetic USGS reports of any size for
+ * scale and soak testing.
+ * <p>
+ * The reports have the shape of the v0.1 feed read through the
+ * {@link GeoFeatureGsonTemplate}, quoted numbers included. Events are
+ * clustered around the busiest seismic regions, magnitudes follow the
+ * Gutenberg-Richter law from M2.5 and the contributing network, magnitude
+ * type and review status repeat as they do in the real feed. The same seed
+ * and feature count always produce the same bytes.
+ * </p>
+ *
+ * @author David C Branton
+ */
+public class SyntheticFeedGenerator {
+  public static final long GENERATED = 1367958892000L;
+  private static final long THIRTY_DAYS = 30L * 24 * 60 * 60 * 1000;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final String[] COMPASS = {"N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE", "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW"};
+  private static final Region[] REGIONS = {
+    new Region("Alaska", 57.0, -155.0, 6.0, 0.19, "ak", -480),
+    new Region("Puerto Rico", 18.5, -66.0, 1.5, 0.08, "pr", -240),
+    new Region("Northern California", 38.5, -122.5, 1.5, 0.05, "nc", -420),
+    new Region("Southern California", 34.0, -117.0, 1.5, 0.05, "ci", -420),
+    new Region("Hawaii", 19.4, -155.3, 0.5, 0.02, "hv", -600),
+    new Region("Japan", 37.0, 142.0, 4.0, 0.12, "us", 540),
+    new Region("Indonesia", -4.0, 122.0, 8.0, 0.14, "us", 480),
+    new Region("Chile", -25.0, -70.0, 6.0, 0.08, "us", -240),
+    new Region("Fiji", -19.0, -178.0, 4.0, 0.10, "us", -720),
+    new Region("Iran", 33.0, 52.0, 5.0, 0.06, "us", 210),
+    new Region("Mexico", 16.0, -97.0, 3.0, 0.06, "us", -360)
+  };
+  private final long seed;
+
+
+  /**
+   * @param seed  The seed every report is generated from.
+   */
+  public SyntheticFeedGenerator(final long seed) {
+    this.seed = seed;
+  }
+
+
+  /**
+   * Generate a report and parse it into a collection, ready for
+   * the persistence and map paths.
+   * <p>
+   * The report is staged in a temporary file so very large
+   * collections never need the report text in memory.
+   * </p>
+   *
+   * @param featureCount  The number of features in the report.
+   * @return the parsed collection.
+   * @throws IOException  When the report cannot be written or parsed.
+   */
+  public GeoFeatureCollection generate(final int featureCount) throws IOException {
+    final File report = File.createTempFile("epicentre-synthetic", ".json");
+    try {
+      write(featureCount, report, false);
+      final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+      new GeoFeatureBufferParser().parseFile(report, featureCollection);
+      return featureCollection;
+    } finally {
+      if (!report.delete()) {
+        report.deleteOnExit();
+      }
+    }
+  }
+
+
+  /**
+   * Write a report to a file.
+   *
+   * @param featureCount  The number of features in the report.
+   * @param file  The file to write.
+   * @param gzip  <code>true</code> to gzip the report.
+   * @return the file written.
+   * @throws IOException  When the file cannot be written.
+   */
+  public File write(final int featureCount, final File file, final boolean gzip) throws IOException {
+    OutputStream stream = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+    if (gzip) {
+      stream = new GZIPOutputStream(stream, 64 * 1024);
+    }
+    write(featureCount, stream);
+    return file;
+  }
+
+
+  /**
+   * Write a report to a stream. The stream is closed afterwards.
+   *
+   * @param featureCount  The number of features in the report.
+   * @param stream  The stream to write to.
+   * @throws IOException  When the stream cannot be written.
+   */
+  public void write(final int featureCount, final OutputStream stream) throws IOException {
+    final Random random = new Random(seed);
+    final JsonWriter writer = new JsonWriter(new OutputStreamWriter(stream, UTF8));
+    try {
+      writer.beginObject();
+      writer.name("type").value("FeatureCollection");
+      writer.name("metadata").beginObject();
+      writer.name("generated").value(GENERATED);
+      writer.name("url").value("http://earthquake.usgs.gov/earthquakes/feed/v0.1/summary/2.5_month.geojson");
+      writer.name("title").value("Synthetic USGS Magnitude 2.5+ Earthquakes, Past Month");
+      writer.name("subTitle").value("Synthetic worldwide earthquake list for the past month");
+      writer.name("cacheMaxAge").value(900);
+      writer.name("count").value(featureCount);
+      writer.endObject();
+
+      writer.name("features").beginArray();
+      // Events arrive as a Poisson process and are listed newest first.
+      final double meanGap = (double) THIRTY_DAYS / Math.max(1, featureCount);
+      long time = GENERATED;
+      for (int i = 0; i < featureCount; i++) {
+        time -= (long) (-Math.log(1d - random.nextDouble()) * meanGap);
+        writeFeature(writer, random, i, Math.max(time, GENERATED - THIRTY_DAYS));
+      }
+      writer.endArray();
+      writer.endObject();
+    } finally {
+      writer.close();
+    }
+  }
+
+
+  /**
+   * Open a report written by the generator, gunzipping it
+   * when the file name ends with ".gz".
+   *
+   * @param file  The report.
+   * @return the report stream.
+   * @throws IOException  When the report cannot be opened.
+   */
+  public static InputStream open(final File file) throws IOException {
+    final InputStream stream = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+    return file.getName().endsWith(".gz") ? new GZIPInputStream(stream, 64 * 1024) : stream;
+  }
+
+
+  private void writeFeature(final JsonWriter writer, final Random random, final int index, final long time) throws IOException {
+    final Region region = pickRegion(random);
+    final double latitude;
+    final double longitude;
+    if (region == null) {
+      latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      longitude = 360 * random.nextDouble() - 180;
+    } else {
+      latitude = Math.max(-90d, Math.min(90d, region.latitude + random.nextGaussian() * region.spread));
+      longitude = wrapLongitude(region.longitude + random.nextGaussian() * region.spread);
+    }
+    final String net = region == null ? "us" : region.net;
+    final int tz = region == null ? 0 : region.tz;
+
+    // Gutenberg-Richter with b = 1 from the feed's M2.5 floor.
+    final double magnitude = round(Math.min(9.5, 2.5 - Math.log10(1d - random.nextDouble())), 1);
+    final double depth = round(random.nextDouble() < 0.05 ? 300 + random.nextDouble() * 350
+                                                          : -Math.log(1d - random.nextDouble()) * 30, 2);
+    final String code = String.format("s%07x", index);
+
+    writer.beginObject();
+    writer.name("type").value("Feature");
+    writer.name("properties").beginObject();
+    writer.name("mag").value(magnitude);
+    writer.name("place").value(String.format("%dkm %s of %s",
+                                             1 + random.nextInt(300),
+                                             COMPASS[random.nextInt(COMPASS.length)],
+                                             region == null ? "the Mid-Ocean Ridge" : region.name));
+    writer.name("time").value(Long.toString(time));
+    writer.name("updated").value(Long.toString(time + (long) (-Math.log(1d - random.nextDouble()) * 1800000)));
+    writer.name("tz").value(tz);
+    writer.name("url").value("http://earthquake.usgs.gov/earthquakes/eventpage/" + net + code);
+    writer.name("felt").value(magnitude >= 4 ? random.nextInt((int) (magnitude * magnitude * 10)) : 0);
+    if (magnitude >= 4) {
+      writer.name("cdi").value(round(Math.min(9.5, magnitude - 1.5 + random.nextDouble()), 1));
+    } else {
+      writer.name("cdi").nullValue();
+    }
+    if (magnitude >= 5) {
+      writer.name("mmi").value(round(Math.min(9.5, magnitude - 0.5 + random.nextDouble()), 2));
+    } else {
+      writer.name("mmi").nullValue();
+    }
+    writer.name("alert");
+    if (magnitude >= 7.5) {
+      writer.value("red");
+    } else if (magnitude >= 7) {
+      writer.value("orange");
+    } else if (magnitude >= 6.5) {
+      writer.value("yellow");
+    } else if (magnitude >= 5.5) {
+      writer.value("green");
+    } else {
+      writer.nullValue();
+    }
+    final double status = random.nextDouble();
+    writer.name("status").value(status < 0.95 ? "REVIEWED" : status < 0.98 ? "AUTOMATIC" : "PUBLISHED");
+    if (magnitude >= 7 && random.nextBoolean()) {
+      writer.name("tsunami").value(1);
+    } else {
+      writer.name("tsunami").nullValue();
+    }
+    writer.name("sig").value(Integer.toString((int) (magnitude * 100 * magnitude / 6.5)));
+    writer.name("net").value(net);
+    writer.name("code").value(code);
+    writer.name("ids").value("," + net + code + ",");
+    writer.name("sources").value(random.nextDouble() < 0.1 && !"us".equals(net) ? "," + net + ",us," : "," + net + ",");
+    writer.name("types").value(",cap,geoserve,nearby-cities,origin,phase-data,");
+    writer.name("nst").value(Integer.toString(10 + random.nextInt(490)));
+    writer.name("dmin").value(Double.toString(round(random.nextDouble() * 20, 2)));
+    writer.name("rms").value(Double.toString(round(random.nextDouble() * 1.5, 2)));
+    writer.name("gap").value(Integer.toString(20 + random.nextInt(300)));
+    writer.name("magnitudeType").value(magnitudeType(net, magnitude, random));
+    writer.endObject();
+
+    writer.name("geometry").beginObject();
+    writer.name("type").value("Point");
+    writer.name("coordinates").beginArray()
+          .value(round(longitude, 4))
+          .value(round(latitude, 4))
+          .value(depth)
+          .endArray();
+    writer.endObject();
+    writer.name("id").value(net + code);
+    writer.endObject();
+  }
+
+
+  private static Region pickRegion(final Random random) {
+    double pick = random.nextDouble();
+    for (Region region : REGIONS) {
+      pick -= region.weight;
+      if (pick < 0) {
+        return region;
+      }
+    }
+    // The remaining weight is spread over the whole globe.
+    return null;
+  }
+
+
+  private static String magnitudeType(final String net, final double magnitude, final Random random) {
+    if ("us".equals(net)) {
+      if (magnitude >= 5.5) {
+        return "Mw";
+      }
+      return random.nextInt(3) == 0 ? "mb" : "Mb";
+    } else if ("ak".equals(net)) {
+      return "Ml";
+    }
+    return random.nextBoolean() ? "Md" : "Ml";
+  }
+
+
+  private static double wrapLongitude(final double longitude) {
+    if (longitude > 180d) {
+      return longitude - 360d;
+    } else if (longitude < -180d) {
+      return longitude + 360d;
+    }
+    return longitude;
+  }
+
+
+  private static double round(final double value, final int places) {
+    final double scale = Math.pow(10, places);
+    return Math.round(value * scale) / scale;
+  }
+
+
+  /**
+   * A seismically active region events cluster around.
+   */
+  private static final class Region {
+    private final String name;
+    private final double latitude;
+    private final double longitude;
+    private final double spread;
+    private final double weight;
+    private final String net;
+    private final int tz;
+
+    Region(final String name,
+           final double latitude,
+           final double longitude,
+           final double spread,
+           final double weight,
+           final String net,
+           final int tz) {
+      this.name = name;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.spread = spread;
+      this.weight = weight;
+      this.net = net;
+      this.tz = tz;
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.brantapps.epicentre.handler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.model.ColumnarGeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.PackedGeoFeatureCollection;
+
+/**
+ * Test the byte level {@link GeoFeatureBufferParser} produces
+ * the same features as the {@link GeoFeatureParser}.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureBufferParser extends TestCase {
+  private static final File REPORT = new File("assets/test/usgs/v0.1/test_past_30_days.json");
+
+  /**
+   * Test the memory mapped report parses to the same
+   * collection as the stream parser.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testMappedFileMatchesStreamParser() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureBufferParser().parseFile(REPORT, featureCollection);
+
+    // Then.
+    assertSameCollection(expected, featureCollection);
+  }
+
+
+  /**
+   * Test a direct buffer parses to the same
+   * collection as the stream parser.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testDirectBufferMatchesStreamParser() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+    final byte[] report = readReport();
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(report.length);
+    buffer.put(report).flip();
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureBufferParser().parseBuffer(buffer, featureCollection);
+
+    // Then.
+    assertSameCollection(expected, featureCollection);
+    assertThat("Buffer position should be untouched.", buffer.position(), equalTo(0));
+  }
+
+
+  /**
+   * Test the parallel parse merges the features back
+   * in their original order.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testParallelParseMatchesStreamParser() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+    final ByteBuffer buffer = ByteBuffer.wrap(readReport());
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    try {
+      new GeoFeatureBufferParser().parseBuffer(buffer, featureCollection, executor, 100);
+    } finally {
+      executor.shutdown();
+    }
+
+    // Then.
+    assertSameCollection(expected, featureCollection);
+  }
+
+
+  /**
+   * Test a columnar collection holds the same
+   * features as the stream parser.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testColumnarCollectionMatchesStreamParser() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+
+    // When.
+    final ColumnarGeoFeatureCollection featureCollection = new ColumnarGeoFeatureCollection();
+    new GeoFeatureBufferParser().parseFile(REPORT, featureCollection);
+
+    // Then.
+    assertSameCollection(expected, featureCollection);
+    assertEquals(expected.get(7).getMagnitude(), featureCollection.getMagnitude(7));
+    assertEquals(expected.get(7).getTimeInMillis(), featureCollection.getTimeInMillis(7));
+  }
+
+
+  /**
+   * Test a report packed off the heap unpacks
+   * to the same features.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testPackedCollectionRoundTrip() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+
+    // When.
+    final PackedGeoFeatureCollection packed = PackedGeoFeatureCollection.pack(expected);
+
+    // Then.
+    assertSameCollection(expected, packed.unpack());
+    final PackedGeoFeatureCollection.Cursor cursor = packed.cursor();
+    for (int i = 0; cursor.next(); i++) {
+      assertSameFeature(expected.get(i), cursor);
+    }
+  }
+
+
+  /**
+   * Test features parsed with lazily decoded detail
+   * match the stream parser once decoded.
+   *
+   * @throws IOException When there is a problem reading the file.
+   */
+  public void testLazyDetailMatchesStreamParser() throws IOException {
+    // Given.
+    final GeoFeatureCollection expected = parseWithStreamParser();
+    final GeoFeatureBufferParser parser = new GeoFeatureBufferParser();
+    parser.setLazyDetail(true);
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    parser.parseFile(REPORT, featureCollection);
+
+    // Then.
+    assertTrue("Detail should not be decoded by the hot fields.", featureCollection.get(0).isDetailEncoded());
+    featureCollection.get(0).getMagnitude();
+    featureCollection.get(0).getTime();
+    assertTrue("Detail should not be decoded by the hot fields.", featureCollection.get(0).isDetailEncoded());
+    assertSameCollection(expected, featureCollection);
+    assertFalse("Detail should be decoded.", featureCollection.get(0).isDetailEncoded());
+  }
+
+
+  /**
+   * Test escapes, exponents and the v1.0 style
+   * tsunami flag are decoded.
+   *
+   * @throws IOException When the sample cannot be parsed.
+   */
+  public void testEscapesAndNumberForms() throws IOException {
+    // Given.
+    final String report =
+        "{\"features\":[{\"properties\":{\"mag\":-0.25e1,\"place\":\"M\\u00e9xico \\\"north\\\"\\/\\ud83c\\udf0b\"," +
+        "\"time\":1.3676606E12,\"tsunami\":1,\"sig\":\"\",\"dmin\":\"0.001\"}," +
+        "\"geometry\":{\"type\":\"Point\",\"coordinates\":[1e-3,-0.5,12]}}]}";
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureBufferParser().parseBuffer(ByteBuffer.wrap(report.getBytes(Charset.forName("UTF-8"))), featureCollection);
+
+    // Then.
+    final GeoFeature geoFeature = featureCollection.get(0);
+    assertEquals(-2.5d, geoFeature.getMagnitude());
+    assertEquals("M\u00e9xico \"north\"/\ud83c\udf0b", geoFeature.getLocation());
+    assertEquals(Boolean.TRUE, geoFeature.isGeneratingTsunami());
+    assertEquals(0, geoFeature.getSignificance());
+    assertEquals(0.001d, geoFeature.getMinDistFromEpicentreToStation());
+    assertEquals(0.001d, geoFeature.getLongitude());
+    assertEquals(-0.5d, geoFeature.getLatitude());
+    assertEquals(12d, geoFeature.getDepth());
+  }
+
+
+  private GeoFeatureCollection parseWithStreamParser() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureParser().parseResponse(new FileInputStream(REPORT), featureCollection);
+    return featureCollection;
+  }
+
+
+  private byte[] readReport() throws IOException {
+    final byte[] report = new byte[(int) REPORT.length()];
+    final InputStream stream = new FileInputStream(REPORT);
+    try {
+      int read = 0;
+      while (read < report.length) {
+        read += stream.read(report, read, report.length - read);
+      }
+    } finally {
+      stream.close();
+    }
+    return report;
+  }
+
+
+  private void assertSameCollection(final GeoFeatureCollection expected, final GeoFeatureCollection actual) {
+    assertEquals("Incorrect feed title mapped.", expected.getTitle(), actual.getTitle());
+    assertEquals("Incorrect sub title mapped.", expected.getSubTitle(), actual.getSubTitle());
+    assertEquals("Incorrect URL mapped.", expected.getUrl().toExternalForm(), actual.getUrl().toExternalForm());
+    assertEquals("Incorrect generated date mapped.", expected.getGenerated(), actual.getGenerated());
+    assertEquals("Incorrect cache max period mapped.", expected.getCacheMaxAge(), actual.getCacheMaxAge());
+    assertThat(actual.size(), equalTo(expected.size()));
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameFeature(expected.get(i), actual.get(i));
+    }
+  }
+
+
+  private void assertSameFeature(final GeoFeature expected, final GeoFeature actual) {
+    final String code = expected.getCode();
+    assertEquals(code, expected.getCode(), actual.getCode());
+    assertEquals(code, expected.getType(), actual.getType());
+    assertEquals(code, expected.getLatitude(), actual.getLatitude());
+    assertEquals(code, expected.getLongitude(), actual.getLongitude());
+    assertEquals(code, expected.getDepth(), actual.getDepth());
+    assertEquals(code, expected.getMagnitude(), actual.getMagnitude());
+    assertEquals(code, expected.getMagnitudeType(), actual.getMagnitudeType());
+    assertEquals(code, expected.getLocation(), actual.getLocation());
+    assertEquals(code, expected.getTime(), actual.getTime());
+    assertEquals(code, expected.getUpdatedTime(), actual.getUpdatedTime());
+    assertEquals(code, String.valueOf(expected.getEventPageUrl()), String.valueOf(actual.getEventPageUrl()));
+    assertEquals(code, expected.getNoOfEyeWitnessReports(), actual.getNoOfEyeWitnessReports());
+    assertEquals(code, expected.getMaximumReportedIntensity(), actual.getMaximumReportedIntensity());
+    assertEquals(code, expected.getMaximumInstrumentedIntensity(), actual.getMaximumInstrumentedIntensity());
+    assertEquals(code, expected.getAlertLevel(), actual.getAlertLevel());
+    assertEquals(code, expected.getReviewStatus(), actual.getReviewStatus());
+    assertEquals(code, expected.isGeneratingTsunami(), actual.isGeneratingTsunami());
+    assertEquals(code, expected.getSignificance(), actual.getSignificance());
+    assertEquals(code, expected.getContributorId(), actual.getContributorId());
+    assertArrayEquals(code, expected.getContributors(), actual.getContributors());
+    assertEquals(code, expected.getNoOfStationsReportingEvent(), actual.getNoOfStationsReportingEvent());
+    assertEquals(code, expected.getMinDistFromEpicentreToStation(), actual.getMinDistFromEpicentreToStation());
+  }
+}
@@ -23,6 +23,7 @@ import com.brantapps.epicentre.model.GeoFeature;
 import com.brantapps.epicentre.model.GeoFeatureCollection;
 import com.brantapps.epicentre.model.GeoJsonType;
 import com.brantapps.epicentre.model.ReviewStatus;
+import com.google.gson.Gson;
 
 
 /**
@@ -99,6 +100,54 @@ public class TestGeoFeatureParser extends TestCase {
     assertThat(featureCollection, hasItem(withExpected(geoFeature)));
   }
 
+  /**
+   * Test to ensure the streaming parse hands every
+   * feature to the sink and still maps the report metadata.
+   *
+   * @throws IOException When there is a problem streaming the file.
+   */
+  public void testStreamingFeatureCollection() throws IOException {
+    // Given.
+    final InputStream dummyUsgsResponse = new FileInputStream(new File("assets/test/usgs/v0.1/test_past_30_days.json"));
+    final GeoFeatureCollection streamedFeatures = new GeoFeatureCollection();
+    final GeoFeatureSink sink = new GeoFeatureSink() {
+      @Override
+      public void onFeature(final GeoFeature geoFeature) {
+        streamedFeatures.add(geoFeature);
+      }
+    };
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureParser().streamResponse(dummyUsgsResponse, featureCollection, sink);
+
+    // Then.
+    assertEquals("Incorrect feed title mapped.", "USGS Magnitude 2.5+ Earthquakes, Past Month", featureCollection.getTitle());
+    assertThat("Features should be handed to the sink only.", featureCollection.size(), equalTo(0));
+    assertThat(streamedFeatures.size(), equalTo(1120));
+    assertEquals("Incorrect first feature.", "c000gney", streamedFeatures.get(0).getCode());
+  }
+
+
+  /**
+   * Tests the parser's Gson can still write the templates it reads.
+   */
+  public void testTemplatesCanBeWritten() {
+    // Given.
+    final Gson gson = GeoFeatureTypeAdapters.createGson();
+    final String json = "{\"generated\":1371143254000,\"title\":\"USGS Magnitude 2.5+ Earthquakes, Past Month\",\"count\":1120}";
+    final GeoFeatureGsonTemplate.MetaData metaData = gson.fromJson(json, GeoFeatureGsonTemplate.MetaData.class);
+
+    // When.
+    final GeoFeatureGsonTemplate.MetaData written = gson.fromJson(gson.toJson(metaData), GeoFeatureGsonTemplate.MetaData.class);
+
+    // Then.
+    assertThat(written.generated, equalTo(1371143254000L));
+    assertThat(written.title, equalTo("USGS Magnitude 2.5+ Earthquakes, Past Month"));
+    assertThat(written.count, equalTo(1120));
+  }
+
+
   private Matcher<GeoFeature> withExpected(final GeoFeature geoFeatureToCompare) {
     return new TypeSafeMatcher<GeoFeature>() {
 
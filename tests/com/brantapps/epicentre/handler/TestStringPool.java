@@ -0,0 +1,96 @@
+package com.brantapps.epicentre.handler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Test to ensure the correct operation of the {@link StringPool}.
+ *
+ * @author David C Branton
+ */
+public class TestStringPool extends TestCase {
+
+  /**
+   * Tests equal values come back as the first instance pooled.
+   */
+  public void testInternReturnsPooledInstance() {
+    final StringPool pool = new StringPool(8);
+    final String pooled = pool.intern(new String("us"));
+    assertThat(pool.intern(new String("us")), sameInstance(pooled));
+    assertThat(pool.intern(null), nullValue());
+  }
+
+
+  /**
+   * Tests the pool stops accepting values once full.
+   */
+  public void testPoolIsBounded() {
+    final StringPool pool = new StringPool(2);
+    pool.intern("ak");
+    pool.intern("ci");
+    final String overflow = new String("us");
+    assertThat(pool.intern(overflow), sameInstance(overflow));
+    assertThat(pool.intern(new String("us")), not(sameInstance(overflow)));
+  }
+
+
+  /**
+   * Tests a pooled value is found from its bytes.
+   */
+  public void testFindFromBytes() {
+    final StringPool pool = new StringPool(8);
+    final String pooled = pool.intern("mb");
+    final ByteBuffer buffer = ByteBuffer.wrap("\"mb\",\"md\"".getBytes(Charset.forName("UTF-8")));
+    assertThat(pool.find(buffer, 1, 3), sameInstance(pooled));
+    assertThat(pool.find(buffer, 6, 8), nullValue());
+  }
+
+
+  /**
+   * Tests identical sources lists share one array.
+   */
+  public void testContributorListsAreShared() {
+    final StringPool pool = new StringPool(8);
+    final String[] contributors = pool.splitContributors(new String(",us,ak,"));
+    assertThat(contributors, equalTo(new String[] {"us", "ak"}));
+    assertThat(pool.splitContributors(new String(",us,ak,")), sameInstance(contributors));
+  }
+
+
+  /**
+   * Tests only the contributor ids are pooled, not the raw list.
+   */
+  public void testRawContributorListIsNotPooled() {
+    final StringPool pool = new StringPool(8);
+    pool.splitContributors(",us,ak,");
+    final ByteBuffer buffer = ByteBuffer.wrap(",us,ak,".getBytes(Charset.forName("UTF-8")));
+    assertThat(pool.find(buffer, 1, 3), equalTo("us"));
+    assertThat(pool.find(buffer, 0, 7), nullValue());
+  }
+
+
+  /**
+   * Tests parsed features share their low cardinality values.
+   *
+   * @throws IOException When the report cannot be parsed.
+   */
+  public void testParsedFeaturesShareValues() throws IOException {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureBufferParser().parseFile(new File("assets/test/usgs/v0.1/test_past_30_days.json"), featureCollection);
+    assertThat(featureCollection.get(0).getContributorId(), equalTo("us"));
+    assertThat(featureCollection.get(1).getContributorId(), sameInstance(featureCollection.get(0).getContributorId()));
+    assertThat(featureCollection.get(1).getContributors()[0], sameInstance(featureCollection.get(0).getContributors()[0]));
+  }
+}
@@ -0,0 +1,116 @@
+package com.brantapps.epicentre.handler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+
+/**
+ * Test the {@link SyntheticFeedGenerator} writes reports
+ * the parser reads.
+ *
+ * @author David C Branton
+ */
+public class TestSyntheticFeedGenerator extends TestCase {
+
+  /**
+   * Test the same seed always produces the same report.
+   *
+   * @throws IOException When the report cannot be written.
+   */
+  public void testReportIsDeterministic() throws IOException {
+    // Given.
+    final ByteArrayOutputStream first = new ByteArrayOutputStream();
+    final ByteArrayOutputStream second = new ByteArrayOutputStream();
+    final ByteArrayOutputStream otherSeed = new ByteArrayOutputStream();
+
+    // When.
+    new SyntheticFeedGenerator(42L).write(500, first);
+    new SyntheticFeedGenerator(42L).write(500, second);
+    new SyntheticFeedGenerator(43L).write(500, otherSeed);
+
+    // Then.
+    assertArrayEquals(first.toByteArray(), second.toByteArray());
+    assertFalse("Seeds should change the report.", Arrays.equals(first.toByteArray(), otherSeed.toByteArray()));
+  }
+
+
+  /**
+   * Test the report parses to the requested number
+   * of plausible features.
+   *
+   * @throws IOException When the report cannot be parsed.
+   */
+  public void testReportParses() throws IOException {
+    // Given.
+    final ByteArrayOutputStream report = new ByteArrayOutputStream();
+    new SyntheticFeedGenerator(7L).write(2000, report);
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    new GeoFeatureParser().parseResponse(new ByteArrayInputStream(report.toByteArray()), featureCollection);
+
+    // Then.
+    assertThat(featureCollection.size(), equalTo(2000));
+    for (GeoFeature geoFeature : featureCollection) {
+      assertTrue(geoFeature.getMagnitude() >= 2.5 && geoFeature.getMagnitude() <= 9.5);
+      assertTrue(Math.abs(geoFeature.getLatitude()) <= 90 && Math.abs(geoFeature.getLongitude()) <= 180);
+      assertNotNull(geoFeature.getCode());
+    }
+  }
+
+
+  /**
+   * Test the generated collection matches the
+   * stream parser's reading of the same report.
+   *
+   * @throws IOException When the report cannot be parsed.
+   */
+  public void testGenerateMatchesReport() throws IOException {
+    // Given.
+    final ByteArrayOutputStream report = new ByteArrayOutputStream();
+    new SyntheticFeedGenerator(11L).write(1000, report);
+    final GeoFeatureCollection expected = new GeoFeatureCollection();
+    new GeoFeatureParser().parseResponse(new ByteArrayInputStream(report.toByteArray()), expected);
+
+    // When.
+    final GeoFeatureCollection featureCollection = new SyntheticFeedGenerator(11L).generate(1000);
+
+    // Then.
+    assertThat(featureCollection.size(), equalTo(expected.size()));
+    assertEquals(expected.get(999).getCode(), featureCollection.get(999).getCode());
+    assertEquals(expected.get(999).getLatitude(), featureCollection.get(999).getLatitude());
+  }
+
+
+  /**
+   * Test a gzipped report reads back.
+   *
+   * @throws IOException When the report cannot be written.
+   */
+  public void testGzippedReport() throws IOException {
+    // Given.
+    final File report = File.createTempFile("synthetic", ".json.gz");
+    report.deleteOnExit();
+    new SyntheticFeedGenerator(1L).write(300, report, true);
+
+    // When.
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    final InputStream stream = SyntheticFeedGenerator.open(report);
+    new GeoFeatureParser().parseResponse(stream, featureCollection);
+
+    // Then.
+    assertThat(featureCollection.size(), equalTo(300));
+  }
+}
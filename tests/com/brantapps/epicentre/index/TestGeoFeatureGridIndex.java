@@ -0,0 +1,113 @@
+package com.brantapps.epicentre.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.handler.SyntheticFeedGenerator;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoJsonType;
+
+/**
+ * Test to ensure the {@link GeoFeatureGridIndex} finds
+ * the same features as a scan of the collection.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureGridIndex extends TestCase {
+
+  /**
+   * Tests random boxes, including ones crossing
+   * the antimeridian, match a linear scan.
+   *
+   * @throws IOException When the synthetic report cannot be generated.
+   */
+  public void testQueriesMatchLinearScan() throws IOException {
+    // Given.
+    final GeoFeatureCollection featureCollection = new SyntheticFeedGenerator(12L).generate(20000);
+    final GeoFeatureGridIndex index = new GeoFeatureGridIndex(featureCollection);
+    final Random random = new Random(34L);
+
+    for (int i = 0; i < 200; i++) {
+      final double south = random.nextDouble() * 180d - 90d;
+      final double north = Math.min(90d, south + random.nextDouble() * 60d);
+      final double west = random.nextDouble() * 360d - 180d;
+      final double east = random.nextDouble() * 360d - 180d;
+      final BoundingBox box = new BoundingBox(south, west, north, east);
+
+      // When.
+      final int[] expected = scan(featureCollection, box);
+
+      // Then.
+      assertArrayEquals(box.toString(), expected, index.query(box));
+      assertThat(box.toString(), index.count(box), equalTo(expected.length));
+    }
+  }
+
+
+  /**
+   * Tests a box around Fiji finds features
+   * either side of the antimeridian.
+   */
+  public void testAntimeridianBox() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -17.5d, 179.9d));
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -18.6d, -177.8d));
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -18d, 0d));
+
+    final GeoFeatureGridIndex index = new GeoFeatureGridIndex(featureCollection);
+
+    assertArrayEquals(new int[] {0, 1}, index.query(new BoundingBox(-25d, 170d, -10d, -170d)));
+    assertArrayEquals(new int[] {2}, index.query(new BoundingBox(-25d, -170d, -10d, 170d)));
+  }
+
+
+  /**
+   * Tests appended features are indexed by an update
+   * and any other change rebuilds the index.
+   */
+  public void testIncrementalUpdate() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, 35d, -117d));
+    final GeoFeatureGridIndex index = new GeoFeatureGridIndex(featureCollection);
+    final BoundingBox california = new BoundingBox(30d, -125d, 45d, -110d);
+
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, 36d, -118d));
+    index.update();
+    assertArrayEquals(new int[] {0, 1}, index.query(california));
+
+    featureCollection.remove(0);
+    index.update();
+    assertArrayEquals(new int[] {0}, index.query(california));
+    assertThat(index.size(), equalTo(1));
+
+    featureCollection.set(0, new GeoFeature(GeoJsonType.POINT, 51d, 0d));
+    index.update();
+    assertArrayEquals(new int[0], index.query(california));
+
+    featureCollection.add(0, new GeoFeature(GeoJsonType.POINT, 37d, -122d));
+    index.update();
+    assertArrayEquals(new int[] {0}, index.query(california));
+    assertThat(index.size(), equalTo(2));
+  }
+
+
+  private int[] scan(final GeoFeatureCollection featureCollection, final BoundingBox box) {
+    int[] positions = new int[featureCollection.size()];
+    int count = 0;
+    for (int i = 0; i < featureCollection.size(); i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      if (box.contains(geoFeature.getLatitude(), geoFeature.getLongitude())) {
+        positions[count++] = i;
+      }
+    }
+    return Arrays.copyOf(positions, count);
+  }
+}
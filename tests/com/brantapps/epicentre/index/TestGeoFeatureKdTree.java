@@ -0,0 +1,112 @@
+package com.brantapps.epicentre.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.handler.SyntheticFeedGenerator;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoJsonType;
+
+/**
+ * Test to ensure the {@link GeoFeatureKdTree} finds the same
+ * neighbours as a haversine scan of the collection.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureKdTree extends TestCase {
+
+  /**
+   * Tests random searches, with and without filters,
+   * match a brute force scan.
+   *
+   * @throws IOException When the synthetic report cannot be generated.
+   */
+  public void testNearestMatchesBruteForce() throws IOException {
+    // Given.
+    final GeoFeatureCollection featureCollection = new SyntheticFeedGenerator(56L).generate(10000);
+    final GeoFeatureKdTree tree = new GeoFeatureKdTree(featureCollection);
+    final long newest = featureCollection.get(0).getTimeInMillis();
+    final Random random = new Random(78L);
+
+    for (int i = 0; i < 100; i++) {
+      final double latitude = random.nextDouble() * 180d - 90d;
+      final double longitude = random.nextDouble() * 360d - 180d;
+      final int count = 1 + random.nextInt(25);
+      final double radius = 500d + random.nextDouble() * 5000d;
+      final NeighbourFilter filter = i % 2 == 0 ? new NeighbourFilter()
+          : new NeighbourFilter().setMinimumMagnitude(4d).setTimeWindow(newest - 7L * 24 * 60 * 60 * 1000, newest);
+
+      // When.
+      final List<Neighbour> neighbours = tree.nearest(latitude, longitude, count, radius, filter);
+
+      // Then.
+      final List<Neighbour> expected = bruteForce(featureCollection, latitude, longitude, count, radius, filter);
+      assertThat(neighbours.size(), equalTo(expected.size()));
+      for (int j = 0; j < expected.size(); j++) {
+        assertThat(neighbours.get(j).getPosition(), equalTo(expected.get(j).getPosition()));
+        assertEquals(expected.get(j).getDistance(), neighbours.get(j).getDistance(), 1e-6d);
+      }
+    }
+  }
+
+
+  /**
+   * Tests the search reaches across the antimeridian.
+   */
+  public void testNearestAcrossAntimeridian() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -18d, 178d));
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -18d, -179.5d));
+    featureCollection.add(new GeoFeature(GeoJsonType.POINT, -18d, 170d));
+
+    final List<Neighbour> neighbours = new GeoFeatureKdTree(featureCollection).nearest(-18d, 179.9d, 2, 500d);
+
+    assertThat(neighbours.size(), equalTo(2));
+    assertThat(neighbours.get(0).getPosition(), equalTo(1));
+    assertThat(neighbours.get(1).getPosition(), equalTo(0));
+  }
+
+
+  private List<Neighbour> bruteForce(final GeoFeatureCollection featureCollection,
+                                     final double latitude,
+                                     final double longitude,
+                                     final int count,
+                                     final double radius,
+                                     final NeighbourFilter filter) {
+    final List<Neighbour> neighbours = new ArrayList<Neighbour>();
+    for (int i = 0; i < featureCollection.size(); i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      final double distance = haversine(latitude, longitude, geoFeature.getLatitude(), geoFeature.getLongitude());
+      if (distance <= radius && filter.accepts(geoFeature.getMagnitude(), geoFeature.getTimeInMillis())) {
+        neighbours.add(new Neighbour(i, geoFeature, distance));
+      }
+    }
+    Collections.sort(neighbours, new Comparator<Neighbour>() {
+      @Override
+      public int compare(final Neighbour first, final Neighbour second) {
+        return Double.compare(first.getDistance(), second.getDistance());
+      }
+    });
+    return neighbours.subList(0, Math.min(count, neighbours.size()));
+  }
+
+
+  private double haversine(final double latitude1, final double longitude1, final double latitude2, final double longitude2) {
+    final double dLatitude = Math.toRadians(latitude2 - latitude1);
+    final double dLongitude = Math.toRadians(longitude2 - longitude1);
+    final double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+        + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+        * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+    return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * GeoFeatureKdTree.EARTH_RADIUS;
+  }
+}
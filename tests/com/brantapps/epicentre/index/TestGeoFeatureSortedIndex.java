@@ -0,0 +1,150 @@
+package com.brantapps.epicentre.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.brantapps.epicentre.handler.SyntheticFeedGenerator;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoJsonType;
+
+/**
+ * Test to ensure the {@link GeoFeatureSortedIndex} finds
+ * the same features as a scan of the collection.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureSortedIndex extends TestCase {
+
+  /**
+   * Tests random magnitude bands, time windows and significance
+   * ranges, alone and together, match a linear scan.
+   *
+   * @throws IOException When the synthetic report cannot be generated.
+   */
+  public void testRangesMatchLinearScan() throws IOException {
+    // Given.
+    final GeoFeatureCollection featureCollection = new SyntheticFeedGenerator(56L).generate(20000);
+    final GeoFeatureSortedIndex index = new GeoFeatureSortedIndex(featureCollection);
+    long earliest = Long.MAX_VALUE;
+    long latest = Long.MIN_VALUE;
+    for (GeoFeature geoFeature : featureCollection) {
+      earliest = Math.min(earliest, geoFeature.getTimeInMillis());
+      latest = Math.max(latest, geoFeature.getTimeInMillis());
+    }
+    final Random random = new Random(78L);
+
+    for (int i = 0; i < 200; i++) {
+      final double minimumMagnitude = 2.5d + random.nextInt(50) / 10d;
+      final double maximumMagnitude = minimumMagnitude + random.nextInt(30) / 10d;
+      final long from = earliest + (long) (random.nextDouble() * (latest - earliest));
+      final long to = from + (long) (random.nextDouble() * (latest - from));
+      final int minimumSignificance = random.nextInt(1000);
+      final int maximumSignificance = minimumSignificance + random.nextInt(500);
+      final String range = String.format("M%.1f-%.1f [%d, %d]", minimumMagnitude, maximumMagnitude, from, to);
+
+      // When.
+      final int[] byMagnitude = scan(featureCollection, minimumMagnitude, maximumMagnitude, Long.MIN_VALUE, Long.MAX_VALUE);
+      final int[] byTime = scan(featureCollection, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, from, to);
+      final int[] both = scan(featureCollection, minimumMagnitude, maximumMagnitude, from, to);
+
+      // Then.
+      assertArrayEquals(range, byMagnitude, index.byMagnitude(minimumMagnitude, maximumMagnitude));
+      assertArrayEquals(range, byTime, index.byTime(from, to));
+      assertArrayEquals(range, both, index.byMagnitudeAndTime(minimumMagnitude, maximumMagnitude, from, to));
+      assertArrayEquals(range, both, GeoFeatureSortedIndex.intersect(byMagnitude, byTime));
+      assertThat(range, index.countByMagnitude(minimumMagnitude, maximumMagnitude), equalTo(byMagnitude.length));
+      assertThat(range, index.countByTime(from, to), equalTo(byTime.length));
+      assertArrayEquals(range,
+                        scanSignificance(featureCollection, minimumSignificance, maximumSignificance),
+                        index.bySignificance(minimumSignificance, maximumSignificance));
+    }
+  }
+
+
+  /**
+   * Tests an empty or inverted range finds nothing.
+   */
+  public void testEmptyRanges() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    final GeoFeatureSortedIndex empty = new GeoFeatureSortedIndex(featureCollection);
+    assertThat(empty.byMagnitude(0d, 10d).length, equalTo(0));
+
+    featureCollection.add(quake(5d, 1000L));
+    assertThat(empty.byMagnitude(6d, 4d).length, equalTo(0));
+    assertThat(empty.countByTime(2000L, 0L), equalTo(0));
+  }
+
+
+  /**
+   * Tests the index is rebuilt after the
+   * collection is added to, changed or removed from.
+   */
+  public void testInvalidatedByChanges() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.add(quake(5d, 1000L));
+    featureCollection.add(quake(6d, 2000L));
+    final GeoFeatureSortedIndex index = new GeoFeatureSortedIndex(featureCollection);
+    assertFalse(index.isStale());
+    assertArrayEquals(new int[] {1}, index.byMagnitude(5.5d, 7d));
+
+    featureCollection.add(quake(6.5d, 3000L));
+    assertTrue(index.isStale());
+    assertArrayEquals(new int[] {1, 2}, index.byMagnitude(5.5d, 7d));
+    assertFalse(index.isStale());
+
+    featureCollection.set(0, quake(7d, 4000L));
+    assertArrayEquals(new int[] {0, 1, 2}, index.byMagnitude(5.5d, 7d));
+
+    featureCollection.remove(1);
+    assertArrayEquals(new int[] {0, 1}, index.byMagnitudeAndTime(5.5d, 7d, 2500L, 5000L));
+  }
+
+
+  private static GeoFeature quake(final double magnitude, final long time) {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, 0d, 0d);
+    geoFeature.setMagnitude(magnitude);
+    geoFeature.setTime(time);
+    return geoFeature;
+  }
+
+
+  private static int[] scan(final GeoFeatureCollection featureCollection,
+                            final double minimumMagnitude,
+                            final double maximumMagnitude,
+                            final long from,
+                            final long to) {
+    final int[] positions = new int[featureCollection.size()];
+    int count = 0;
+    for (int i = 0; i < featureCollection.size(); i++) {
+      final GeoFeature geoFeature = featureCollection.get(i);
+      if (geoFeature.getMagnitude() >= minimumMagnitude
+          && geoFeature.getMagnitude() <= maximumMagnitude
+          && geoFeature.getTimeInMillis() >= from
+          && geoFeature.getTimeInMillis() <= to) {
+        positions[count++] = i;
+      }
+    }
+    return Arrays.copyOf(positions, count);
+  }
+
+
+  private static int[] scanSignificance(final GeoFeatureCollection featureCollection, final int minimum, final int maximum) {
+    final int[] positions = new int[featureCollection.size()];
+    int count = 0;
+    for (int i = 0; i < featureCollection.size(); i++) {
+      final int significance = featureCollection.get(i).getSignificance();
+      if (significance >= minimum && significance <= maximum) {
+        positions[count++] = i;
+      }
+    }
+    return Arrays.copyOf(positions, count);
+  }
+}
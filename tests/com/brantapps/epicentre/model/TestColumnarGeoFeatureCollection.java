@@ -0,0 +1,95 @@
+package com.brantapps.epicentre.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import junit.framework.TestCase;
+
+/**
+ * Test to ensure the correct operation of the
+ * {@link ColumnarGeoFeatureCollection}.
+ *
+ * @author David C Branton
+ */
+public class TestColumnarGeoFeatureCollection extends TestCase {
+
+  /**
+   * Tests the row views read back every field
+   * of the features added.
+   */
+  public void testRowViewsReadColumns() {
+    final ColumnarGeoFeatureCollection featureCollection = new ColumnarGeoFeatureCollection();
+    featureCollection.add(feature("a", 4.5d));
+    featureCollection.add(feature("b", 6.1d));
+
+    final GeoFeature row = featureCollection.get(1);
+    assertThat(row.getCode(), equalTo("b"));
+    assertThat(row.getType(), equalTo(GeoJsonType.POINT));
+    assertThat(row.getLatitude(), equalTo(-18.6d));
+    assertThat(row.getLongitude(), equalTo(-177.8d));
+    assertThat(row.getMagnitude(), equalTo(6.1d));
+    assertThat(row.getTimezoneOffset(), equalTo(-720));
+    assertThat(row.getTime(), equalTo(feature("b", 6.1d).getTime()));
+    assertThat(row.getMaximumReportedIntensity(), equalTo(Double.valueOf(3.4d)));
+    assertThat(row.getMaximumInstrumentedIntensity(), nullValue());
+    assertThat(row.getReviewStatus(), equalTo(ReviewStatus.REVIEWED));
+    assertThat(row.getAlertLevel(), nullValue());
+    assertThat(row.isGeneratingTsunami(), equalTo(Boolean.FALSE));
+    assertThat(row.getContributors(), equalTo(new String[] {"us"}));
+    assertThat(featureCollection.getMagnitude(0), equalTo(4.5d));
+    assertThat(featureCollection.getSignificance(0), equalTo(385));
+  }
+
+
+  /**
+   * Tests writes through a row view land in the columns.
+   */
+  public void testRowViewsWriteColumns() {
+    final ColumnarGeoFeatureCollection featureCollection = new ColumnarGeoFeatureCollection();
+    featureCollection.add(feature("a", 4.5d));
+
+    featureCollection.get(0).setMagnitude(5d);
+    featureCollection.get(0).setAlertLevel(PagerAlertLevel.ORANGE);
+
+    assertThat(featureCollection.getMagnitude(0), equalTo(5d));
+    assertThat(featureCollection.getAlertLevel(0), equalTo(PagerAlertLevel.ORANGE));
+  }
+
+
+  /**
+   * Tests inserts and removals shift the rows
+   * and hand back a standalone copy.
+   */
+  public void testInsertAndRemoveShiftRows() {
+    final ColumnarGeoFeatureCollection featureCollection = new ColumnarGeoFeatureCollection();
+    featureCollection.ensureCapacity(2);
+    featureCollection.add(feature("a", 1d));
+    featureCollection.add(feature("c", 3d));
+    featureCollection.add(1, feature("b", 2d));
+    assertThat(featureCollection.get(1).getCode(), equalTo("b"));
+    assertThat(featureCollection.getMagnitude(2), equalTo(3d));
+
+    final GeoFeature removed = featureCollection.remove(0);
+
+    assertThat(removed.getCode(), equalTo("a"));
+    assertThat(removed.getReviewStatus(), equalTo(ReviewStatus.REVIEWED));
+    assertThat(featureCollection.size(), equalTo(2));
+    assertThat(featureCollection.get(0).getCode(), equalTo("b"));
+    assertThat(removed.getCode(), equalTo("a"));
+  }
+
+
+  private GeoFeature feature(final String code, final double magnitude) {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, -18.6d, -177.8d);
+    geoFeature.setCode(code);
+    geoFeature.setMagnitude(magnitude);
+    geoFeature.setTimezoneOffset(-720);
+    geoFeature.setTime(1367660685870L);
+    geoFeature.setMaximumReportedIntensity(Double.valueOf(3.4d));
+    geoFeature.setReviewStatus(ReviewStatus.REVIEWED);
+    geoFeature.setGeneratingTsunami(Boolean.FALSE);
+    geoFeature.setSignificance(385);
+    geoFeature.setContributors(new String[] {"us"});
+    return geoFeature;
+  }
+}
@@ -0,0 +1,128 @@
+package com.brantapps.epicentre.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import junit.framework.TestCase;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
+
+/**
+ * Test to ensure the correct operation of the
+ * {@link GeoFeature} time handling.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeature extends TestCase {
+
+  /**
+   * Tests the local time is materialised in the
+   * reporting timezone, including half hour offsets.
+   */
+  public void testLocalTimeUsesReportingOffset() {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, 34.5, 69.2);
+    geoFeature.setTimezoneOffset(270);
+    geoFeature.setTime(1367660685870L);
+
+    final LocalDateTime expected = new LocalDateTime(1367660685870L, DateTimeZone.forOffsetHoursMinutes(4, 30));
+    assertThat(geoFeature.getTime(), equalTo(expected));
+    assertThat(geoFeature.getTime(), sameInstance(geoFeature.getTime()));
+    assertThat(geoFeature.getTimeInMillis(), equalTo(1367660685870L));
+  }
+
+
+  /**
+   * Tests assigning a local time keeps the
+   * epoch time in step.
+   */
+  public void testLocalTimeAssignmentUpdatesMillis() {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, -18.6, -177.8);
+    geoFeature.setTimezoneOffset(-720);
+    geoFeature.setUpdatedTime(new LocalDateTime(1367662171267L, DateTimeZone.forOffsetHours(-12)));
+
+    assertThat(geoFeature.getUpdatedTimeInMillis(), equalTo(1367662171267L));
+  }
+
+
+  /**
+   * Tests the time and the offset may be
+   * assigned in either order.
+   */
+  public void testOffsetMayFollowTimes() {
+    final LocalDateTime local = new LocalDateTime(1367662171267L, DateTimeZone.forOffsetHours(-12));
+    final GeoFeature offsetFirst = new GeoFeature(GeoJsonType.POINT, -18.6, -177.8);
+    offsetFirst.setTimezoneOffset(-720);
+    offsetFirst.setTime(local);
+    offsetFirst.setUpdatedTime(1367662171267L);
+    final GeoFeature offsetLast = new GeoFeature(GeoJsonType.POINT, -18.6, -177.8);
+    offsetLast.setTime(local);
+    offsetLast.setUpdatedTime(1367662171267L);
+    offsetLast.getUpdatedTime();
+    offsetLast.setTimezoneOffset(-720);
+
+    assertThat(offsetLast.getTime(), equalTo(local));
+    assertThat(offsetLast.getTimeInMillis(), equalTo(offsetFirst.getTimeInMillis()));
+    assertThat(offsetLast.getUpdatedTime(), equalTo(offsetFirst.getUpdatedTime()));
+    assertThat(offsetLast.getUpdatedTimeInMillis(), equalTo(1367662171267L));
+  }
+
+
+  /**
+   * Tests an unassigned time stays null.
+   */
+  public void testUnassignedTimeIsNull() {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, 0, 0);
+    assertNull(geoFeature.getTime());
+    assertNull(geoFeature.getUpdatedTime());
+    assertFalse(geoFeature.hasTime());
+    assertFalse(geoFeature.hasUpdatedTime());
+
+    geoFeature.setTime(0L);
+    assertTrue(geoFeature.hasTime());
+    assertFalse(geoFeature.hasUpdatedTime());
+  }
+
+
+  /**
+   * Tests assigning a detail field keeps the
+   * other encoded detail fields.
+   */
+  public void testSetterDecodesDetailFirst() {
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, 0, 0);
+    geoFeature.setEncodedDetail(new GeoFeatureDetail.Encoder().encode(
+        "http://earthquake.usgs.gov/earthquakes/eventpage/usc000gney", 3, Double.valueOf(1d), null,
+        PagerAlertLevel.GREEN, ReviewStatus.REVIEWED, Boolean.FALSE, 385, "us", new String[] {"us", "ak"}, 337, 2.5d, "mb"));
+
+    geoFeature.setSignificance(400);
+
+    assertThat(geoFeature.getSignificance(), equalTo(400));
+    assertThat(geoFeature.getNoOfEyeWitnessReports(), equalTo(3));
+    assertThat(geoFeature.getMaximumReportedIntensity(), equalTo(Double.valueOf(1d)));
+    assertNull(geoFeature.getMaximumInstrumentedIntensity());
+    assertThat(geoFeature.getAlertLevel(), equalTo(PagerAlertLevel.GREEN));
+    assertThat(geoFeature.getReviewStatus(), equalTo(ReviewStatus.REVIEWED));
+    assertThat(geoFeature.isGeneratingTsunami(), equalTo(Boolean.FALSE));
+    assertThat(geoFeature.getEventPageUrl().getPath(), equalTo("/earthquakes/eventpage/usc000gney"));
+    assertThat(geoFeature.getContributors(), equalTo(new String[] {"us", "ak"}));
+    assertThat(geoFeature.getNoOfStationsReportingEvent(), equalTo(337));
+    assertThat(geoFeature.getMinDistFromEpicentreToStation(), equalTo(2.5d));
+    assertThat(geoFeature.getMagnitudeType(), equalTo("mb"));
+  }
+
+
+  /**
+   * Tests the contributors cannot be changed,
+   * for every feature sharing them, through a getter.
+   */
+  public void testContributorsAreCopied() {
+    final String[] shared = new String[] {"us", "ak"};
+    final GeoFeature geoFeature = new GeoFeature(GeoJsonType.POINT, 0, 0);
+    geoFeature.setContributors(shared);
+
+    geoFeature.getContributors()[0] = "ci";
+
+    assertThat(geoFeature.getContributors()[0], equalTo("us"));
+    assertThat(shared[0], equalTo("us"));
+  }
+}
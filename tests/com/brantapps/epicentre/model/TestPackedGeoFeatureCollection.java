@@ -0,0 +1,95 @@
+package com.brantapps.epicentre.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import junit.framework.TestCase;
+
+/**
+ * Test to ensure the correct operation of the
+ * {@link PackedGeoFeatureCollection}.
+ *
+ * @author David C Branton
+ */
+public class TestPackedGeoFeatureCollection extends TestCase {
+
+  /**
+   * Tests the cursor walks every record in order.
+   */
+  public void testCursorWalksRecords() {
+    final PackedGeoFeatureCollection packed = PackedGeoFeatureCollection.pack(collection());
+
+    final PackedGeoFeatureCollection.Cursor cursor = packed.cursor();
+    assertTrue(cursor.next());
+    assertThat(cursor.getCode(), equalTo("a"));
+    assertThat(cursor.getContributors(), equalTo(new String[] {"us", "ak"}));
+    assertThat(cursor.getMaximumReportedIntensity(), equalTo(Double.valueOf(3.4d)));
+    assertTrue(cursor.next());
+    assertThat(cursor.getCode(), equalTo("b"));
+    assertThat(cursor.getLocation(), nullValue());
+    assertThat(cursor.getContributors(), equalTo(new String[0]));
+    assertThat(cursor.getMaximumReportedIntensity(), nullValue());
+    assertThat(cursor.getTime(), nullValue());
+    assertFalse(cursor.next());
+    assertThat(cursor.moveTo(0).getMagnitude(), equalTo(4.5d));
+    assertThat(packed.getMagnitude(1), equalTo(6.1d));
+  }
+
+
+  /**
+   * Tests unpacking restores the features and metadata.
+   */
+  public void testUnpackRestoresFeatures() {
+    final GeoFeatureCollection featureCollection = collection();
+
+    final GeoFeatureCollection unpacked = PackedGeoFeatureCollection.pack(featureCollection).unpack();
+
+    assertThat(unpacked.getTitle(), equalTo("Past Month"));
+    assertThat(unpacked.size(), equalTo(2));
+    final GeoFeature geoFeature = unpacked.get(0);
+    assertThat(geoFeature.getCode(), equalTo("a"));
+    assertThat(geoFeature.getTime(), equalTo(featureCollection.get(0).getTime()));
+    assertThat(geoFeature.getTimezoneOffset(), equalTo(-720));
+    assertThat(geoFeature.getReviewStatus(), equalTo(ReviewStatus.REVIEWED));
+    assertThat(geoFeature.isGeneratingTsunami(), equalTo(Boolean.TRUE));
+    assertThat(geoFeature.getLocation(), equalTo("237km NNE of Ndoi Island, Fiji"));
+  }
+
+
+  /**
+   * Tests the cursor cannot be written through.
+   */
+  public void testCursorIsReadOnly() {
+    final PackedGeoFeatureCollection.Cursor cursor = PackedGeoFeatureCollection.pack(collection()).cursor();
+    cursor.next();
+    try {
+      cursor.setMagnitude(1d);
+      fail("Packed features should be read-only.");
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+  }
+
+
+  private GeoFeatureCollection collection() {
+    final GeoFeatureCollection featureCollection = new GeoFeatureCollection();
+    featureCollection.setTitle("Past Month");
+    final GeoFeature first = new GeoFeature(GeoJsonType.POINT, -18.6d, -177.8d);
+    first.setCode("a");
+    first.setMagnitude(4.5d);
+    first.setLocation("237km NNE of Ndoi Island, Fiji");
+    first.setTimezoneOffset(-720);
+    first.setTime(1367660685870L);
+    first.setMaximumReportedIntensity(Double.valueOf(3.4d));
+    first.setReviewStatus(ReviewStatus.REVIEWED);
+    first.setGeneratingTsunami(Boolean.TRUE);
+    first.setContributors(new String[] {"us", "ak"});
+    featureCollection.add(first);
+    final GeoFeature second = new GeoFeature(GeoJsonType.POINT, 35.1d, -117.6d);
+    second.setCode("b");
+    second.setMagnitude(6.1d);
+    second.setContributors(new String[0]);
+    featureCollection.add(second);
+    return featureCollection;
+  }
+}
@@ -0,0 +1,187 @@
+package com.brantapps.epicentre.service;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Provider;
+
+import org.joda.time.LocalDateTime;
+import org.joda.time.Period;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.brantapps.epicentre.model.DatabaseCreationSQL;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoJsonType;
+
+/**
+ * Stress test synchronising reports while the
+ * map reads them, through the {@link DatabaseWriter}
+ * on a write-ahead logged database.
+ *
+ * @author David C Branton
+ */
+public class TestDatabaseWriter extends AndroidTestCase {
+  private static final int FEATURES = 2000;
+  private static final int SYNCHRONISATIONS = 20;
+  private static final int READERS = 3;
+  private File databaseFile;
+  private SQLiteDatabase database;
+  private GeoFeatureService geoFeatureService;
+  private GeoFeatureCollectionService geoFeatureCollectionService;
+
+  /**
+   * @see junit.framework.TestCase#setUp()
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    databaseFile = getContext().getDatabasePath("stress.db");
+    databaseFile.getParentFile().mkdirs();
+    SQLiteDatabase.deleteDatabase(databaseFile);
+    database = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+    for (String statement : DatabaseCreationSQL.SCHEMA) {
+      database.execSQL(statement);
+    }
+    assertTrue(DatabaseWriter.enableWriteAheadLogging(database));
+    final DatabaseWriter databaseWriter = new DatabaseWriter(database);
+    geoFeatureService = new GeoFeatureService(database, databaseWriter);
+    geoFeatureCollectionService = new GeoFeatureCollectionService(database, databaseWriter, geoFeatureService, new GeoFeatureCollectionCache());
+  }
+
+
+  /**
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    database.close();
+    SQLiteDatabase.deleteDatabase(databaseFile);
+    super.tearDown();
+  }
+
+
+  /**
+   * Tests readers keep reading, and only ever see a whole
+   * report, while synchronisations run back to back.
+   *
+   * @throws Exception When a thread fails.
+   */
+  public void testReadsDuringSynchronisation() throws Exception {
+    // Given.
+    final long collectionId = geoFeatureCollectionService.synchronise(report(0)).getCollectionId();
+    final AtomicBoolean synchronising = new AtomicBoolean(true);
+    final AtomicInteger reads = new AtomicInteger();
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    final CountDownLatch readersDone = new CountDownLatch(READERS);
+
+    // When.
+    for (int i = 0; i < READERS; i++) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (synchronising.get()) {
+              int count = 0;
+              final CursorResults<GeoFeature> features = geoFeatureService.iterate(collectionId, GeoFeatureProjection.MARKER);
+              try {
+                for (GeoFeature feature : features) {
+                  count++;
+                }
+              } finally {
+                features.close();
+              }
+              assertEquals("A read saw a partial synchronisation.", FEATURES, count);
+              reads.incrementAndGet();
+            }
+          } catch (Throwable e) {
+            failures.add(e);
+          } finally {
+            readersDone.countDown();
+          }
+        }
+      }).start();
+    }
+    final int readsBefore = reads.get();
+    for (int generation = 1; generation <= SYNCHRONISATIONS; generation++) {
+      final SynchronisationResult result = geoFeatureCollectionService.synchronise(report(generation));
+      assertEquals(FEATURES, result.getInserted() + result.getUpdated() + result.getUnchanged());
+    }
+    final int readsDuring = reads.get() - readsBefore;
+    synchronising.set(false);
+    readersDone.await();
+
+    // Then.
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertTrue("Readers were blocked by the writer.", readsDuring > 0);
+    assertEquals(FEATURES, geoFeatureService.count());
+  }
+
+
+  /**
+   * Tests a writer built before the database is open,
+   * as on first launch, writes once the database opens.
+   */
+  public void testWriterBuiltBeforeDatabaseOpens() {
+    // Given.
+    final AtomicReference<SQLiteDatabase> openDatabase = new AtomicReference<SQLiteDatabase>();
+    final DatabaseWriter databaseWriter = new DatabaseWriter(new Provider<SQLiteDatabase>() {
+      @Override
+      public SQLiteDatabase get() {
+        return openDatabase.get();
+      }
+    });
+    final Callable<Integer> deleteAll = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return database.delete(GeoFeatureService.FEATURE_TABLE, null, null);
+      }
+    };
+    try {
+      databaseWriter.write(deleteAll);
+      fail("A write before the database is open should fail.");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+
+    // When.
+    openDatabase.set(database);
+
+    // Then.
+    assertEquals(Integer.valueOf(0), databaseWriter.write(deleteAll));
+  }
+
+
+  /**
+   * Each generation drops the oldest tenth of the features, revises
+   * another tenth and adds a tenth, so every report holds the same count.
+   */
+  private static GeoFeatureCollection report(final int generation) throws MalformedURLException {
+    final GeoFeatureCollection report = new GeoFeatureCollection();
+    report.setUrl(new URL("http://earthquake.usgs.gov/earthquakes/feed/v0.1/summary/2.5_month.geojson"));
+    report.setGenerated(new LocalDateTime());
+    report.setCacheMaxAge(Period.minutes(15));
+    report.setTitle("USGS Magnitude 2.5+ Earthquakes, Past Month");
+    final int first = generation * FEATURES / 10;
+    for (int i = first; i < first + FEATURES; i++) {
+      final GeoFeature feature = new GeoFeature(GeoJsonType.POINT, (i % 180) - 90d, (i % 360) - 180d);
+      feature.setCode(String.format("us%08d", i));
+      feature.setMagnitude(2.5d + i % 50 / 10d);
+      feature.setTime(i * 60000L);
+      feature.setUpdatedTime(i < first + FEATURES / 10 ? generation : 0L);
+      report.add(feature);
+    }
+    return report;
+  }
+}
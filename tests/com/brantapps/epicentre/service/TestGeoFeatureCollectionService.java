@@ -0,0 +1,260 @@
+package com.brantapps.epicentre.service;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.joda.time.LocalDateTime;
+import org.joda.time.Period;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.brantapps.epicentre.model.DatabaseCreationSQL;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoFeatureCollection;
+import com.brantapps.epicentre.model.GeoJsonType;
+
+/**
+ * Test the incremental synchronisation of a report
+ * against an in-memory database.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureCollectionService extends AndroidTestCase {
+  private SQLiteDatabase database;
+  private GeoFeatureService geoFeatureService;
+  private GeoFeatureCollectionService geoFeatureCollectionService;
+  private GeoFeatureCollectionCache collectionCache;
+
+  /**
+   * @see junit.framework.TestCase#setUp()
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    database = SQLiteDatabase.create(null);
+    for (String statement : DatabaseCreationSQL.SCHEMA) {
+      database.execSQL(statement);
+    }
+    final DatabaseWriter databaseWriter = new DatabaseWriter(database);
+    geoFeatureService = new GeoFeatureService(database, databaseWriter);
+    collectionCache = new GeoFeatureCollectionCache();
+    geoFeatureCollectionService = new GeoFeatureCollectionService(database, databaseWriter, geoFeatureService, collectionCache);
+  }
+
+
+  /**
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    database.close();
+    super.tearDown();
+  }
+
+
+  /**
+   * Tests only new, revised and expired
+   * features are written on a resynchronisation.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testOnlyChangesAreWritten() throws MalformedURLException {
+    // Given.
+    final GeoFeatureCollection first = report(feature("a", 1000L), feature("b", 2000L), feature("c", 3000L));
+    final long collectionId = geoFeatureCollectionService.synchronise(first).getCollectionId();
+
+    // When.
+    final GeoFeatureCollection second = report(feature("a", 1000L), feature("b", 2500L), feature("d", 4000L));
+    final SynchronisationResult result = geoFeatureCollectionService.synchronise(second);
+
+    // Then.
+    assertEquals(collectionId, result.getCollectionId());
+    assertEquals(1, result.getInserted());
+    assertEquals(1, result.getUpdated());
+    assertEquals(1, result.getUnchanged());
+    assertEquals(1, result.getExpired());
+    assertEquals(3, geoFeatureService.count());
+    assertEquals(Long.valueOf(2500L), geoFeatureService.listUpdatedTimes(collectionId).get("b"));
+    assertFalse(geoFeatureService.listUpdatedTimes(collectionId).containsKey("c"));
+  }
+
+
+  /**
+   * Tests synchronising the same report twice writes nothing.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testUnchangedReportWritesNothing() throws MalformedURLException {
+    geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("b", 2000L)));
+
+    final SynchronisationResult result = geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("b", 2000L)));
+
+    assertEquals(0, result.getInserted() + result.getUpdated() + result.getExpired());
+    assertEquals(2, result.getUnchanged());
+  }
+
+
+  /**
+   * Tests a code listed twice in a report is only counted as inserted once.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testDuplicateCodesAreNotCounted() throws MalformedURLException {
+    final SynchronisationResult first =
+        geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("a", 1000L), feature("b", 2000L)));
+    final SynchronisationResult second =
+        geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("b", 2000L), feature("c", 3000L), feature("c", 3000L)));
+
+    assertEquals(2, first.getInserted());
+    assertEquals(1, second.getInserted());
+    assertEquals(3, geoFeatureService.count());
+  }
+
+
+  /**
+   * Tests a synchronisation inserting more than a chunk of new
+   * features still commits as one: when a later step fails, none
+   * of its inserts are left behind.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testSynchronisationLargerThanChunkIsAtomic() throws MalformedURLException {
+    // Given.
+    geoFeatureCollectionService.setChunkSize(2);
+    geoFeatureCollectionService.synchronise(report(feature("a", 1000L)));
+    database.execSQL("CREATE TRIGGER FailExpiry BEFORE DELETE ON GeoFeature BEGIN SELECT RAISE(ABORT, 'Expiry failed.'); END;");
+
+    // When.
+    try {
+      geoFeatureCollectionService.synchronise(report(feature("b", 2000L), feature("c", 3000L),
+                                                     feature("d", 4000L), feature("e", 5000L), feature("f", 6000L)));
+      fail("The expiry of feature a should have failed the synchronisation.");
+    } catch (SQLException e) {
+      // Expected.
+    }
+
+    // Then.
+    assertEquals(1, geoFeatureService.count());
+
+    // When.
+    database.execSQL("DROP TRIGGER FailExpiry");
+    final SynchronisationResult result =
+        geoFeatureCollectionService.synchronise(report(feature("b", 2000L), feature("c", 3000L),
+                                                       feature("d", 4000L), feature("e", 5000L), feature("f", 6000L)));
+
+    // Then.
+    assertEquals(5, result.getInserted());
+    assertEquals(1, result.getExpired());
+    assertEquals(5, geoFeatureService.count());
+  }
+
+
+  /**
+   * Tests a save inside a transaction the caller holds commits
+   * nothing in chunks, so it rolls back with the caller's.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testSaveInsideCallersTransactionIsNotChunked() throws MalformedURLException {
+    // Given.
+    geoFeatureCollectionService.setChunkSize(2);
+
+    // When.
+    database.beginTransaction();
+    try {
+      geoFeatureCollectionService.save(report(feature("a", 1000L), feature("b", 2000L),
+                                              feature("c", 3000L), feature("d", 4000L), feature("e", 5000L)));
+      assertEquals(5, geoFeatureService.count());
+    } finally {
+      database.endTransaction();
+    }
+
+    // Then.
+    assertEquals(0, geoFeatureService.count());
+  }
+
+
+  /**
+   * Tests repeated loads are answered from the cache
+   * until a synchronisation writes the collection.
+   *
+   * @throws MalformedURLException When the report URL is invalid.
+   */
+  public void testLoadsAreCachedUntilSynchronised() throws MalformedURLException {
+    // Given.
+    final long collectionId = geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("b", 2000L))).getCollectionId();
+
+    // When.
+    final GeoFeatureCollection first = geoFeatureCollectionService.load(collectionId);
+    final GeoFeatureCollection second = geoFeatureCollectionService.load(collectionId);
+
+    // Then.
+    assertSame(first, second);
+    assertEquals(2, second.size());
+    assertEquals(1L, collectionCache.getMissCount());
+    assertEquals(1L, collectionCache.getHitCount());
+    try {
+      second.clear();
+      fail("Cached collections should be read-only.");
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+    assertEquals(2, first.size());
+
+    // When.
+    geoFeatureCollectionService.synchronise(report(feature("a", 1000L), feature("b", 2000L), feature("c", 3000L)));
+    final GeoFeatureCollection third = geoFeatureCollectionService.load(collectionId);
+
+    // Then.
+    assertNotSame(second, third);
+    assertEquals(3, third.size());
+    assertEquals(2L, collectionCache.getMissCount());
+
+    // When.
+    final GeoFeatureCollection markers = geoFeatureCollectionService.load(collectionId, GeoFeatureProjection.MARKER);
+
+    // Then.
+    assertNotSame(third, markers);
+    assertEquals(3, markers.size());
+    assertNull(markers.get(0).getUpdatedTime());
+    assertSame(markers, geoFeatureCollectionService.load(collectionId, GeoFeatureProjection.MARKER));
+    assertEquals(3L, collectionCache.getMissCount());
+  }
+
+
+  /**
+   * Tests a collection read before a write is not cached after it.
+   */
+  public void testStaleLoadIsNotCached() {
+    final long readAt = collectionCache.getGeneration();
+    collectionCache.invalidate();
+
+    collectionCache.put(1L, GeoFeatureProjection.FULL, new GeoFeatureCollection(), readAt);
+
+    assertNull(collectionCache.get(1L, GeoFeatureProjection.FULL));
+  }
+
+
+  private static GeoFeatureCollection report(final GeoFeature... features) throws MalformedURLException {
+    final GeoFeatureCollection report = new GeoFeatureCollection();
+    report.setUrl(new URL("http://earthquake.usgs.gov/earthquakes/feed/v0.1/summary/2.5_month.geojson"));
+    report.setGenerated(new LocalDateTime());
+    report.setCacheMaxAge(Period.minutes(15));
+    report.setTitle("USGS Magnitude 2.5+ Earthquakes, Past Month");
+    for (GeoFeature feature : features) {
+      report.add(feature);
+    }
+    return report;
+  }
+
+
+  private static GeoFeature feature(final String code, final long updatedTime) {
+    final GeoFeature feature = new GeoFeature(GeoJsonType.POINT, 35d, -117d);
+    feature.setCode(code);
+    feature.setTime(updatedTime - 500L);
+    feature.setUpdatedTime(updatedTime);
+    return feature;
+  }
+}
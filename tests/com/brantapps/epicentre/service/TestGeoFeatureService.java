@@ -0,0 +1,446 @@
+package com.brantapps.epicentre.service;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.test.AndroidTestCase;
+
+import com.brantapps.epicentre.index.BoundingBox;
+import com.brantapps.epicentre.model.DatabaseCreationSQL;
+import com.brantapps.epicentre.model.GeoFeature;
+import com.brantapps.epicentre.model.GeoJsonType;
+import com.brantapps.epicentre.model.PagerAlertLevel;
+import com.brantapps.epicentre.model.ReviewStatus;
+
+/**
+ * Test the {@link GeoFeatureService} queries and
+ * the plans SQLite chooses for them.
+ *
+ * @author David C Branton
+ */
+public class TestGeoFeatureService extends AndroidTestCase {
+  private SQLiteDatabase database;
+  private GeoFeatureService geoFeatureService;
+
+  /**
+   * @see junit.framework.TestCase#setUp()
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    database = SQLiteDatabase.create(null);
+    for (String statement : DatabaseCreationSQL.SCHEMA) {
+      database.execSQL(statement);
+    }
+    for (String statement : DatabaseCreationSQL.SPATIAL_SCHEMA) {
+      database.execSQL(statement);
+    }
+    final DatabaseWriter databaseWriter = new DatabaseWriter(database);
+    geoFeatureService = new GeoFeatureService(database, databaseWriter);
+  }
+
+
+  /**
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    database.close();
+    super.tearDown();
+  }
+
+
+  /**
+   * Tests listing a collection walks the time
+   * index rather than sorting in a temporary B-tree.
+   */
+  public void testListIsServedByTimeIndex() {
+    final String plan = explain(SQLiteQueryBuilder.buildQueryString(false,
+                                                                    GeoFeatureService.FEATURE_TABLE,
+                                                                    null,
+                                                                    GeoFeatureService.LIST_SELECTION,
+                                                                    null,
+                                                                    null,
+                                                                    GeoFeatureService.LIST_ORDER,
+                                                                    null), "1");
+
+    assertTrue(plan, plan.contains("GeoFeatureCollectionTime"));
+    assertFalse(plan, plan.contains("TEMP B-TREE"));
+  }
+
+
+  /**
+   * Tests a magnitude band count in a time window
+   * is answered from the index alone.
+   */
+  public void testMagnitudeCountIsCovered() {
+    final String plan = explain("SELECT COUNT(*) FROM GeoFeature " +
+                                "WHERE collectionId = ? AND magnitude BETWEEN ? AND ? AND time >= ?",
+                                "1", "5.5", "7", "0");
+
+    assertTrue(plan, plan.contains("COVERING INDEX GeoFeatureCollectionMagnitude"));
+  }
+
+
+  /**
+   * Tests a bounding box count is answered from the index alone.
+   */
+  public void testCoordinateCountIsCovered() {
+    final String plan = explain("SELECT COUNT(*) FROM GeoFeature " +
+                                "WHERE collectionId = ? AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?",
+                                "1", "30", "45", "-125", "-110");
+
+    assertTrue(plan, plan.contains("COVERING INDEX GeoFeatureCollectionCoordinates"));
+  }
+
+
+  /**
+   * Tests a bounding box query is driven by the R*Tree.
+   */
+  public void testBoundingBoxIsServedByRTree() {
+    final String plan = explain("SELECT f.* FROM GeoFeature f WHERE f.id IN (SELECT id FROM GeoFeatureLocation " +
+                                "WHERE maxLatitude >= ? AND minLatitude <= ? AND maxLongitude >= ? AND minLongitude <= ?) " +
+                                "AND +f.collectionId = CAST(? AS INTEGER)",
+                                "30", "45", "-125", "-110", "1");
+
+    assertTrue(plan, plan.contains("GeoFeatureLocation"));
+    assertFalse(plan, plan.contains("GeoFeatureCollectionCoordinates"));
+  }
+
+
+  /**
+   * Tests bounding box queries, including one crossing the antimeridian,
+   * see inserts, moves and deletes through the triggers.
+   */
+  public void testBoundingBoxFollowsChanges() {
+    // Given.
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(Arrays.asList(feature("suva", -18.1d, 178.4d, 5.1d, 1000L),
+                                              feature("tonga", -18.6d, -177.8d, 6.2d, 2000L),
+                                              feature("ridgecrest", 35.7d, -117.5d, 7.1d, 3000L)),
+                                1L,
+                                100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    final BoundingBox fiji = new BoundingBox(-25d, 170d, -10d, -170d);
+
+    // Then.
+    assertEquals(Arrays.asList("tonga", "suva"), codes(geoFeatureService.list(1L, fiji)));
+    assertEquals(Arrays.asList("tonga"), codes(geoFeatureService.list(1L, fiji, 6d, null, null)));
+    assertEquals(Arrays.asList("suva"), codes(geoFeatureService.list(1L, fiji, null, null, 1500L)));
+    assertTrue(geoFeatureService.list(2L, fiji).isEmpty());
+
+    // When.
+    final ContentValues moved = new ContentValues();
+    moved.put("latitude", 0d);
+    moved.put("longitude", 0d);
+    database.update("GeoFeature", moved, "code = ?", new String[] {"suva"});
+    database.delete("GeoFeature", "code = ?", new String[] {"tonga"});
+
+    // Then.
+    assertTrue(geoFeatureService.list(1L, fiji).isEmpty());
+    assertEquals(Arrays.asList("suva"), codes(geoFeatureService.list(1L, new BoundingBox(-1d, -1d, 1d, 1d))));
+  }
+
+
+  /**
+   * Tests paging through a collection with ties on time
+   * visits every feature once in list order, and that the
+   * streamed results match too and close themselves.
+   */
+  public void testPagesAndStreamMatchList() {
+    // Given.
+    final List<GeoFeature> features = new ArrayList<GeoFeature>();
+    for (int i = 0; i < 95; i++) {
+      features.add(feature(String.format("us%04d", i), 0d, 0d, 3d, i / 4));
+    }
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(features, 1L, 100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    final List<String> expected = codes(geoFeatureService.page(1L, null, 1000));
+
+    // When.
+    final List<String> paged = new ArrayList<String>();
+    List<GeoFeature> page = geoFeatureService.page(1L, null, 10);
+    while (!page.isEmpty()) {
+      paged.addAll(codes(page));
+      page = geoFeatureService.page(1L, page.get(page.size() - 1), 10);
+    }
+    final List<String> streamed = new ArrayList<String>();
+    final CursorResults<GeoFeature> results = geoFeatureService.iterate(1L);
+    for (GeoFeature feature : results) {
+      streamed.add(feature.getCode());
+    }
+
+    // Then.
+    assertEquals(95, expected.size());
+    assertEquals(expected, paged);
+    assertEquals(95, streamed.size());
+    assertEquals(codes(geoFeatureService.list(1L)), streamed);
+    try {
+      results.iterator();
+      fail("Exhausted results should have closed their cursor.");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+
+  /**
+   * Tests the marker projection reads only what a
+   * marker needs, including through a bounding box.
+   */
+  public void testMarkerProjection() {
+    // Given.
+    final GeoFeature full = feature("ridgecrest", 35.7d, -117.5d, 7.1d, 3000L);
+    full.setLocation("17km SW of Searles Valley, CA");
+    full.setMagnitudeType("mw");
+    full.setUpdatedTime(4000L);
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(Arrays.asList(full), 1L, 100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+
+    // When.
+    final GeoFeature marker = geoFeatureService.page(1L, null, 1, GeoFeatureProjection.MARKER).get(0);
+    final GeoFeature boxed = geoFeatureService.list(1L, new BoundingBox(30d, -125d, 45d, -110d), null, null, null, GeoFeatureProjection.MARKER).get(0);
+
+    // Then.
+    for (GeoFeature geoFeature : Arrays.asList(marker, boxed)) {
+      assertEquals("ridgecrest", geoFeature.getCode());
+      assertEquals(35.7d, geoFeature.getLatitude());
+      assertEquals(-117.5d, geoFeature.getLongitude());
+      assertEquals(7.1d, geoFeature.getMagnitude());
+      assertEquals(3000L, geoFeature.getTimeInMillis());
+      assertEquals("17km SW of Searles Valley, CA", geoFeature.getLocation());
+      assertNull(geoFeature.getMagnitudeType());
+      assertNull(geoFeature.getUpdatedTime());
+    }
+    assertEquals("mw", geoFeatureService.list(1L).get(0).getMagnitudeType());
+  }
+
+
+  /**
+   * Tests each criterion of a query is applied by SQLite, and
+   * that queries of the same shape share their compiled SQL.
+   */
+  public void testQueryCriteria() {
+    // Given.
+    final GeoFeature suva = feature("suva", -18.1d, 178.4d, 5.1d, 1000L);
+    suva.setAlertLevel(PagerAlertLevel.GREEN);
+    suva.setGeneratingTsunami(false);
+    final GeoFeature tonga = feature("tonga", -18.6d, -177.8d, 6.2d, 2000L);
+    tonga.setAlertLevel(PagerAlertLevel.YELLOW);
+    tonga.setGeneratingTsunami(true);
+    final GeoFeature ridgecrest = feature("ridgecrest", 35.7d, -117.5d, 7.1d, 3000L);
+    ridgecrest.setAlertLevel(PagerAlertLevel.YELLOW);
+    ridgecrest.setGeneratingTsunami(false);
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(Arrays.asList(suva, tonga, ridgecrest), 1L, 100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    final BoundingBox fiji = new BoundingBox(-25d, 170d, -10d, -170d);
+
+    // Then.
+    assertEquals(Arrays.asList("ridgecrest", "tonga", "suva"), codes(geoFeatureService.list(new GeoFeatureQuery(1L))));
+    assertEquals(Arrays.asList("suva", "tonga", "ridgecrest"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setSort(GeoFeatureQuery.Sort.OLDEST))));
+    assertEquals(Arrays.asList("tonga"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setMagnitudeRange(6d, 7d))));
+    assertEquals(Arrays.asList("tonga", "suva"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setTimeWindow(null, 2000L))));
+    assertEquals(Arrays.asList("ridgecrest", "tonga"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setAlertLevel(PagerAlertLevel.YELLOW))));
+    assertEquals(Arrays.asList("tonga"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setGeneratingTsunami(true))));
+    assertEquals(Arrays.asList("tonga", "suva"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setBoundingBox(fiji)
+                                                                     .setSort(GeoFeatureQuery.Sort.STRONGEST))));
+    assertEquals(Arrays.asList("ridgecrest"),
+                 codes(geoFeatureService.list(new GeoFeatureQuery(1L).setSort(GeoFeatureQuery.Sort.STRONGEST)
+                                                                     .setLimit(1))));
+    assertTrue(geoFeatureService.list(new GeoFeatureQuery(2L)).isEmpty());
+    assertSame(geoFeatureService.compile(new GeoFeatureQuery(1L).setMagnitudeRange(5d, null).setLimit(10)),
+               geoFeatureService.compile(new GeoFeatureQuery(2L).setMagnitudeRange(6.5d, null).setLimit(20)));
+  }
+
+
+  /**
+   * Tests a magnitude band in a time window, strongest
+   * first, is served in order by the magnitude index.
+   */
+  public void testMagnitudeQueryIsServedByMagnitudeIndex() {
+    final GeoFeatureQuery query = new GeoFeatureQuery(1L).setMagnitudeRange(5.5d, 7d)
+                                                         .setTimeWindow(0L, null)
+                                                         .setSort(GeoFeatureQuery.Sort.STRONGEST)
+                                                         .setLimit(10);
+    final String plan = explain(geoFeatureService.compile(query), geoFeatureService.bind(query));
+
+    assertTrue(plan, plan.contains("GeoFeatureCollectionMagnitude"));
+    assertFalse(plan, plan.contains("TEMP B-TREE"));
+  }
+
+
+  /**
+   * Tests a feature's detail is stored with it, read
+   * only on request, revised with it and deleted with it.
+   *
+   * @throws MalformedURLException When the event page URL is invalid.
+   */
+  public void testDetailIsLoadedOnRequest() throws MalformedURLException {
+    // Given.
+    final GeoFeature stored = feature("ridgecrest", 35.7d, -117.5d, 7.1d, 3000L);
+    stored.setDepth(8d);
+    stored.setEventPageUrl(new URL("http://earthquake.usgs.gov/earthquakes/eventpage/ci38457511"));
+    stored.setMaximumReportedIntensity(8.2d);
+    stored.setReviewStatus(ReviewStatus.REVIEWED);
+    stored.setSignificance(1009);
+    stored.setContributorId("ci");
+    stored.setContributors(new String[] {"ci", "us"});
+    stored.setNoOfStationsReportingEvent(127);
+    stored.setMinDistFromEpicentreToStation(0.0529d);
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(Arrays.asList(stored), 1L, 100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+
+    // When.
+    final GeoFeature listed = geoFeatureService.list(1L).get(0);
+
+    // Then.
+    assertNull(listed.getEventPageUrl());
+    final GeoFeature detailed = geoFeatureService.loadDetail(listed, 1L);
+    assertNull(listed.getEventPageUrl());
+    assertEquals(listed.getCode(), detailed.getCode());
+    assertEquals(8d, detailed.getDepth());
+    assertEquals(stored.getEventPageUrl(), detailed.getEventPageUrl());
+    assertEquals(Double.valueOf(8.2d), detailed.getMaximumReportedIntensity());
+    assertNull(detailed.getMaximumInstrumentedIntensity());
+    assertEquals(ReviewStatus.REVIEWED, detailed.getReviewStatus());
+    assertEquals(1009, detailed.getSignificance());
+    assertEquals("ci", detailed.getContributorId());
+    assertEquals(Arrays.asList("ci", "us"), Arrays.asList(detailed.getContributors()));
+    assertEquals(127, detailed.getNoOfStationsReportingEvent());
+    assertEquals(0.0529d, detailed.getMinDistFromEpicentreToStation());
+    assertNull(geoFeatureService.loadDetail(listed, 2L));
+
+    // When.
+    stored.setSignificance(1100);
+    geoFeatureService.update(stored, 1L);
+
+    // Then.
+    assertEquals(1100, geoFeatureService.loadDetail(listed, 1L).getSignificance());
+
+    // When.
+    geoFeatureService.delete(1L);
+
+    // Then.
+    assertEquals(0L, DatabaseUtils.queryNumEntries(database, GeoFeatureService.TECHNICAL_TABLE));
+  }
+
+
+  /**
+   * Tests the summary buckets follow inserts, updates and
+   * deletes, and the collection count is read from them.
+   */
+  public void testSummariesFollowChanges() {
+    // Given.
+    final GeoFeature first = feature("first", 0d, 0d, 4.2d, 1000L);
+    first.setAlertLevel(PagerAlertLevel.GREEN);
+    final GeoFeature second = feature("second", 0d, 0d, 4.8d, 2000L);
+    second.setGeneratingTsunami(true);
+    final GeoFeature later = feature("later", 0d, 0d, 5.1d, 7200000L);
+    database.beginTransaction();
+    try {
+      geoFeatureService.saveAll(Arrays.asList(first, second, later), 1L, 100);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+
+    // When.
+    List<GeoFeatureSummary> summaries = geoFeatureService.listSummaries(1L);
+
+    // Then.
+    assertEquals(3L, geoFeatureService.count(1L));
+    assertEquals(0L, geoFeatureService.count(2L));
+    assertEquals(2, summaries.size());
+    assertEquals(4, summaries.get(0).getMagnitudeBand());
+    assertEquals(0L, summaries.get(0).getHourInMillis());
+    assertEquals(2, summaries.get(0).getFeatures());
+    assertEquals(4.8d, summaries.get(0).getMaxMagnitude());
+    assertEquals(1, summaries.get(0).getTsunamis());
+    assertEquals(1, summaries.get(0).getGreenAlerts());
+    assertEquals(5, summaries.get(1).getMagnitudeBand());
+    assertEquals(7200000L, summaries.get(1).getHourInMillis());
+
+    // When.
+    second.setMagnitude(4.4d);
+    geoFeatureService.update(second, 1L);
+    geoFeatureService.delete(Arrays.asList("later"), 1L);
+    summaries = geoFeatureService.listSummaries(1L);
+
+    // Then.
+    assertEquals(2L, geoFeatureService.count(1L));
+    assertEquals(1, summaries.size());
+    assertEquals(4.4d, summaries.get(0).getMaxMagnitude());
+    assertEquals(2, summaries.get(0).getFeatures());
+  }
+
+
+  private static GeoFeature feature(final String code, final double latitude, final double longitude, final double magnitude, final long time) {
+    final GeoFeature feature = new GeoFeature(GeoJsonType.POINT, latitude, longitude);
+    feature.setCode(code);
+    feature.setMagnitude(magnitude);
+    feature.setTime(time);
+    return feature;
+  }
+
+
+  private static List<String> codes(final List<GeoFeature> features) {
+    final String[] codes = new String[features.size()];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = features.get(i).getCode();
+    }
+    return Arrays.asList(codes);
+  }
+
+
+  private String explain(final String sql, final String... arguments) {
+    final StringBuilder plan = new StringBuilder();
+    final Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, arguments);
+    try {
+      // The last column holds the detail in every SQLite version.
+      while (cursor.moveToNext()) {
+        plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+      }
+    } finally {
+      cursor.close();
+    }
+    return plan.toString();
+  }
+}